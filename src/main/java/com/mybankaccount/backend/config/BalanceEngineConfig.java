@@ -0,0 +1,43 @@
+package com.mybankaccount.backend.config;
+
+import com.mybankaccount.backend.service.BalanceEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "bank.balance.strategy", havingValue = "engine")
+public class BalanceEngineConfig {
+    
+    @Bean(destroyMethod = "close")
+    public BalanceEngine balanceEngine(@Value("${bank.engine.shards:4}") int shards,
+                                       @Value("${bank.engine.ring-capacity:65536}") int ringCapacity,
+                                       @Value("${bank.engine.directory:./engine}") String directory,
+                                       @Value("${bank.engine.snapshot-every-ops:100000}") long snapshotEveryOps,
+                                       @Value("${bank.engine.sync-writes:false}") boolean syncWrites,
+                                       JdbcTemplate jdbcTemplate) {
+        BalanceEngine engine = new BalanceEngine(shards, ringCapacity, Paths.get(directory), snapshotEveryOps, syncWrites);
+        // Nothing is posted before the engine is up, so the table holds only committed state
+        engine.start(accountIds -> {
+            Map<Long, BalanceEngine.Committed> committed = new HashMap<>();
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "SELECT id, is_active, balance FROM accounts WHERE id = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("bigint", accountIds.toArray(new Long[0])));
+                return ps;
+            }, rs -> {
+                committed.put(rs.getLong("id"),
+                    new BalanceEngine.Committed(rs.getBoolean("is_active"), rs.getBigDecimal("balance")));
+            });
+            return committed;
+        });
+        return engine;
+    }
+}
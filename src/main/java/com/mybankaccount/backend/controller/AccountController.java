@@ -7,6 +7,7 @@ import com.mybankaccount.backend.dto.UpdateAccountRequest;
 import com.mybankaccount.backend.entity.Account;
 import com.mybankaccount.backend.entity.User;
 import com.mybankaccount.backend.service.AccountService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -163,10 +165,13 @@ public class AccountController {
         return ResponseEntity.ok(account);
     }
     
-    // Get balance
+    // Get balance, optionally as of a past point in time
     @GetMapping("/{accountNumber}/balance")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<?> getBalance(@PathVariable String accountNumber, Authentication authentication) {
+    public ResponseEntity<?> getBalance(@PathVariable String accountNumber,
+                                        @RequestParam(required = false)
+                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+                                        Authentication authentication) {
         User currentUser = (User) authentication.getPrincipal();
         
         // Check if account belongs to current user (unless admin)
@@ -175,6 +180,10 @@ public class AccountController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied");
         }
         
+        if (asOf != null) {
+            return ResponseEntity.ok(new BalanceResponse(accountService.getBalanceAsOf(accountNumber, asOf), asOf));
+        }
+        
         BigDecimal balance = accountService.getBalance(accountNumber);
         return ResponseEntity.ok(new BalanceResponse(balance));
     }
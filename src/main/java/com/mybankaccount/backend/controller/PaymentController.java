@@ -4,8 +4,13 @@ import com.mybankaccount.backend.dto.PaymentRequest;
 import com.mybankaccount.backend.dto.PaymentResponse;
 import com.mybankaccount.backend.entity.Payment;
 import com.mybankaccount.backend.entity.User;
+import com.mybankaccount.backend.repository.PaymentRollupStore;
+import com.mybankaccount.backend.service.PaymentBatchProcessor;
+import com.mybankaccount.backend.service.PaymentProcessingQueue;
+import com.mybankaccount.backend.service.PaymentRollupRebuildJob;
 import com.mybankaccount.backend.service.PaymentService;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -13,8 +18,10 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -23,9 +30,19 @@ import java.util.stream.Collectors;
 public class PaymentController {
     
     private final PaymentService paymentService;
+    private final PaymentProcessingQueue paymentProcessingQueue;
+    private final PaymentBatchProcessor paymentBatchProcessor;
+    private final PaymentRollupRebuildJob paymentRollupRebuildJob;
     
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService,
+                             ObjectProvider<PaymentProcessingQueue> paymentProcessingQueue,
+                             ObjectProvider<PaymentBatchProcessor> paymentBatchProcessor,
+                             PaymentRollupRebuildJob paymentRollupRebuildJob) {
         this.paymentService = paymentService;
+        this.paymentRollupRebuildJob = paymentRollupRebuildJob;
+        // Only present with bank.payments.processing=async and bank.payments.batch.enabled=true
+        this.paymentProcessingQueue = paymentProcessingQueue.getIfAvailable();
+        this.paymentBatchProcessor = paymentBatchProcessor.getIfAvailable();
     }
     
     @PostMapping
@@ -53,10 +70,42 @@ public class PaymentController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<PaymentResponse> processPayment(@PathVariable Long paymentId,
                                                         Authentication authentication) {
+        if (paymentProcessingQueue != null) {
+            // Accepted for processing; the payment's own URL reports the outcome
+            Payment payment = paymentProcessingQueue.submit(paymentId);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/payments/" + paymentId))
+                    .body(new PaymentResponse(payment));
+        }
+        
         Payment payment = paymentService.processPayment(paymentId);
         return ResponseEntity.ok(new PaymentResponse(payment));
     }
     
+    // Drain every PENDING payment now instead of waiting for the next scheduled run (admin only)
+    @PostMapping("/process-pending")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> processPendingPayments() {
+        if (paymentBatchProcessor == null) {
+            throw new RuntimeException("Batch payment processing is not enabled");
+        }
+        PaymentBatchProcessor.Result result = paymentBatchProcessor.drain();
+        return ResponseEntity.ok(Map.of(
+            "chunks", result.getChunks(),
+            "completed", result.getCompleted(),
+            "failed", result.getFailed()));
+    }
+    
+    // Depth and timings of the async processing queue (admin only)
+    @GetMapping("/queue")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getProcessingQueueMetrics() {
+        if (paymentProcessingQueue == null) {
+            return ResponseEntity.ok(Map.of("mode", "sync"));
+        }
+        return ResponseEntity.ok(paymentProcessingQueue.getMetrics());
+    }
+    
     @PostMapping("/{paymentId}/cancel")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<PaymentResponse> cancelPayment(@PathVariable Long paymentId,
@@ -148,6 +197,25 @@ public class PaymentController {
         return ResponseEntity.ok(summary);
     }
     
+    @GetMapping("/spending")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<List<PaymentRollupStore.Spending>> getSpendingByCategory(
+            @RequestParam(defaultValue = "12") int months,
+            Authentication authentication) {
+        User currentUser = (User) authentication.getPrincipal();
+        return ResponseEntity.ok(paymentService.getSpendingByCategory(currentUser, months));
+    }
+    
+    // Recompute the payment rollups behind the summary and spending reports from history (admin only)
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildPaymentRollups() {
+        PaymentRollupRebuildJob.Result result = paymentRollupRebuildJob.rebuild();
+        return ResponseEntity.ok(Map.of(
+            "chunks", result.getChunks(),
+            "driftedRows", result.getDriftedRows()));
+    }
+    
     @GetMapping("/recent")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<List<PaymentResponse>> getRecentPayments(Authentication authentication) {
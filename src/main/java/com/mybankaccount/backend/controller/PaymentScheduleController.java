@@ -0,0 +1,86 @@
+package com.mybankaccount.backend.controller;
+
+import com.mybankaccount.backend.dto.PaymentScheduleRequest;
+import com.mybankaccount.backend.dto.PaymentScheduleResponse;
+import com.mybankaccount.backend.entity.PaymentSchedule;
+import com.mybankaccount.backend.entity.User;
+import com.mybankaccount.backend.service.PaymentScheduleService;
+import com.mybankaccount.backend.service.PaymentScheduler;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Standing orders: recurring bill payments and future-dated or recurring transfers
+@RestController
+@RequestMapping("/api/schedules")
+@CrossOrigin(origins = "http://localhost:3000")
+public class PaymentScheduleController {
+    
+    private final PaymentScheduleService paymentScheduleService;
+    private final PaymentScheduler paymentScheduler;
+    
+    public PaymentScheduleController(PaymentScheduleService paymentScheduleService,
+                                     ObjectProvider<PaymentScheduler> paymentScheduler) {
+        this.paymentScheduleService = paymentScheduleService;
+        // Only present with bank.schedules.enabled=true
+        this.paymentScheduler = paymentScheduler.getIfAvailable();
+    }
+    
+    @PostMapping
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<PaymentScheduleResponse> createSchedule(@Valid @RequestBody PaymentScheduleRequest request,
+                                                                  Authentication authentication) {
+        User currentUser = (User) authentication.getPrincipal();
+        PaymentSchedule schedule = paymentScheduleService.createSchedule(currentUser, request);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(new PaymentScheduleResponse(schedule));
+    }
+    
+    @GetMapping
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<List<PaymentScheduleResponse>> getUserSchedules(
+            @RequestParam(defaultValue = "false") boolean activeOnly,
+            Authentication authentication) {
+        User currentUser = (User) authentication.getPrincipal();
+        List<PaymentScheduleResponse> schedules = paymentScheduleService.getUserSchedules(currentUser, activeOnly).stream()
+                .map(PaymentScheduleResponse::new)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(schedules);
+    }
+    
+    @GetMapping("/{scheduleId}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<PaymentScheduleResponse> getSchedule(@PathVariable Long scheduleId,
+                                                               Authentication authentication) {
+        User currentUser = (User) authentication.getPrincipal();
+        PaymentSchedule schedule = paymentScheduleService.getUserSchedule(scheduleId, currentUser);
+        return ResponseEntity.ok(new PaymentScheduleResponse(schedule));
+    }
+    
+    @PostMapping("/{scheduleId}/cancel")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<PaymentScheduleResponse> cancelSchedule(@PathVariable Long scheduleId,
+                                                                  Authentication authentication) {
+        User currentUser = (User) authentication.getPrincipal();
+        PaymentSchedule schedule = paymentScheduleService.cancelSchedule(scheduleId, currentUser);
+        return ResponseEntity.ok(new PaymentScheduleResponse(schedule));
+    }
+    
+    // Runs waiting in this node's timing wheel and counters since startup (admin only)
+    @GetMapping("/scheduler")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getSchedulerMetrics() {
+        if (paymentScheduler == null) {
+            return ResponseEntity.ok(Map.of("enabled", false));
+        }
+        return ResponseEntity.ok(paymentScheduler.getMetrics());
+    }
+}
@@ -1,23 +1,37 @@
 package com.mybankaccount.backend.controller;
 
+import com.mybankaccount.backend.dto.BatchTransferRequest;
+import com.mybankaccount.backend.dto.BatchTransferResponse;
 import com.mybankaccount.backend.dto.DepositRequest;
+import com.mybankaccount.backend.dto.LedgerEntryResponse;
+import com.mybankaccount.backend.dto.TransactionPageResponse;
 import com.mybankaccount.backend.dto.TransactionResponse;
 import com.mybankaccount.backend.dto.TransferRequest;
 import com.mybankaccount.backend.dto.WithdrawRequest;
 import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.service.AccountStatsRebuildJob;
+import com.mybankaccount.backend.service.StuckTransactionReaper;
+import com.mybankaccount.backend.service.TransactionExportService;
+import com.mybankaccount.backend.service.TransactionRetryEngine;
 import com.mybankaccount.backend.service.TransactionService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -25,9 +39,21 @@ import java.util.Map;
 public class TransactionController {
     
     private final TransactionService transactionService;
+    private final AccountStatsRebuildJob accountStatsRebuildJob;
+    private final TransactionExportService transactionExportService;
+    private final StuckTransactionReaper stuckTransactionReaper;
+    private final TransactionRetryEngine transactionRetryEngine;
     
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService,
+                                 AccountStatsRebuildJob accountStatsRebuildJob,
+                                 TransactionExportService transactionExportService,
+                                 StuckTransactionReaper stuckTransactionReaper,
+                                 TransactionRetryEngine transactionRetryEngine) {
         this.transactionService = transactionService;
+        this.accountStatsRebuildJob = accountStatsRebuildJob;
+        this.transactionExportService = transactionExportService;
+        this.stuckTransactionReaper = stuckTransactionReaper;
+        this.transactionRetryEngine = transactionRetryEngine;
     }
     
     // Transfer money between accounts
@@ -44,6 +70,14 @@ public class TransactionController {
         return ResponseEntity.ok(new TransactionResponse(transaction));
     }
     
+    // Transfer money in bulk, reporting the outcome of each item
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> transferBatch(@Valid @RequestBody BatchTransferRequest request) {
+        BatchTransferResponse response = transactionService.transferBatch(request.getTransfers());
+        return ResponseEntity.ok(response);
+    }
+    
     // Deposit money to account
     @PostMapping("/deposit")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
@@ -70,13 +104,19 @@ public class TransactionController {
         return ResponseEntity.ok(new TransactionResponse(transaction));
     }
     
-    // Get transaction by reference
+    // Get transaction by reference; 410 when its month has been archived
     @GetMapping("/reference/{transactionReference}")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getTransactionByReference(@PathVariable String transactionReference) {
-        return transactionService.getTransactionByReference(transactionReference)
-            .map(transaction -> ResponseEntity.ok(new TransactionResponse(transaction)))
-            .orElse(ResponseEntity.notFound().build());
+        Optional<Transaction> transaction = transactionService.getTransactionByReference(transactionReference);
+        if (transaction.isPresent()) {
+            return ResponseEntity.ok(new TransactionResponse(transaction.get()));
+        }
+        if (transactionService.isArchivedReference(transactionReference)) {
+            return ResponseEntity.status(HttpStatus.GONE).body(Map.of("error",
+                "Transaction " + transactionReference + " has been archived; it is still listed in the account history"));
+        }
+        return ResponseEntity.notFound().build();
     }
     
     // Get transaction by ID
@@ -88,7 +128,7 @@ public class TransactionController {
             .orElse(ResponseEntity.notFound().build());
     }
     
-    // Get account transactions (paginated)
+    // Get account transactions (paginated by offset; see /history for cursor paging)
     @GetMapping("/account/{accountNumber}")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getAccountTransactions(
@@ -96,9 +136,33 @@ public class TransactionController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Transaction> transactions = transactionService.getAccountTransactions(accountNumber, pageable);
+        Page<TransactionResponse> response = transactionService.getAccountTransactions(accountNumber, pageable);
+        return ResponseEntity.ok(response);
+    }
+    
+    // Get account transactions by cursor, newest first; pass the returned next token to
+    // continue. Deep pages cost the same as the first one and no total is computed.
+    @GetMapping("/account/{accountNumber}/history")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getAccountTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        TransactionService.TransactionPage page = transactionService.getAccountTransactionsPage(accountNumber, cursor, size);
+        return ResponseEntity.ok(new TransactionPageResponse(page.getTransactions(), page.getNext()));
+    }
+    
+    // Get account ledger entries, newest first; pass the last seq seen to get the next page
+    @GetMapping("/account/{accountNumber}/ledger")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getAccountLedger(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) Long beforeSeq,
+            @RequestParam(defaultValue = "50") int size) {
+        List<LedgerEntryResponse> response = transactionService.getLedgerEntries(accountNumber, beforeSeq, size).stream()
+            .map(LedgerEntryResponse::new)
+            .toList();
         
-        Page<TransactionResponse> response = transactions.map(TransactionResponse::new);
         return ResponseEntity.ok(response);
     }
     
@@ -106,25 +170,28 @@ public class TransactionController {
     @GetMapping("/account/{accountNumber}/all")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getAllAccountTransactions(@PathVariable String accountNumber) {
-        List<Transaction> transactions = transactionService.getAccountTransactions(accountNumber);
-        List<TransactionResponse> response = transactions.stream()
-            .map(TransactionResponse::new)
-            .toList();
-        
+        List<TransactionResponse> response = transactionService.getAccountTransactions(accountNumber);
         return ResponseEntity.ok(response);
     }
     
+    // Stream all account transactions as NDJSON or CSV without building the list in memory
+    @GetMapping("/account/{accountNumber}/export")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportAccountTransactions(
+            @PathVariable String accountNumber,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        TransactionExportService.Format exportFormat = parseExportFormat(format);
+        return streamExport("transactions-" + accountNumber, exportFormat,
+            transactionExportService.exportByAccount(accountNumber, exportFormat));
+    }
+    
     // Get recent account transactions
     @GetMapping("/account/{accountNumber}/recent")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getRecentAccountTransactions(
             @PathVariable String accountNumber,
             @RequestParam(defaultValue = "30") int days) {
-        List<Transaction> transactions = transactionService.getRecentAccountTransactions(accountNumber, days);
-        List<TransactionResponse> response = transactions.stream()
-            .map(TransactionResponse::new)
-            .toList();
-        
+        List<TransactionResponse> response = transactionService.getRecentAccountTransactions(accountNumber, days);
         return ResponseEntity.ok(response);
     }
     
@@ -134,14 +201,22 @@ public class TransactionController {
     public ResponseEntity<?> getTransactionsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        List<Transaction> transactions = transactionService.getTransactionsByDateRange(startDate, endDate);
-        List<TransactionResponse> response = transactions.stream()
-            .map(TransactionResponse::new)
-            .toList();
-        
+        List<TransactionResponse> response = transactionService.getTransactionsByDateRange(startDate, endDate);
         return ResponseEntity.ok(response);
     }
     
+    // Stream transactions by date range as NDJSON or CSV
+    @GetMapping("/date-range/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportTransactionsByDateRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        TransactionExportService.Format exportFormat = parseExportFormat(format);
+        return streamExport("transactions", exportFormat,
+            transactionExportService.exportByDateRange(startDate, endDate, exportFormat));
+    }
+    
     // Get account transactions by date range
     @GetMapping("/account/{accountNumber}/date-range")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
@@ -149,12 +224,8 @@ public class TransactionController {
             @PathVariable String accountNumber,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        List<Transaction> transactions = transactionService.getAccountTransactionsByDateRange(
+        List<TransactionResponse> response = transactionService.getAccountTransactionsByDateRange(
             accountNumber, startDate, endDate);
-        List<TransactionResponse> response = transactions.stream()
-            .map(TransactionResponse::new)
-            .toList();
-        
         return ResponseEntity.ok(response);
     }
     
@@ -162,14 +233,21 @@ public class TransactionController {
     @GetMapping("/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getTransactionsByStatus(@PathVariable Transaction.TransactionStatus status) {
-        List<Transaction> transactions = transactionService.getTransactionsByStatus(status);
-        List<TransactionResponse> response = transactions.stream()
-            .map(TransactionResponse::new)
-            .toList();
-        
+        List<TransactionResponse> response = transactionService.getTransactionsByStatus(status);
         return ResponseEntity.ok(response);
     }
     
+    // Stream transactions by status as NDJSON or CSV
+    @GetMapping("/status/{status}/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportTransactionsByStatus(
+            @PathVariable Transaction.TransactionStatus status,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        TransactionExportService.Format exportFormat = parseExportFormat(format);
+        return streamExport("transactions-" + status.name().toLowerCase(Locale.ROOT), exportFormat,
+            transactionExportService.exportByStatus(status, exportFormat));
+    }
+    
     // Cancel transaction
     @PutMapping("/cancel/{transactionReference}")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
@@ -187,4 +265,46 @@ public class TransactionController {
         return ResponseEntity.ok(summary);
     }
     
-}
\ No newline at end of file
+    // Recompute the summary totals of every account from history (admin only)
+    @PostMapping("/stats/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildAccountStats() {
+        AccountStatsRebuildJob.Result result = accountStatsRebuildJob.rebuild();
+        return ResponseEntity.ok(Map.of(
+            "chunks", result.getChunks(),
+            "driftedAccounts", result.getDriftedAccounts()));
+    }
+    
+    // Progress and lag of the stuck-transaction reaper (admin only)
+    @GetMapping("/reaper")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getReaperMetrics() {
+        return ResponseEntity.ok(stuckTransactionReaper.getMetrics());
+    }
+    
+    // Progress and backlog of the failed-transaction retry engine (admin only)
+    @GetMapping("/retries")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getRetryMetrics() {
+        return ResponseEntity.ok(transactionRetryEngine.getMetrics());
+    }
+    
+    private static TransactionExportService.Format parseExportFormat(String format) {
+        try {
+            return TransactionExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+    }
+    
+    private static ResponseEntity<StreamingResponseBody> streamExport(String fileName,
+                                                                      TransactionExportService.Format format,
+                                                                      TransactionExportService.Export export) {
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(format.getContentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + fileName + "." + format.getExtension() + "\"")
+            .body(export::writeTo);
+    }
+    
+}
@@ -1,14 +1,24 @@
 package com.mybankaccount.backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class BalanceResponse {
     private BigDecimal balance;
+    private LocalDateTime asOf;
     
     public BalanceResponse(BigDecimal balance) {
         this.balance = balance;
     }
     
+    public BalanceResponse(BigDecimal balance, LocalDateTime asOf) {
+        this.balance = balance;
+        this.asOf = asOf;
+    }
+    
     public BigDecimal getBalance() {
         return balance;
     }
@@ -16,4 +26,12 @@ public class BalanceResponse {
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
     }
+    
+    public LocalDateTime getAsOf() {
+        return asOf;
+    }
+    
+    public void setAsOf(LocalDateTime asOf) {
+        this.asOf = asOf;
+    }
 }
\ No newline at end of file
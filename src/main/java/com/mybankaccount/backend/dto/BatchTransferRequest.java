@@ -0,0 +1,19 @@
+package com.mybankaccount.backend.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+public class BatchTransferRequest {
+    // Items are validated one by one so a bad item fails alone, not the whole batch
+    @NotEmpty(message = "At least one transfer is required")
+    private List<TransferRequest> transfers;
+    
+    // Getters and Setters
+    public List<TransferRequest> getTransfers() {
+        return transfers;
+    }
+    
+    public void setTransfers(List<TransferRequest> transfers) {
+        this.transfers = transfers;
+    }
+}
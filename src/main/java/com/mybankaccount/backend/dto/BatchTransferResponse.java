@@ -0,0 +1,93 @@
+package com.mybankaccount.backend.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class BatchTransferResponse {
+    private int totalCount;
+    private int successCount;
+    private int failureCount;
+    private List<ItemResult> results;
+    
+    public BatchTransferResponse(List<ItemResult> results) {
+        this.results = results;
+        this.totalCount = results.size();
+        this.successCount = (int) results.stream().filter(ItemResult::isSuccess).count();
+        this.failureCount = totalCount - successCount;
+    }
+    
+    // Getters and Setters
+    public int getTotalCount() {
+        return totalCount;
+    }
+    
+    public void setTotalCount(int totalCount) {
+        this.totalCount = totalCount;
+    }
+    
+    public int getSuccessCount() {
+        return successCount;
+    }
+    
+    public void setSuccessCount(int successCount) {
+        this.successCount = successCount;
+    }
+    
+    public int getFailureCount() {
+        return failureCount;
+    }
+    
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+    
+    public List<ItemResult> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<ItemResult> results) {
+        this.results = results;
+    }
+    
+    // Outcome of one transfer, reported at its position in the request
+    public static class ItemResult {
+        private int index;
+        private boolean success;
+        private String transactionReference;
+        private String fromAccountNumber;
+        private String toAccountNumber;
+        private BigDecimal amount;
+        private String error;
+        
+        public static ItemResult succeeded(int index, TransferRequest request, String transactionReference) {
+            ItemResult result = new ItemResult(index, request);
+            result.success = true;
+            result.transactionReference = transactionReference;
+            return result;
+        }
+        
+        public static ItemResult failed(int index, TransferRequest request, String error) {
+            ItemResult result = new ItemResult(index, request);
+            result.success = false;
+            result.error = error;
+            return result;
+        }
+        
+        private ItemResult(int index, TransferRequest request) {
+            this.index = index;
+            if (request != null) {
+                this.fromAccountNumber = request.getFromAccountNumber();
+                this.toAccountNumber = request.getToAccountNumber();
+                this.amount = request.getAmount();
+            }
+        }
+        
+        public int getIndex() { return index; }
+        public boolean isSuccess() { return success; }
+        public String getTransactionReference() { return transactionReference; }
+        public String getFromAccountNumber() { return fromAccountNumber; }
+        public String getToAccountNumber() { return toAccountNumber; }
+        public BigDecimal getAmount() { return amount; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mybankaccount.backend.dto;
+
+import com.mybankaccount.backend.entity.LedgerEntry;
+import com.mybankaccount.backend.entity.Transaction;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class LedgerEntryResponse {
+    private Long seq;
+    private String transactionReference;
+    private Transaction.TransactionType transactionType;
+    private BigDecimal amount;
+    private BigDecimal balanceAfter;
+    private LocalDateTime createdAt;
+    
+    public LedgerEntryResponse(LedgerEntry entry) {
+        this.seq = entry.getSeq();
+        this.transactionReference = entry.getTransactionReference();
+        this.transactionType = entry.getTransactionType();
+        this.amount = entry.getAmount();
+        this.balanceAfter = entry.getBalanceAfter();
+        this.createdAt = entry.getCreatedAt();
+    }
+    
+    // Getters and Setters
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public String getTransactionReference() {
+        return transactionReference;
+    }
+    
+    public void setTransactionReference(String transactionReference) {
+        this.transactionReference = transactionReference;
+    }
+    
+    public Transaction.TransactionType getTransactionType() {
+        return transactionType;
+    }
+    
+    public void setTransactionType(Transaction.TransactionType transactionType) {
+        this.transactionType = transactionType;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    public BigDecimal getBalanceAfter() {
+        return balanceAfter;
+    }
+    
+    public void setBalanceAfter(BigDecimal balanceAfter) {
+        this.balanceAfter = balanceAfter;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
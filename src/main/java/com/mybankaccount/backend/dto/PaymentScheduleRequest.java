@@ -0,0 +1,128 @@
+package com.mybankaccount.backend.dto;
+
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.entity.PaymentSchedule;
+import jakarta.validation.constraints.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class PaymentScheduleRequest {
+    
+    @NotNull(message = "Account ID is required")
+    private Long accountId;
+    
+    @NotNull(message = "Schedule type is required")
+    private PaymentSchedule.ScheduleType scheduleType;
+    
+    // Required for PAYMENT schedules
+    private Payment.PaymentType paymentType;
+    
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    @DecimalMax(value = "100000.00", message = "Amount cannot exceed 100,000 TL")
+    private BigDecimal amount;
+    
+    @Size(min = 2, max = 100, message = "Recipient name must be between 2 and 100 characters")
+    private String recipientName;
+    
+    // The destination account number for TRANSFER schedules
+    @Size(max = 50, message = "Recipient account cannot exceed 50 characters")
+    private String recipientAccount;
+    
+    @Size(max = 255, message = "Description cannot exceed 255 characters")
+    private String description;
+    
+    @NotNull(message = "Frequency is required")
+    private PaymentSchedule.Frequency frequency;
+    
+    @NotNull(message = "First run time is required")
+    @Future(message = "First run time must be in the future")
+    private LocalDateTime firstRunAt;
+    
+    private LocalDateTime endAt;
+    
+    // Constructors
+    public PaymentScheduleRequest() {}
+    
+    // Getters and Setters
+    public Long getAccountId() {
+        return accountId;
+    }
+    
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+    
+    public PaymentSchedule.ScheduleType getScheduleType() {
+        return scheduleType;
+    }
+    
+    public void setScheduleType(PaymentSchedule.ScheduleType scheduleType) {
+        this.scheduleType = scheduleType;
+    }
+    
+    public Payment.PaymentType getPaymentType() {
+        return paymentType;
+    }
+    
+    public void setPaymentType(Payment.PaymentType paymentType) {
+        this.paymentType = paymentType;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    public String getRecipientName() {
+        return recipientName;
+    }
+    
+    public void setRecipientName(String recipientName) {
+        this.recipientName = recipientName;
+    }
+    
+    public String getRecipientAccount() {
+        return recipientAccount;
+    }
+    
+    public void setRecipientAccount(String recipientAccount) {
+        this.recipientAccount = recipientAccount;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    
+    public PaymentSchedule.Frequency getFrequency() {
+        return frequency;
+    }
+    
+    public void setFrequency(PaymentSchedule.Frequency frequency) {
+        this.frequency = frequency;
+    }
+    
+    public LocalDateTime getFirstRunAt() {
+        return firstRunAt;
+    }
+    
+    public void setFirstRunAt(LocalDateTime firstRunAt) {
+        this.firstRunAt = firstRunAt;
+    }
+    
+    public LocalDateTime getEndAt() {
+        return endAt;
+    }
+    
+    public void setEndAt(LocalDateTime endAt) {
+        this.endAt = endAt;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mybankaccount.backend.dto;
+
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.entity.PaymentSchedule;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class PaymentScheduleResponse {
+    
+    private Long id;
+    private Long accountId;
+    private String accountNumber;
+    private PaymentSchedule.ScheduleType scheduleType;
+    private Payment.PaymentType paymentType;
+    private BigDecimal amount;
+    private String recipientName;
+    private String recipientAccount;
+    private String description;
+    private PaymentSchedule.Frequency frequency;
+    private LocalDateTime nextRunAt;
+    private LocalDateTime endAt;
+    private boolean active;
+    private Integer runCount;
+    private LocalDateTime lastRunAt;
+    private PaymentSchedule.RunStatus lastStatus;
+    private String lastReference;
+    private String lastError;
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public PaymentScheduleResponse() {}
+    
+    public PaymentScheduleResponse(PaymentSchedule schedule) {
+        this.id = schedule.getId();
+        this.accountId = schedule.getAccount().getId();
+        this.accountNumber = schedule.getAccount().getAccountNumber();
+        this.scheduleType = schedule.getScheduleType();
+        this.paymentType = schedule.getPaymentType();
+        this.amount = schedule.getAmount();
+        this.recipientName = schedule.getRecipientName();
+        this.recipientAccount = schedule.getRecipientAccount();
+        this.description = schedule.getDescription();
+        this.frequency = schedule.getFrequency();
+        this.nextRunAt = schedule.getNextRunAt();
+        this.endAt = schedule.getEndAt();
+        this.active = schedule.isActive();
+        this.runCount = schedule.getRunCount();
+        this.lastRunAt = schedule.getLastRunAt();
+        this.lastStatus = schedule.getLastStatus();
+        this.lastReference = schedule.getLastReference();
+        this.lastError = schedule.getLastError();
+        this.createdAt = schedule.getCreatedAt();
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    public Long getAccountId() { return accountId; }
+    public String getAccountNumber() { return accountNumber; }
+    public PaymentSchedule.ScheduleType getScheduleType() { return scheduleType; }
+    public Payment.PaymentType getPaymentType() { return paymentType; }
+    public BigDecimal getAmount() { return amount; }
+    public String getRecipientName() { return recipientName; }
+    public String getRecipientAccount() { return recipientAccount; }
+    public String getDescription() { return description; }
+    public PaymentSchedule.Frequency getFrequency() { return frequency; }
+    public LocalDateTime getNextRunAt() { return nextRunAt; }
+    public LocalDateTime getEndAt() { return endAt; }
+    public boolean isActive() { return active; }
+    public Integer getRunCount() { return runCount; }
+    public LocalDateTime getLastRunAt() { return lastRunAt; }
+    public PaymentSchedule.RunStatus getLastStatus() { return lastStatus; }
+    public String getLastReference() { return lastReference; }
+    public String getLastError() { return lastError; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
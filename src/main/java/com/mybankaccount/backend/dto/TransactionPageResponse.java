@@ -0,0 +1,30 @@
+package com.mybankaccount.backend.dto;
+
+import java.util.List;
+
+// One keyset page of transactions; next is null on the last page
+public class TransactionPageResponse {
+    private List<TransactionResponse> items;
+    private String next;
+    
+    public TransactionPageResponse(List<TransactionResponse> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+    
+    public List<TransactionResponse> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<TransactionResponse> items) {
+        this.items = items;
+    }
+    
+    public String getNext() {
+        return next;
+    }
+    
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
@@ -37,6 +37,28 @@ public class TransactionResponse {
         this.failureReason = transaction.getFailureReason();
     }
     
+    // From already-resolved column values, for readers that do not load entities
+    public TransactionResponse(Long id, String transactionReference, String fromAccountNumber,
+                               String toAccountNumber, BigDecimal amount,
+                               Transaction.TransactionType transactionType,
+                               Transaction.TransactionStatus status, String description, BigDecimal fee,
+                               LocalDateTime createdAt, LocalDateTime processedAt, String currency,
+                               String failureReason) {
+        this.id = id;
+        this.transactionReference = transactionReference;
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.transactionType = transactionType;
+        this.status = status;
+        this.description = description;
+        this.fee = fee;
+        this.createdAt = createdAt;
+        this.processedAt = processedAt;
+        this.currency = currency;
+        this.failureReason = failureReason;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
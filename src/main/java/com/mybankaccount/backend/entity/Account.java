@@ -14,7 +14,8 @@ import java.util.List;
 public class Account {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Account number is required")
@@ -46,6 +47,10 @@ public class Account {
     @Column(name = "currency", length = 3)
     private String currency = "USD";
     
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0 not null")
+    private long version;
+    
     public enum AccountType {
         CHECKING, SAVINGS, BUSINESS
     }
@@ -136,6 +141,14 @@ public class Account {
         this.currency = currency;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     // Helper method for isActive
     public boolean isActive() {
         return this.isActive != null && this.isActive;
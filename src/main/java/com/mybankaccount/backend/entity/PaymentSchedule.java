@@ -0,0 +1,304 @@
+package com.mybankaccount.backend.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+@Entity
+@Table(name = "payment_schedules")
+public class PaymentSchedule {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_schedules_seq")
+    @SequenceGenerator(name = "payment_schedules_seq", sequenceName = "payment_schedules_seq", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "schedule_type", nullable = false)
+    private ScheduleType scheduleType;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_type")
+    private Payment.PaymentType paymentType;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(name = "recipient_name")
+    private String recipientName;
+    
+    // Destination account number for transfers, the biller's account for payments
+    @Column(name = "recipient_account")
+    private String recipientAccount;
+    
+    @Column(name = "description")
+    private String description;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Frequency frequency;
+    
+    // Day of month monthly runs fall on, clamped to the length of shorter months
+    @Column(name = "anchor_day", nullable = false)
+    private Integer anchorDay;
+    
+    @Column(name = "next_run_at")
+    private LocalDateTime nextRunAt;
+    
+    @Column(name = "end_at")
+    private LocalDateTime endAt;
+    
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive = true;
+    
+    @Column(name = "run_count", nullable = false)
+    private Integer runCount = 0;
+    
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_status")
+    private RunStatus lastStatus;
+    
+    @Column(name = "last_reference")
+    private String lastReference;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    public enum ScheduleType {
+        PAYMENT,
+        TRANSFER
+    }
+    
+    public enum Frequency {
+        ONCE,
+        DAILY,
+        WEEKLY,
+        MONTHLY;
+        
+        // The occurrence after runAt, or null when there is none
+        public LocalDateTime next(LocalDateTime runAt, int anchorDay) {
+            switch (this) {
+                case DAILY:
+                    return runAt.plusDays(1);
+                case WEEKLY:
+                    return runAt.plusWeeks(1);
+                case MONTHLY:
+                    YearMonth month = YearMonth.from(runAt).plusMonths(1);
+                    return month.atDay(Math.min(anchorDay, month.lengthOfMonth())).atTime(runAt.toLocalTime());
+                default:
+                    return null;
+            }
+        }
+    }
+    
+    // SUBMITTED: a payment was created and is processed on its own
+    public enum RunStatus {
+        SUBMITTED,
+        COMPLETED,
+        FAILED
+    }
+    
+    // Constructors
+    public PaymentSchedule() {
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public PaymentSchedule(User user, Account account, ScheduleType scheduleType, BigDecimal amount,
+                           Frequency frequency, LocalDateTime firstRunAt) {
+        this();
+        this.user = user;
+        this.account = account;
+        this.scheduleType = scheduleType;
+        this.amount = amount;
+        this.frequency = frequency;
+        this.nextRunAt = firstRunAt;
+        this.anchorDay = firstRunAt.getDayOfMonth();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public User getUser() {
+        return user;
+    }
+    
+    public void setUser(User user) {
+        this.user = user;
+    }
+    
+    public Account getAccount() {
+        return account;
+    }
+    
+    public void setAccount(Account account) {
+        this.account = account;
+    }
+    
+    public ScheduleType getScheduleType() {
+        return scheduleType;
+    }
+    
+    public void setScheduleType(ScheduleType scheduleType) {
+        this.scheduleType = scheduleType;
+    }
+    
+    public Payment.PaymentType getPaymentType() {
+        return paymentType;
+    }
+    
+    public void setPaymentType(Payment.PaymentType paymentType) {
+        this.paymentType = paymentType;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    public String getRecipientName() {
+        return recipientName;
+    }
+    
+    public void setRecipientName(String recipientName) {
+        this.recipientName = recipientName;
+    }
+    
+    public String getRecipientAccount() {
+        return recipientAccount;
+    }
+    
+    public void setRecipientAccount(String recipientAccount) {
+        this.recipientAccount = recipientAccount;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    
+    public Frequency getFrequency() {
+        return frequency;
+    }
+    
+    public void setFrequency(Frequency frequency) {
+        this.frequency = frequency;
+    }
+    
+    public Integer getAnchorDay() {
+        return anchorDay;
+    }
+    
+    public void setAnchorDay(Integer anchorDay) {
+        this.anchorDay = anchorDay;
+    }
+    
+    public LocalDateTime getNextRunAt() {
+        return nextRunAt;
+    }
+    
+    public void setNextRunAt(LocalDateTime nextRunAt) {
+        this.nextRunAt = nextRunAt;
+    }
+    
+    public LocalDateTime getEndAt() {
+        return endAt;
+    }
+    
+    public void setEndAt(LocalDateTime endAt) {
+        this.endAt = endAt;
+    }
+    
+    public Boolean getIsActive() {
+        return isActive;
+    }
+    
+    public void setIsActive(Boolean isActive) {
+        this.isActive = isActive;
+    }
+    
+    public Integer getRunCount() {
+        return runCount;
+    }
+    
+    public void setRunCount(Integer runCount) {
+        this.runCount = runCount;
+    }
+    
+    public LocalDateTime getLastRunAt() {
+        return lastRunAt;
+    }
+    
+    public void setLastRunAt(LocalDateTime lastRunAt) {
+        this.lastRunAt = lastRunAt;
+    }
+    
+    public RunStatus getLastStatus() {
+        return lastStatus;
+    }
+    
+    public void setLastStatus(RunStatus lastStatus) {
+        this.lastStatus = lastStatus;
+    }
+    
+    public String getLastReference() {
+        return lastReference;
+    }
+    
+    public void setLastReference(String lastReference) {
+        this.lastReference = lastReference;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    // Helper method for isActive
+    public boolean isActive() {
+        return this.isActive != null && this.isActive;
+    }
+    
+    // Stops the schedule; a run already loaded by the scheduler finds it inactive and is dropped
+    public void cancel() {
+        this.isActive = false;
+        this.nextRunAt = null;
+    }
+}
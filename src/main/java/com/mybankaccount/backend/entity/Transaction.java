@@ -13,11 +13,12 @@ import java.time.LocalDateTime;
 public class Transaction {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Transaction reference is required")
-    @Column(name = "transaction_reference", unique = true, nullable = false, length = 50)
+    @Column(name = "transaction_reference", nullable = false, length = 50)
     private String transactionReference;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -47,7 +48,7 @@ public class Transaction {
     @Column(name = "fee", precision = 10, scale = 2)
     private BigDecimal fee = BigDecimal.ZERO;
     
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
     @Column(name = "processed_at")
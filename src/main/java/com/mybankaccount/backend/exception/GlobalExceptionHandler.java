@@ -1,5 +1,6 @@
 package com.mybankaccount.backend.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -28,6 +29,28 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(error);
     }
 
+    @ExceptionHandler(QueueFullException.class)
+    public ResponseEntity<Map<String, String>> handleQueueFullException(QueueFullException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    // Stored by the idempotency filter like any 2xx, so a replay of the key points at the
+    // same pending transaction instead of posting it again
+    @ExceptionHandler(RetryScheduledException.class)
+    public ResponseEntity<Map<String, String>> handleRetryScheduledException(RetryScheduledException e) {
+        Map<String, String> body = new HashMap<>();
+        body.put("status", "RETRY_SCHEDULED");
+        body.put("transactionReference", e.getTransactionReference());
+        body.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/api/transactions/reference/" + e.getTransactionReference())
+                .body(body);
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<Map<String, String>> handleAccessDeniedException(AccessDeniedException e) {
         Map<String, String> error = new HashMap<>();
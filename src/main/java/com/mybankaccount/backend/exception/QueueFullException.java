@@ -0,0 +1,19 @@
+package com.mybankaccount.backend.exception;
+
+// A bounded work queue turned a request away; the client should come back after
+// retryAfterSeconds. Mapped to 429 with a Retry-After header.
+public class QueueFullException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final long retryAfterSeconds;
+    
+    public QueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,20 @@
+package com.mybankaccount.backend.exception;
+
+// A posting failed for a transient reason and the retry engine will try it again, so
+// its outcome is not known yet. Mapped to 202 with the transaction reference, which the
+// client polls instead of posting again.
+public class RetryScheduledException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final String transactionReference;
+    
+    public RetryScheduledException(String message, String transactionReference, Throwable cause) {
+        super(message, cause);
+        this.transactionReference = transactionReference;
+    }
+    
+    public String getTransactionReference() {
+        return transactionReference;
+    }
+}
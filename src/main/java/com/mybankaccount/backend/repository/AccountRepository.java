@@ -2,11 +2,16 @@ package com.mybankaccount.backend.repository;
 
 import com.mybankaccount.backend.entity.Account;
 import com.mybankaccount.backend.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -53,4 +58,37 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     // Find user's accounts by account type
     @Query("SELECT a FROM Account a WHERE a.user.id = :userId AND a.accountType = :accountType AND a.isActive = true")
     List<Account> findByUserIdAndAccountTypeAndActive(@Param("userId") Long userId, @Param("accountType") Account.AccountType accountType);
+    
+    // Debit only when the account is active and can cover the amount (single conditional UPDATE)
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.id = :id AND a.isActive = true AND a.balance >= :amount")
+    int debitIfSufficient(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    
+    // Credit only when the account is active
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.id = :id AND a.isActive = true")
+    int creditIfActive(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    
+    // Set the balance only if nobody changed the row since it was read
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = :balance, a.version = a.version + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.id = :id AND a.version = :version")
+    int compareAndSetBalance(@Param("id") Long id, @Param("version") long version, @Param("balance") BigDecimal balance);
+    
+    // Add a delta the caller has already decided is allowed; still never below zero
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance + :delta, a.version = a.version + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.id = :id AND a.balance + :delta >= 0")
+    int applyBalanceDelta(@Param("id") Long id, @Param("delta") BigDecimal delta);
+    
+    // Lock a set of accounts with SELECT ... FOR UPDATE, always in id order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.accountNumber IN :accountNumbers ORDER BY a.id")
+    List<Account> findAllByAccountNumberInForUpdate(@Param("accountNumbers") Collection<String> accountNumbers);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id")
+    List<Account> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.mybankaccount.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// JDBC access to account_stats: deltas from postings and range rebuilds from history
+@Repository
+public class AccountStatsStore {
+    
+    private static final String APPLY_SQL =
+        "INSERT INTO account_stats (account_id, total_incoming, total_outgoing, transaction_count, last_activity_at) " +
+        "SELECT * FROM unnest(?::bigint[], ?::numeric[], ?::numeric[], ?::bigint[], ?::timestamp[]) " +
+        "ON CONFLICT (account_id) DO UPDATE SET " +
+        "  total_incoming = account_stats.total_incoming + EXCLUDED.total_incoming, " +
+        "  total_outgoing = account_stats.total_outgoing + EXCLUDED.total_outgoing, " +
+        "  transaction_count = account_stats.transaction_count + EXCLUDED.transaction_count, " +
+        "  last_activity_at = greatest(account_stats.last_activity_at, EXCLUDED.last_activity_at)";
+    
+    private static final String CLAIM_RANGE_SQL =
+        "INSERT INTO account_stats (account_id) SELECT id FROM accounts WHERE id BETWEEN ? AND ? " +
+        "ON CONFLICT (account_id) DO NOTHING";
+    
+    private static final String LOCK_RANGE_SQL =
+        "SELECT account_id FROM account_stats WHERE account_id BETWEEN ? AND ? ORDER BY account_id FOR UPDATE";
+    
+    // Same definitions as the V9 backfill, limited to one id range; only rows that
+    // differ are written, so the update count is the number of drifted accounts.
+    // Months moved to the cold tier come from archived_account_totals instead.
+    private static final String REBUILD_RANGE_SQL =
+        "WITH hot AS ( " +
+        "  SELECT coalesce(max(archive_month) + interval '1 month', '-infinity'::timestamp) AS since " +
+        "    FROM archive_segments " +
+        "), legs AS ( " +
+        "  SELECT to_account_id AS account_id, id AS transaction_id, created_at, " +
+        "         CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END AS incoming, 0 AS outgoing " +
+        "    FROM transactions WHERE to_account_id BETWEEN ? AND ? AND created_at >= (SELECT since FROM hot) " +
+        "  UNION ALL " +
+        "  SELECT from_account_id, id, created_at, 0, CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END " +
+        "    FROM transactions WHERE from_account_id BETWEEN ? AND ? AND created_at >= (SELECT since FROM hot) " +
+        "), totals AS ( " +
+        "  SELECT a.id AS account_id, " +
+        "         coalesce(sum(l.incoming), 0) + coalesce(max(x.total_incoming), 0) AS total_incoming, " +
+        "         coalesce(sum(l.outgoing), 0) + coalesce(max(x.total_outgoing), 0) AS total_outgoing, " +
+        "         count(DISTINCT l.transaction_id) + coalesce(max(x.transaction_count), 0) AS transaction_count, " +
+        "         greatest(max(l.created_at), max(x.last_activity_at)) AS last_activity_at " +
+        "    FROM accounts a LEFT JOIN legs l ON l.account_id = a.id " +
+        "    LEFT JOIN archived_account_totals x ON x.account_id = a.id " +
+        "   WHERE a.id BETWEEN ? AND ? GROUP BY a.id " +
+        ") " +
+        "UPDATE account_stats s SET total_incoming = t.total_incoming, total_outgoing = t.total_outgoing, " +
+        "       transaction_count = t.transaction_count, last_activity_at = t.last_activity_at " +
+        "  FROM totals t " +
+        " WHERE s.account_id = t.account_id " +
+        "   AND (s.total_incoming, s.total_outgoing, s.transaction_count, s.last_activity_at) " +
+        "       IS DISTINCT FROM (t.total_incoming, t.total_outgoing, t.transaction_count, t.last_activity_at)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public AccountStatsStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Totals of one account, or the change to apply to them
+    public static class Stats {
+        private final BigDecimal totalIncoming;
+        private final BigDecimal totalOutgoing;
+        private final long transactionCount;
+        private final LocalDateTime lastActivityAt;
+        
+        public Stats(BigDecimal totalIncoming, BigDecimal totalOutgoing, long transactionCount,
+                     LocalDateTime lastActivityAt) {
+            this.totalIncoming = totalIncoming;
+            this.totalOutgoing = totalOutgoing;
+            this.transactionCount = transactionCount;
+            this.lastActivityAt = lastActivityAt;
+        }
+        
+        public Stats plus(Stats other) {
+            LocalDateTime last = lastActivityAt;
+            if (last == null || (other.lastActivityAt != null && other.lastActivityAt.isAfter(last))) {
+                last = other.lastActivityAt;
+            }
+            return new Stats(totalIncoming.add(other.totalIncoming), totalOutgoing.add(other.totalOutgoing),
+                transactionCount + other.transactionCount, last);
+        }
+        
+        public BigDecimal getTotalIncoming() { return totalIncoming; }
+        public BigDecimal getTotalOutgoing() { return totalOutgoing; }
+        public long getTransactionCount() { return transactionCount; }
+        public LocalDateTime getLastActivityAt() { return lastActivityAt; }
+    }
+    
+    public Optional<Stats> find(Long accountId) {
+        List<Stats> stats = jdbcTemplate.query(
+            "SELECT total_incoming, total_outgoing, transaction_count, last_activity_at " +
+            "FROM account_stats WHERE account_id = ?",
+            (rs, rowNum) -> {
+                Timestamp last = rs.getTimestamp("last_activity_at");
+                return new Stats(rs.getBigDecimal("total_incoming"), rs.getBigDecimal("total_outgoing"),
+                    rs.getLong("transaction_count"), last != null ? last.toLocalDateTime() : null);
+            },
+            accountId);
+        return stats.stream().findFirst();
+    }
+    
+    // Adds the given deltas in one statement. Iterate the map in account id order so
+    // concurrent postings lock the rows in the same order.
+    public void applyDeltas(Map<Long, Stats> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        Long[] accountIds = deltas.keySet().toArray(new Long[0]);
+        BigDecimal[] incoming = new BigDecimal[accountIds.length];
+        BigDecimal[] outgoing = new BigDecimal[accountIds.length];
+        Long[] counts = new Long[accountIds.length];
+        Timestamp[] lastActivity = new Timestamp[accountIds.length];
+        for (int i = 0; i < accountIds.length; i++) {
+            Stats delta = deltas.get(accountIds[i]);
+            incoming[i] = delta.totalIncoming;
+            outgoing[i] = delta.totalOutgoing;
+            counts[i] = delta.transactionCount;
+            lastActivity[i] = delta.lastActivityAt != null ? Timestamp.valueOf(delta.lastActivityAt) : null;
+        }
+        
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(APPLY_SQL);
+            Array ids = connection.createArrayOf("bigint", accountIds);
+            ps.setArray(1, ids);
+            ps.setArray(2, connection.createArrayOf("numeric", incoming));
+            ps.setArray(3, connection.createArrayOf("numeric", outgoing));
+            ps.setArray(4, connection.createArrayOf("bigint", counts));
+            ps.setArray(5, connection.createArrayOf("timestamp", lastActivity));
+            return ps;
+        });
+    }
+    
+    // Lowest and highest account id, or null when there are no accounts
+    public long[] findAccountIdRange() {
+        return jdbcTemplate.query("SELECT min(id), max(id) FROM accounts", rs -> {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[] { min, rs.getLong(2) };
+        });
+    }
+    
+    // Recomputes the stats of an id range from transactions and returns how many rows
+    // were wrong. Must run in a transaction: the rows are locked first, so postings that
+    // already touched them are visible to the recompute and later ones add on top of it.
+    public int rebuildRange(long fromId, long toId) {
+        jdbcTemplate.update(CLAIM_RANGE_SQL, fromId, toId);
+        jdbcTemplate.query(LOCK_RANGE_SQL, rs -> { }, fromId, toId);
+        return jdbcTemplate.update(REBUILD_RANGE_SQL, fromId, toId, fromId, toId, fromId, toId);
+    }
+}
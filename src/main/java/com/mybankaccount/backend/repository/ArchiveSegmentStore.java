@@ -0,0 +1,186 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// JDBC access to the cold tier's bookkeeping (archive_segments, archived_account_totals)
+// and to the month partitions being archived. Month rows are read through a cursor, so
+// forEachMonthRow must run inside a transaction.
+@Repository
+public class ArchiveSegmentStore {
+    
+    // Every transaction once per account it touches, in segment order: account, newest first
+    private static final String MONTH_ROWS_SQL =
+        "SELECT s.account_id AS account_key, t.id, t.transaction_reference, t.from_account_id, t.to_account_id, " +
+        "       fa.account_number AS from_account_number, ta.account_number AS to_account_number, " +
+        "       t.amount, t.fee, t.transaction_type, t.status, t.description, t.currency, t.failure_reason, " +
+        "       t.created_at, t.processed_at " +
+        "  FROM %s t " +
+        " CROSS JOIN LATERAL (VALUES (t.from_account_id), " +
+        "       (CASE WHEN t.to_account_id IS DISTINCT FROM t.from_account_id THEN t.to_account_id END)) s(account_id) " +
+        "  LEFT JOIN accounts fa ON fa.id = t.from_account_id " +
+        "  LEFT JOIN accounts ta ON ta.id = t.to_account_id " +
+        " WHERE s.account_id IS NOT NULL " +
+        " ORDER BY s.account_id, t.created_at DESC, t.id DESC";
+    
+    // Same definitions as account_stats, added onto the totals of earlier months
+    private static final String ADD_MONTH_TOTALS_SQL =
+        "INSERT INTO archived_account_totals (account_id, total_incoming, total_outgoing, transaction_count, last_activity_at) " +
+        "SELECT account_id, sum(incoming), sum(outgoing), count(DISTINCT transaction_id), max(created_at) FROM ( " +
+        "  SELECT to_account_id AS account_id, id AS transaction_id, created_at, " +
+        "         CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END AS incoming, 0 AS outgoing " +
+        "    FROM %1$s WHERE to_account_id IS NOT NULL " +
+        "  UNION ALL " +
+        "  SELECT from_account_id, id, created_at, 0, CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END " +
+        "    FROM %1$s WHERE from_account_id IS NOT NULL " +
+        ") legs GROUP BY account_id ORDER BY account_id " +
+        "ON CONFLICT (account_id) DO UPDATE SET " +
+        "  total_incoming = archived_account_totals.total_incoming + EXCLUDED.total_incoming, " +
+        "  total_outgoing = archived_account_totals.total_outgoing + EXCLUDED.total_outgoing, " +
+        "  transaction_count = archived_account_totals.transaction_count + EXCLUDED.transaction_count, " +
+        "  last_activity_at = greatest(archived_account_totals.last_activity_at, EXCLUDED.last_activity_at)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    
+    public ArchiveSegmentStore(JdbcTemplate jdbcTemplate,
+                               @Value("${bank.archive.fetch-size:5000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(fetchSize);
+    }
+    
+    // One segment file and its index entry
+    public static class Segment {
+        private final String fileName;
+        private final YearMonth month;
+        private final long minAccountId;
+        private final long maxAccountId;
+        private final LocalDateTime minCreatedAt;
+        private final LocalDateTime maxCreatedAt;
+        private final int rowCount;
+        
+        public Segment(String fileName, YearMonth month, long minAccountId, long maxAccountId,
+                       LocalDateTime minCreatedAt, LocalDateTime maxCreatedAt, int rowCount) {
+            this.fileName = fileName;
+            this.month = month;
+            this.minAccountId = minAccountId;
+            this.maxAccountId = maxAccountId;
+            this.minCreatedAt = minCreatedAt;
+            this.maxCreatedAt = maxCreatedAt;
+            this.rowCount = rowCount;
+        }
+        
+        // Whether the segment can hold rows of the account in [since, before)
+        public boolean mayContain(long accountId, LocalDateTime since, LocalDateTime before) {
+            return accountId >= minAccountId && accountId <= maxAccountId
+                && !maxCreatedAt.isBefore(since) && !minCreatedAt.isAfter(before);
+        }
+        
+        public String getFileName() { return fileName; }
+        public YearMonth getMonth() { return month; }
+        public long getMinAccountId() { return minAccountId; }
+        public long getMaxAccountId() { return maxAccountId; }
+        public LocalDateTime getMinCreatedAt() { return minCreatedAt; }
+        public LocalDateTime getMaxCreatedAt() { return maxCreatedAt; }
+        public int getRowCount() { return rowCount; }
+    }
+    
+    // Newest month first, and within a month in file order
+    public List<Segment> findAll() {
+        return jdbcTemplate.query(
+            "SELECT file_name, archive_month, min_account_id, max_account_id, min_created_at, max_created_at, row_count " +
+            "FROM archive_segments ORDER BY archive_month DESC, file_name",
+            (rs, rowNum) -> new Segment(
+                rs.getString("file_name"),
+                YearMonth.from(rs.getDate("archive_month").toLocalDate()),
+                rs.getLong("min_account_id"),
+                rs.getLong("max_account_id"),
+                rs.getTimestamp("min_created_at").toLocalDateTime(),
+                rs.getTimestamp("max_created_at").toLocalDateTime(),
+                rs.getInt("row_count")));
+    }
+    
+    public boolean isArchived(YearMonth month) {
+        Boolean archived = jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM archive_segments WHERE archive_month = ?)", Boolean.class,
+            Date.valueOf(month.atDay(1)));
+        return Boolean.TRUE.equals(archived);
+    }
+    
+    public void register(List<Segment> segments) {
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO archive_segments (file_name, archive_month, min_account_id, max_account_id, " +
+            "                              min_created_at, max_created_at, row_count, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, now())",
+            segments, segments.size(), (ps, segment) -> {
+                ps.setString(1, segment.getFileName());
+                ps.setDate(2, Date.valueOf(segment.getMonth().atDay(1)));
+                ps.setLong(3, segment.getMinAccountId());
+                ps.setLong(4, segment.getMaxAccountId());
+                ps.setTimestamp(5, Timestamp.valueOf(segment.getMinCreatedAt()));
+                ps.setTimestamp(6, Timestamp.valueOf(segment.getMaxCreatedAt()));
+                ps.setInt(7, segment.getRowCount());
+            });
+    }
+    
+    public void addMonthTotals(YearMonth month) {
+        jdbcTemplate.update(String.format(ADD_MONTH_TOTALS_SQL, PartitionStore.partitionName("transactions", month)));
+    }
+    
+    // Number of archived transactions touching the account
+    public long countArchived(Long accountId) {
+        List<Long> counts = jdbcTemplate.queryForList(
+            "SELECT transaction_count FROM archived_account_totals WHERE account_id = ?", Long.class, accountId);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+    
+    // Streams a month partition in segment order; the consumer gets the key account and a
+    // detached transaction whose accounts only carry the id and number
+    public void forEachMonthRow(YearMonth month, BiConsumer<Long, Transaction> consumer) {
+        String sql = String.format(MONTH_ROWS_SQL, PartitionStore.partitionName("transactions", month));
+        cursorTemplate.query(sql, rs -> { consumer.accept(rs.getLong("account_key"), map(rs)); });
+    }
+    
+    private static Transaction map(ResultSet rs) throws SQLException {
+        Transaction transaction = new Transaction();
+        transaction.setId(rs.getLong("id"));
+        transaction.setTransactionReference(rs.getString("transaction_reference"));
+        transaction.setFromAccount(account(rs, "from_account_id", "from_account_number"));
+        transaction.setToAccount(account(rs, "to_account_id", "to_account_number"));
+        transaction.setAmount(rs.getBigDecimal("amount"));
+        transaction.setFee(rs.getBigDecimal("fee"));
+        transaction.setTransactionType(Transaction.TransactionType.valueOf(rs.getString("transaction_type")));
+        transaction.setStatus(Transaction.TransactionStatus.valueOf(rs.getString("status")));
+        transaction.setDescription(rs.getString("description"));
+        transaction.setCurrency(rs.getString("currency"));
+        transaction.setFailureReason(rs.getString("failure_reason"));
+        transaction.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        Timestamp processedAt = rs.getTimestamp("processed_at");
+        transaction.setProcessedAt(processedAt != null ? processedAt.toLocalDateTime() : null);
+        return transaction;
+    }
+    
+    private static Account account(ResultSet rs, String idColumn, String numberColumn) throws SQLException {
+        long id = rs.getLong(idColumn);
+        if (rs.wasNull()) {
+            return null;
+        }
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountNumber(rs.getString(numberColumn));
+        return account;
+    }
+}
@@ -0,0 +1,95 @@
+package com.mybankaccount.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+// JDBC access to balance_checkpoints
+@Repository
+public class BalanceCheckpointStore {
+    
+    // Closing balance per account for one day, taken from the last ledger entry before
+    // midnight. Accounts without such an entry get today's balance minus every later entry.
+    private static final String WRITE_DAY_SQL =
+        "INSERT INTO balance_checkpoints (account_id, balance_date, closing_balance, ledger_seq, created_at) " +
+        "SELECT a.id, ?, " +
+        "       coalesce(last_entry.balance_after, " +
+        "                a.balance - (SELECT coalesce(sum(le.amount), 0) FROM ledger_entries le WHERE le.account_id = a.id)), " +
+        "       coalesce(last_entry.seq, 0), now() " +
+        "  FROM accounts a " +
+        "  LEFT JOIN LATERAL (SELECT le.balance_after, le.seq FROM ledger_entries le " +
+        "                      WHERE le.account_id = a.id AND le.created_at < ? " +
+        "                      ORDER BY le.seq DESC LIMIT 1) last_entry ON true " +
+        " WHERE a.created_at < ? " +
+        "ON CONFLICT (account_id, balance_date) DO UPDATE " +
+        "   SET closing_balance = EXCLUDED.closing_balance, ledger_seq = EXCLUDED.ledger_seq, " +
+        "       created_at = EXCLUDED.created_at";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public BalanceCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // A day's closing balance and the last ledger entry it covers
+    public static class Checkpoint {
+        private final LocalDate balanceDate;
+        private final BigDecimal closingBalance;
+        private final long ledgerSeq;
+        
+        Checkpoint(LocalDate balanceDate, BigDecimal closingBalance, long ledgerSeq) {
+            this.balanceDate = balanceDate;
+            this.closingBalance = closingBalance;
+            this.ledgerSeq = ledgerSeq;
+        }
+        
+        public LocalDate getBalanceDate() { return balanceDate; }
+        public BigDecimal getClosingBalance() { return closingBalance; }
+        public long getLedgerSeq() { return ledgerSeq; }
+    }
+    
+    // Writes (or rewrites) the checkpoints of one day; returns the number of accounts covered
+    public int writeDay(LocalDate day) {
+        Timestamp endOfDay = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        return jdbcTemplate.update(WRITE_DAY_SQL, Date.valueOf(day), endOfDay, endOfDay);
+    }
+    
+    public Optional<LocalDate> findLatestDay() {
+        Date latest = jdbcTemplate.queryForObject("SELECT max(balance_date) FROM balance_checkpoints", Date.class);
+        return Optional.ofNullable(latest).map(Date::toLocalDate);
+    }
+    
+    // Day of the oldest ledger entry, where the first run of the job starts
+    public Optional<LocalDate> findFirstLedgerDay() {
+        Date first = jdbcTemplate.queryForObject("SELECT min(created_at)::date FROM ledger_entries", Date.class);
+        return Optional.ofNullable(first).map(Date::toLocalDate);
+    }
+    
+    // Newest checkpoint strictly before the given day
+    public Optional<Checkpoint> findLatestBefore(Long accountId, LocalDate day) {
+        return findOne("SELECT balance_date, closing_balance, ledger_seq FROM balance_checkpoints " +
+            "WHERE account_id = ? AND balance_date < ? ORDER BY balance_date DESC LIMIT 1", accountId, day);
+    }
+    
+    // Oldest checkpoint on or after the given day; its ledger_seq bounds every entry posted that day
+    public Optional<Checkpoint> findEarliestFrom(Long accountId, LocalDate day) {
+        return findOne("SELECT balance_date, closing_balance, ledger_seq FROM balance_checkpoints " +
+            "WHERE account_id = ? AND balance_date >= ? ORDER BY balance_date LIMIT 1", accountId, day);
+    }
+    
+    private Optional<Checkpoint> findOne(String sql, Long accountId, LocalDate day) {
+        List<Checkpoint> checkpoints = jdbcTemplate.query(sql,
+            (rs, rowNum) -> new Checkpoint(
+                rs.getDate("balance_date").toLocalDate(),
+                rs.getBigDecimal("closing_balance"),
+                rs.getLong("ledger_seq")),
+            accountId, Date.valueOf(day));
+        return checkpoints.stream().findFirst();
+    }
+}
@@ -0,0 +1,112 @@
+package com.mybankaccount.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// JDBC access to idempotency_records. A row is claimed with INSERT ... ON CONFLICT DO
+// NOTHING, so exactly one request per (scope, key) gets to run, across all nodes.
+// claimed_at identifies the current claim: a stale one is taken over by moving it, and
+// complete and release only touch the row while it still holds the caller's claim.
+@Repository
+public class IdempotencyRecordStore {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public IdempotencyRecordStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // A stored row; statusCode is null while the first request is still running
+    public static class Row {
+        private final String requestHash;
+        private final Integer statusCode;
+        private final String contentType;
+        private final byte[] responseBody;
+        private final LocalDateTime claimedAt;
+        private final LocalDateTime expiresAt;
+        
+        Row(String requestHash, Integer statusCode, String contentType, byte[] responseBody,
+            LocalDateTime claimedAt, LocalDateTime expiresAt) {
+            this.requestHash = requestHash;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.responseBody = responseBody;
+            this.claimedAt = claimedAt;
+            this.expiresAt = expiresAt;
+        }
+        
+        public String getRequestHash() { return requestHash; }
+        public Integer getStatusCode() { return statusCode; }
+        public String getContentType() { return contentType; }
+        public byte[] getResponseBody() { return responseBody; }
+        public LocalDateTime getClaimedAt() { return claimedAt; }
+        public LocalDateTime getExpiresAt() { return expiresAt; }
+        
+        public boolean isCompleted() {
+            return statusCode != null;
+        }
+    }
+    
+    // Returns true when this caller now owns the key
+    public boolean tryClaim(String scope, String key, String requestHash, LocalDateTime now, LocalDateTime expiresAt) {
+        return jdbcTemplate.update(
+            "INSERT INTO idempotency_records (scope, idempotency_key, request_hash, created_at, claimed_at, expires_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (scope, idempotency_key) DO NOTHING",
+            scope, key, requestHash, Timestamp.valueOf(now), Timestamp.valueOf(now), Timestamp.valueOf(expiresAt)) == 1;
+    }
+    
+    // Moves an unfinished claim from a request that stopped renewing it to this caller.
+    // Only one of several callers seeing the same stale claim gets it.
+    public boolean tryTakeOver(String scope, String key, LocalDateTime staleClaimedAt, LocalDateTime now) {
+        return jdbcTemplate.update(
+            "UPDATE idempotency_records SET claimed_at = ? " +
+            "WHERE scope = ? AND idempotency_key = ? AND status_code IS NULL AND claimed_at = ?",
+            Timestamp.valueOf(now), scope, key, Timestamp.valueOf(staleClaimedAt)) == 1;
+    }
+    
+    public Optional<Row> find(String scope, String key) {
+        List<Row> rows = jdbcTemplate.query(
+            "SELECT request_hash, status_code, content_type, response_body, claimed_at, expires_at " +
+            "FROM idempotency_records WHERE scope = ? AND idempotency_key = ?",
+            (rs, rowNum) -> new Row(
+                rs.getString("request_hash"),
+                (Integer) rs.getObject("status_code"),
+                rs.getString("content_type"),
+                rs.getBytes("response_body"),
+                rs.getTimestamp("claimed_at").toLocalDateTime(),
+                rs.getTimestamp("expires_at").toLocalDateTime()),
+            scope, key);
+        return rows.stream().findFirst();
+    }
+    
+    public void complete(String scope, String key, LocalDateTime claimedAt, int statusCode, String contentType,
+                         byte[] responseBody) {
+        jdbcTemplate.update(
+            "UPDATE idempotency_records SET status_code = ?, content_type = ?, response_body = ? " +
+            "WHERE scope = ? AND idempotency_key = ? AND status_code IS NULL AND claimed_at = ?",
+            statusCode, contentType, responseBody, scope, key, Timestamp.valueOf(claimedAt));
+    }
+    
+    // Gives up a claim that produced no result worth keeping
+    public void release(String scope, String key, LocalDateTime claimedAt) {
+        jdbcTemplate.update(
+            "DELETE FROM idempotency_records " +
+            "WHERE scope = ? AND idempotency_key = ? AND status_code IS NULL AND claimed_at = ?",
+            scope, key, Timestamp.valueOf(claimedAt));
+    }
+    
+    public void deleteIfExpired(String scope, String key, LocalDateTime now) {
+        jdbcTemplate.update(
+            "DELETE FROM idempotency_records WHERE scope = ? AND idempotency_key = ? AND expires_at <= ?",
+            scope, key, Timestamp.valueOf(now));
+    }
+    
+    public int deleteExpired(LocalDateTime now) {
+        return jdbcTemplate.update("DELETE FROM idempotency_records WHERE expires_at <= ?", Timestamp.valueOf(now));
+    }
+}
@@ -0,0 +1,36 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.LedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Reads over ledger_entries; each query is a range scan of (account_id, seq)
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    
+    // Newest entries first, starting below the given sequence number
+    @Query("SELECT e FROM LedgerEntry e WHERE e.account.id = :accountId AND e.seq < :beforeSeq ORDER BY e.seq DESC")
+    List<LedgerEntry> findHistory(@Param("accountId") Long accountId, @Param("beforeSeq") long beforeSeq, Pageable pageable);
+    
+    // Entries of a statement between two sequence numbers, oldest first
+    @Query("SELECT e FROM LedgerEntry e WHERE e.account.id = :accountId AND e.seq BETWEEN :fromSeq AND :toSeq ORDER BY e.seq")
+    List<LedgerEntry> findStatement(@Param("accountId") Long accountId, @Param("fromSeq") long fromSeq, @Param("toSeq") long toSeq);
+    
+    // Newest entry in (afterSeq, uptoSeq] that was posted by the given time
+    @Query("SELECT e FROM LedgerEntry e WHERE e.account.id = :accountId AND e.seq > :afterSeq " +
+           "AND e.seq <= :uptoSeq AND e.createdAt <= :asOf ORDER BY e.seq DESC")
+    List<LedgerEntry> findLatestBetween(@Param("accountId") Long accountId, @Param("afterSeq") long afterSeq,
+                                        @Param("uptoSeq") long uptoSeq, @Param("asOf") LocalDateTime asOf,
+                                        Pageable pageable);
+    
+    Optional<LedgerEntry> findFirstByAccountIdOrderBySeqDesc(Long accountId);
+    
+    Optional<LedgerEntry> findFirstByAccountIdOrderBySeqAsc(Long accountId);
+}
@@ -0,0 +1,100 @@
+package com.mybankaccount.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// JDBC writes for the ledger: sequence numbers are reserved on the account rows and
+// entries are batch-inserted
+@Repository
+public class LedgerEntryWriter {
+    
+    private static final String RESERVE_SQL =
+        "UPDATE accounts a SET ledger_seq = a.ledger_seq + r.entries " +
+        "FROM unnest(?::bigint[], ?::bigint[]) AS r(account_id, entries) " +
+        "WHERE a.id = r.account_id RETURNING a.id, a.ledger_seq";
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO ledger_entries (account_id, seq, transaction_reference, transaction_type, amount, " +
+        "balance_after, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final int BATCH_SIZE = 500;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public LedgerEntryWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // An entry ready to insert
+    public static class Row {
+        private final long accountId;
+        private final long seq;
+        private final String transactionReference;
+        private final String transactionType;
+        private final BigDecimal amount;
+        private final BigDecimal balanceAfter;
+        private final LocalDateTime createdAt;
+        
+        public Row(long accountId, long seq, String transactionReference, String transactionType,
+                   BigDecimal amount, BigDecimal balanceAfter, LocalDateTime createdAt) {
+            this.accountId = accountId;
+            this.seq = seq;
+            this.transactionReference = transactionReference;
+            this.transactionType = transactionType;
+            this.amount = amount;
+            this.balanceAfter = balanceAfter;
+            this.createdAt = createdAt;
+        }
+    }
+    
+    // Reserves the given number of sequence numbers per account in one statement and
+    // returns the first reserved number per account. The caller already holds the row locks.
+    public Map<Long, Long> reserveSequences(Map<Long, Integer> entriesPerAccount) {
+        Long[] accountIds = entriesPerAccount.keySet().toArray(new Long[0]);
+        Long[] counts = entriesPerAccount.values().stream().map(Integer::longValue).toArray(Long[]::new);
+        
+        Map<Long, Long> firstSequences = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(RESERVE_SQL);
+            Array ids = connection.createArrayOf("bigint", accountIds);
+            Array entries = connection.createArrayOf("bigint", counts);
+            ps.setArray(1, ids);
+            ps.setArray(2, entries);
+            return ps;
+        }, rs -> {
+            long accountId = rs.getLong(1);
+            long lastSeq = rs.getLong(2);
+            firstSequences.put(accountId, lastSeq - entriesPerAccount.get(accountId) + 1);
+        });
+        
+        if (firstSequences.size() != entriesPerAccount.size()) {
+            throw new IllegalStateException("Ledger sequence could not be reserved for every account");
+        }
+        return firstSequences;
+    }
+    
+    public void insertAll(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, row.accountId);
+            ps.setLong(2, row.seq);
+            ps.setString(3, row.transactionReference);
+            ps.setString(4, row.transactionType);
+            ps.setBigDecimal(5, row.amount);
+            ps.setBigDecimal(6, row.balanceAfter);
+            ps.setTimestamp(7, Timestamp.valueOf(row.createdAt));
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package com.mybankaccount.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// JDBC access to the monthly partitions of transactions and payments (see V12).
+// Partition names follow <table>_YYYY_MM. Detaching and vacuuming cannot run inside a
+// transaction block, so callers must not hold a Spring transaction.
+@Repository
+public class PartitionStore {
+    
+    public static final List<String> PARTITIONED_TABLES = List.of("transactions", "payments");
+    
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    
+    private static final String LIST_SQL =
+        "SELECT c.relname FROM pg_inherits i " +
+        "  JOIN pg_class c ON c.oid = i.inhrelid " +
+        " WHERE i.inhparent = ?::regclass AND i.inhdetachpending = ? " +
+        " ORDER BY c.relname";
+    
+    // Month tables whether attached or not, including ones already detached
+    private static final String LIST_ALL_SQL =
+        "SELECT relname FROM pg_class " +
+        " WHERE relkind = 'r' AND relnamespace = current_schema()::regnamespace AND relname ~ ? " +
+        " ORDER BY relname";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public PartitionStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public static String partitionName(String table, YearMonth month) {
+        return table + "_" + month.format(SUFFIX);
+    }
+    
+    // Creates the partition for one month unless it already exists; returns its name
+    public String createMonth(String table, YearMonth month) {
+        requirePartitioned(table);
+        return jdbcTemplate.queryForObject("SELECT create_monthly_partition(?, ?)", String.class,
+            table, Date.valueOf(month.atDay(1)));
+    }
+    
+    // Months that currently have an attached partition, oldest first
+    public List<YearMonth> findAttachedMonths(String table) {
+        return findMonths(table, false);
+    }
+    
+    // Months whose concurrent detach was interrupted and still has to be finalized
+    public List<YearMonth> findDetachPendingMonths(String table) {
+        return findMonths(table, true);
+    }
+    
+    // Months that still have a table, attached or detached, oldest first
+    public List<YearMonth> findMonthTables(String table) {
+        requirePartitioned(table);
+        String prefix = table + "_";
+        return jdbcTemplate.queryForList(LIST_ALL_SQL, String.class, "^" + prefix + "[0-9]{4}_[0-9]{2}$").stream()
+            .map(name -> YearMonth.parse(name.substring(prefix.length()), SUFFIX))
+            .toList();
+    }
+    
+    // Takes a month out of the table without blocking reads and writes on the others.
+    // The partition stays behind as a standalone table.
+    public void detachConcurrently(String table, YearMonth month) {
+        requirePartitioned(table);
+        jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " +
+            partitionName(table, month) + " CONCURRENTLY");
+    }
+    
+    // Completes a concurrent detach that was interrupted part way
+    public void finalizeDetach(String table, YearMonth month) {
+        requirePartitioned(table);
+        jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " +
+            partitionName(table, month) + " FINALIZE");
+    }
+    
+    // Drops a month's table; detach it first so the parent is not locked
+    public void dropMonth(String table, YearMonth month) {
+        requirePartitioned(table);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(table, month));
+    }
+    
+    // Vacuums and analyzes one partition; freezing a closed month means autovacuum
+    // never has to scan it again for wraparound
+    public void vacuum(String table, YearMonth month, boolean freeze) {
+        requirePartitioned(table);
+        jdbcTemplate.execute("VACUUM (" + (freeze ? "FREEZE, " : "") + "ANALYZE) " + partitionName(table, month));
+    }
+    
+    private List<YearMonth> findMonths(String table, boolean detachPending) {
+        requirePartitioned(table);
+        String prefix = table + "_";
+        return jdbcTemplate.queryForList(LIST_SQL, String.class, table, detachPending).stream()
+            .filter(name -> name.startsWith(prefix))
+            .map(name -> YearMonth.parse(name.substring(prefix.length()), SUFFIX))
+            .toList();
+    }
+    
+    private static void requirePartitioned(String table) {
+        if (!PARTITIONED_TABLES.contains(table)) {
+            throw new IllegalArgumentException("Not a partitioned table: " + table);
+        }
+    }
+}
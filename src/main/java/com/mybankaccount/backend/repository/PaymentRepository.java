@@ -2,7 +2,10 @@ package com.mybankaccount.backend.repository;
 
 import com.mybankaccount.backend.entity.Payment;
 import com.mybankaccount.backend.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,15 +14,21 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+// List queries load the payment's account in the same statement: PaymentResponse reads
+// its id and number, which would otherwise be one lazy select per row
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
+    @EntityGraph(attributePaths = "account")
     List<Payment> findByUserOrderByCreatedAtDesc(User user);
     
+    @EntityGraph(attributePaths = "account")
     List<Payment> findByUserAndStatusOrderByCreatedAtDesc(User user, Payment.PaymentStatus status);
     
+    @EntityGraph(attributePaths = "account")
     List<Payment> findByUserAndPaymentTypeOrderByCreatedAtDesc(User user, Payment.PaymentType paymentType);
     
+    @EntityGraph(attributePaths = "account")
     @Query("SELECT p FROM Payment p WHERE p.user = :user AND p.createdAt BETWEEN :startDate AND :endDate ORDER BY p.createdAt DESC")
     List<Payment> findByUserAndDateRange(@Param("user") User user, 
                                        @Param("startDate") LocalDateTime startDate, 
@@ -27,13 +36,11 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
     Optional<Payment> findByTransactionId(String transactionId);
     
-    @Query("SELECT COUNT(p) FROM Payment p WHERE p.user = :user AND p.status = :status")
-    Long countByUserAndStatus(@Param("user") User user, @Param("status") Payment.PaymentStatus status);
-    
-    @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.user = :user AND p.status = 'COMPLETED' AND p.createdAt BETWEEN :startDate AND :endDate")
-    Double getTotalPaymentAmountByUserAndDateRange(@Param("user") User user, 
-                                                  @Param("startDate") LocalDateTime startDate, 
-                                                  @Param("endDate") LocalDateTime endDate);
+    // Waits for a batch that holds the row, so a payment is never processed twice
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id = :id")
+    Optional<Payment> findByIdForUpdate(@Param("id") Long id);
     
+    @EntityGraph(attributePaths = "account")
     List<Payment> findTop10ByUserOrderByCreatedAtDesc(User user);
 }
\ No newline at end of file
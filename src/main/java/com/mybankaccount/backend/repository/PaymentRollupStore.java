@@ -0,0 +1,241 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Payment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// JDBC access to payment_rollups: deltas from status changes, the summary and spending
+// reads, and user-range rebuilds from the payments table
+@Repository
+public class PaymentRollupStore {
+    
+    private static final String APPLY_SQL =
+        "INSERT INTO payment_rollups (user_id, month, payment_type, status, payment_count, total_amount) " +
+        "SELECT * FROM unnest(?::bigint[], ?::date[], ?::varchar[], ?::varchar[], ?::bigint[], ?::numeric[]) " +
+        "ON CONFLICT (user_id, month, payment_type, status) DO UPDATE SET " +
+        "  payment_count = payment_rollups.payment_count + EXCLUDED.payment_count, " +
+        "  total_amount = payment_rollups.total_amount + EXCLUDED.total_amount";
+    
+    // Counts are over all time; the amount is what completed in the given month
+    private static final String SUMMARY_SQL =
+        "SELECT coalesce(sum(payment_count) FILTER (WHERE status = 'PENDING'), 0) AS pending_count, " +
+        "       coalesce(sum(payment_count) FILTER (WHERE status = 'COMPLETED'), 0) AS completed_count, " +
+        "       coalesce(sum(payment_count) FILTER (WHERE status = 'FAILED'), 0) AS failed_count, " +
+        "       coalesce(sum(total_amount) FILTER (WHERE status = 'COMPLETED' AND month = ?), 0) AS monthly_total " +
+        "  FROM payment_rollups " +
+        " WHERE user_id = ?";
+    
+    private static final String SPENDING_SQL =
+        "SELECT month, payment_type, payment_count, total_amount " +
+        "  FROM payment_rollups " +
+        " WHERE user_id = ? AND status = 'COMPLETED' AND month >= ? AND payment_count > 0 " +
+        " ORDER BY month DESC, total_amount DESC";
+    
+    // Adds the difference between the payments table and the rows as of the statement's
+    // snapshot. A status change committed after the snapshot is in neither side of the
+    // difference but already in the row it is added to, so live updates are never lost
+    // and nothing has to be locked up front. Months older than the oldest payment still
+    // in the table have been detached and are left alone.
+    private static final String REBUILD_RANGE_SQL =
+        "WITH hot AS ( " +
+        "  SELECT date_trunc('month', min(created_at))::date AS since FROM payments " +
+        "), actual AS ( " +
+        "  SELECT user_id, date_trunc('month', created_at)::date AS month, payment_type, status, " +
+        "         count(*) AS payment_count, sum(amount) AS total_amount " +
+        "    FROM payments WHERE user_id BETWEEN ? AND ? " +
+        "   GROUP BY 1, 2, 3, 4 " +
+        "), recorded AS ( " +
+        "  SELECT user_id, month, payment_type, status, payment_count, total_amount " +
+        "    FROM payment_rollups WHERE user_id BETWEEN ? AND ? AND month >= (SELECT since FROM hot) " +
+        "), diff AS ( " +
+        "  SELECT user_id, month, payment_type, status, " +
+        "         coalesce(a.payment_count, 0) - coalesce(r.payment_count, 0) AS payment_count, " +
+        "         coalesce(a.total_amount, 0) - coalesce(r.total_amount, 0) AS total_amount " +
+        "    FROM actual a FULL JOIN recorded r USING (user_id, month, payment_type, status) " +
+        ") " +
+        "INSERT INTO payment_rollups (user_id, month, payment_type, status, payment_count, total_amount) " +
+        "SELECT user_id, month, payment_type, status, payment_count, total_amount FROM diff " +
+        " WHERE payment_count <> 0 OR total_amount <> 0 " +
+        " ORDER BY user_id, month, payment_type COLLATE \"C\", status COLLATE \"C\" " +
+        "ON CONFLICT (user_id, month, payment_type, status) DO UPDATE SET " +
+        "  payment_count = payment_rollups.payment_count + EXCLUDED.payment_count, " +
+        "  total_amount = payment_rollups.total_amount + EXCLUDED.total_amount";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public PaymentRollupStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // One row of the rollup
+    public static class Key implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing((Key key) -> key.userId)
+            .thenComparing(key -> key.month)
+            .thenComparing(key -> key.paymentType.name())
+            .thenComparing(key -> key.status.name());
+        
+        private final long userId;
+        private final LocalDate month;
+        private final Payment.PaymentType paymentType;
+        private final Payment.PaymentStatus status;
+        
+        public Key(long userId, LocalDate month, Payment.PaymentType paymentType, Payment.PaymentStatus status) {
+            this.userId = userId;
+            this.month = month;
+            this.paymentType = paymentType;
+            this.status = status;
+        }
+        
+        // The order rows are locked in, here and by the rebuild's byte-wise sort
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && compareTo((Key) other) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, month, paymentType, status);
+        }
+    }
+    
+    // Count and amount of a row, or the change to apply to them
+    public static class Totals {
+        private final long paymentCount;
+        private final BigDecimal totalAmount;
+        
+        public Totals(long paymentCount, BigDecimal totalAmount) {
+            this.paymentCount = paymentCount;
+            this.totalAmount = totalAmount;
+        }
+        
+        public Totals plus(Totals other) {
+            return new Totals(paymentCount + other.paymentCount, totalAmount.add(other.totalAmount));
+        }
+        
+        public long getPaymentCount() { return paymentCount; }
+        public BigDecimal getTotalAmount() { return totalAmount; }
+    }
+    
+    public static class Summary {
+        private final long pendingCount;
+        private final long completedCount;
+        private final long failedCount;
+        private final BigDecimal monthlyTotal;
+        
+        Summary(long pendingCount, long completedCount, long failedCount, BigDecimal monthlyTotal) {
+            this.pendingCount = pendingCount;
+            this.completedCount = completedCount;
+            this.failedCount = failedCount;
+            this.monthlyTotal = monthlyTotal;
+        }
+        
+        public long getPendingCount() { return pendingCount; }
+        public long getCompletedCount() { return completedCount; }
+        public long getFailedCount() { return failedCount; }
+        public BigDecimal getMonthlyTotal() { return monthlyTotal; }
+    }
+    
+    // Completed payments of one type in one month
+    public static class Spending {
+        private final LocalDate month;
+        private final Payment.PaymentType paymentType;
+        private final long paymentCount;
+        private final BigDecimal totalAmount;
+        
+        Spending(LocalDate month, Payment.PaymentType paymentType, long paymentCount, BigDecimal totalAmount) {
+            this.month = month;
+            this.paymentType = paymentType;
+            this.paymentCount = paymentCount;
+            this.totalAmount = totalAmount;
+        }
+        
+        public LocalDate getMonth() { return month; }
+        public Payment.PaymentType getPaymentType() { return paymentType; }
+        public long getPaymentCount() { return paymentCount; }
+        public BigDecimal getTotalAmount() { return totalAmount; }
+    }
+    
+    // Adds the given deltas in one statement. Iterate the map in key order so concurrent
+    // changes lock the rows in the same order.
+    public void applyDeltas(Map<Key, Totals> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        int size = deltas.size();
+        Long[] userIds = new Long[size];
+        Date[] months = new Date[size];
+        String[] paymentTypes = new String[size];
+        String[] statuses = new String[size];
+        Long[] counts = new Long[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        int i = 0;
+        for (Map.Entry<Key, Totals> delta : deltas.entrySet()) {
+            userIds[i] = delta.getKey().userId;
+            months[i] = Date.valueOf(delta.getKey().month);
+            paymentTypes[i] = delta.getKey().paymentType.name();
+            statuses[i] = delta.getKey().status.name();
+            counts[i] = delta.getValue().paymentCount;
+            amounts[i] = delta.getValue().totalAmount;
+            i++;
+        }
+        
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(APPLY_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", userIds));
+            ps.setArray(2, connection.createArrayOf("date", months));
+            ps.setArray(3, connection.createArrayOf("varchar", paymentTypes));
+            ps.setArray(4, connection.createArrayOf("varchar", statuses));
+            ps.setArray(5, connection.createArrayOf("bigint", counts));
+            ps.setArray(6, connection.createArrayOf("numeric", amounts));
+            return ps;
+        });
+    }
+    
+    public Summary findSummary(Long userId, LocalDate month) {
+        return jdbcTemplate.queryForObject(SUMMARY_SQL, (rs, rowNum) -> new Summary(
+                rs.getLong("pending_count"),
+                rs.getLong("completed_count"),
+                rs.getLong("failed_count"),
+                rs.getBigDecimal("monthly_total")),
+            Date.valueOf(month), userId);
+    }
+    
+    // Completed spending per month and payment type from the given month on, latest first
+    public List<Spending> findSpending(Long userId, LocalDate fromMonth) {
+        return jdbcTemplate.query(SPENDING_SQL, (rs, rowNum) -> new Spending(
+                rs.getDate("month").toLocalDate(),
+                Payment.PaymentType.valueOf(rs.getString("payment_type")),
+                rs.getLong("payment_count"),
+                rs.getBigDecimal("total_amount")),
+            userId, Date.valueOf(fromMonth));
+    }
+    
+    // Lowest and highest user id, or null when there are no users
+    public long[] findUserIdRange() {
+        return jdbcTemplate.query("SELECT min(id), max(id) FROM users", rs -> {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[] { min, rs.getLong(2) };
+        });
+    }
+    
+    // Corrects the rows of a user id range from the payments table and returns how many were wrong
+    public int rebuildRange(long fromId, long toId) {
+        return jdbcTemplate.update(REBUILD_RANGE_SQL, fromId, toId, fromId, toId);
+    }
+}
@@ -0,0 +1,20 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.PaymentSchedule;
+import com.mybankaccount.backend.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+// Owner-facing CRUD; PaymentScheduler fires runs through PaymentScheduleStore
+@Repository
+public interface PaymentScheduleRepository extends JpaRepository<PaymentSchedule, Long> {
+    
+    @EntityGraph(attributePaths = "account")
+    List<PaymentSchedule> findByUserOrderByCreatedAtDesc(User user);
+    
+    @EntityGraph(attributePaths = "account")
+    List<PaymentSchedule> findByUserAndIsActiveTrueOrderByNextRunAtAsc(User user);
+}
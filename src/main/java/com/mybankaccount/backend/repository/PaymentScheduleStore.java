@@ -0,0 +1,210 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.entity.PaymentSchedule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// JDBC access for PaymentScheduler. Upcoming runs are streamed through a server-side
+// cursor (callers must open a transaction) and only their ids and times are kept. Due
+// schedules are locked with FOR UPDATE SKIP LOCKED and re-checked against next_run_at,
+// so a run that another node has fired, or that was cancelled or moved since it was
+// loaded, is passed over.
+@Repository
+public class PaymentScheduleStore {
+    
+    // Through idx_payment_schedules_due
+    private static final String WINDOW_SQL =
+        "SELECT id, next_run_at FROM payment_schedules " +
+        " WHERE is_active AND next_run_at >= ? AND next_run_at < ?";
+    
+    private static final String OVERDUE_SQL =
+        "SELECT id, next_run_at FROM payment_schedules " +
+        " WHERE is_active AND next_run_at < ?";
+    
+    private static final String LOCK_DUE_SQL =
+        "SELECT s.id, s.user_id, s.account_id, a.account_number, s.schedule_type, s.payment_type, s.amount, " +
+        "       s.recipient_name, s.recipient_account, s.description, s.frequency, s.anchor_day, " +
+        "       s.next_run_at, s.end_at " +
+        "  FROM payment_schedules s " +
+        "  JOIN accounts a ON a.id = s.account_id " +
+        " WHERE s.id = ANY (?) AND s.is_active AND s.next_run_at <= ? " +
+        " ORDER BY s.id " +
+        "   FOR UPDATE OF s SKIP LOCKED";
+    
+    private static final String ADVANCE_SQL =
+        "UPDATE payment_schedules " +
+        "   SET next_run_at = ?, is_active = ?, run_count = run_count + 1, last_run_at = ?, " +
+        "       last_status = ?, last_reference = ?, last_error = ? " +
+        " WHERE id = ?";
+    
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    
+    public PaymentScheduleStore(JdbcTemplate jdbcTemplate,
+                                @Value("${bank.schedules.fetch-size:5000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+    
+    // A locked, due schedule with what it takes to run it
+    public static class Due {
+        private final long id;
+        private final long userId;
+        private final long accountId;
+        private final String accountNumber;
+        private final PaymentSchedule.ScheduleType scheduleType;
+        private final Payment.PaymentType paymentType;
+        private final BigDecimal amount;
+        private final String recipientName;
+        private final String recipientAccount;
+        private final String description;
+        private final PaymentSchedule.Frequency frequency;
+        private final int anchorDay;
+        private final LocalDateTime runAt;
+        private final LocalDateTime endAt;
+        
+        Due(long id, long userId, long accountId, String accountNumber, PaymentSchedule.ScheduleType scheduleType,
+            Payment.PaymentType paymentType, BigDecimal amount, String recipientName, String recipientAccount,
+            String description, PaymentSchedule.Frequency frequency, int anchorDay, LocalDateTime runAt,
+            LocalDateTime endAt) {
+            this.id = id;
+            this.userId = userId;
+            this.accountId = accountId;
+            this.accountNumber = accountNumber;
+            this.scheduleType = scheduleType;
+            this.paymentType = paymentType;
+            this.amount = amount;
+            this.recipientName = recipientName;
+            this.recipientAccount = recipientAccount;
+            this.description = description;
+            this.frequency = frequency;
+            this.anchorDay = anchorDay;
+            this.runAt = runAt;
+            this.endAt = endAt;
+        }
+        
+        public long getId() { return id; }
+        public long getUserId() { return userId; }
+        public long getAccountId() { return accountId; }
+        public String getAccountNumber() { return accountNumber; }
+        public PaymentSchedule.ScheduleType getScheduleType() { return scheduleType; }
+        public Payment.PaymentType getPaymentType() { return paymentType; }
+        public BigDecimal getAmount() { return amount; }
+        public String getRecipientName() { return recipientName; }
+        public String getRecipientAccount() { return recipientAccount; }
+        public String getDescription() { return description; }
+        public PaymentSchedule.Frequency getFrequency() { return frequency; }
+        public int getAnchorDay() { return anchorDay; }
+        public LocalDateTime getRunAt() { return runAt; }
+        public LocalDateTime getEndAt() { return endAt; }
+        
+        // The following occurrence, or null when this run is the schedule's last
+        public LocalDateTime nextRunAt() {
+            LocalDateTime next = frequency.next(runAt, anchorDay);
+            return next != null && (endAt == null || !next.isAfter(endAt)) ? next : null;
+        }
+    }
+    
+    // What a run did, written back with the schedule's next run
+    public static class Outcome {
+        private final long scheduleId;
+        private final LocalDateTime nextRunAt;
+        private final PaymentSchedule.RunStatus status;
+        private final String reference;
+        private final String error;
+        
+        public Outcome(long scheduleId, LocalDateTime nextRunAt, PaymentSchedule.RunStatus status,
+                       String reference, String error) {
+            this.scheduleId = scheduleId;
+            this.nextRunAt = nextRunAt;
+            this.status = status;
+            this.reference = reference;
+            this.error = error;
+        }
+        
+        public long getScheduleId() { return scheduleId; }
+        public LocalDateTime getNextRunAt() { return nextRunAt; }
+        public PaymentSchedule.RunStatus getStatus() { return status; }
+        public String getReference() { return reference; }
+        public String getError() { return error; }
+    }
+    
+    // Active schedules with a run in [from, until)
+    public void forEachInWindow(LocalDateTime from, LocalDateTime until, BiConsumer<Long, LocalDateTime> consumer) {
+        streamingJdbcTemplate.query(WINDOW_SQL,
+            rs -> { consumer.accept(rs.getLong("id"), rs.getTimestamp("next_run_at").toLocalDateTime()); },
+            Timestamp.valueOf(from), Timestamp.valueOf(until));
+    }
+    
+    // Active schedules with a run before the given time that is still waiting
+    public void forEachOverdue(LocalDateTime before, BiConsumer<Long, LocalDateTime> consumer) {
+        streamingJdbcTemplate.query(OVERDUE_SQL,
+            rs -> { consumer.accept(rs.getLong("id"), rs.getTimestamp("next_run_at").toLocalDateTime()); },
+            Timestamp.valueOf(before));
+    }
+    
+    public List<Due> lockDue(Collection<Long> scheduleIds, LocalDateTime now) {
+        if (scheduleIds.isEmpty()) {
+            return List.of();
+        }
+        
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(LOCK_DUE_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", scheduleIds.toArray()));
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            return ps;
+        }, (rs, rowNum) -> {
+            String paymentType = rs.getString("payment_type");
+            Timestamp endAt = rs.getTimestamp("end_at");
+            return new Due(
+                rs.getLong("id"),
+                rs.getLong("user_id"),
+                rs.getLong("account_id"),
+                rs.getString("account_number"),
+                PaymentSchedule.ScheduleType.valueOf(rs.getString("schedule_type")),
+                paymentType != null ? Payment.PaymentType.valueOf(paymentType) : null,
+                rs.getBigDecimal("amount"),
+                rs.getString("recipient_name"),
+                rs.getString("recipient_account"),
+                rs.getString("description"),
+                PaymentSchedule.Frequency.valueOf(rs.getString("frequency")),
+                rs.getInt("anchor_day"),
+                rs.getTimestamp("next_run_at").toLocalDateTime(),
+                endAt != null ? endAt.toLocalDateTime() : null);
+        });
+    }
+    
+    public void advance(List<Outcome> outcomes, LocalDateTime runAt) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.batchUpdate(ADVANCE_SQL, outcomes, BATCH_SIZE, (ps, outcome) -> {
+            ps.setTimestamp(1, outcome.getNextRunAt() != null ? Timestamp.valueOf(outcome.getNextRunAt()) : null);
+            ps.setBoolean(2, outcome.getNextRunAt() != null);
+            ps.setTimestamp(3, Timestamp.valueOf(runAt));
+            ps.setString(4, outcome.getStatus().name());
+            ps.setString(5, outcome.getReference());
+            ps.setString(6, truncate(outcome.getError()));
+            ps.setLong(7, outcome.getScheduleId());
+        });
+    }
+    
+    private static String truncate(String message) {
+        return message != null && message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
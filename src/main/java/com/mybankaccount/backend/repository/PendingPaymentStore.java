@@ -0,0 +1,93 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Payment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// JDBC access for the bulk payment processor. PENDING payments are claimed with
+// FOR UPDATE SKIP LOCKED, so threads and nodes draining the backlog take disjoint
+// chunks and pass over a payment that is being processed on its own. Must run inside
+// a transaction.
+@Repository
+public class PendingPaymentStore {
+    
+    // Oldest first through idx_payments_pending_created
+    private static final String CLAIM_SQL =
+        "SELECT id, created_at, user_id, account_id, amount, payment_type, recipient_name " +
+        "  FROM payments " +
+        " WHERE status = 'PENDING' " +
+        " ORDER BY created_at " +
+        " LIMIT ? " +
+        "   FOR UPDATE SKIP LOCKED";
+    
+    private static final String STATUS_SQL =
+        "UPDATE payments SET status = ?, processed_at = ? WHERE id = ? AND created_at = ?";
+    
+    private static final int BATCH_SIZE = 500;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public PendingPaymentStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // A claimed payment, with what it takes to post it
+    public static class Claimed {
+        private final long id;
+        private final LocalDateTime createdAt;
+        private final long userId;
+        private final long accountId;
+        private final BigDecimal amount;
+        private final Payment.PaymentType paymentType;
+        private final String recipientName;
+        
+        Claimed(long id, LocalDateTime createdAt, long userId, long accountId, BigDecimal amount,
+                Payment.PaymentType paymentType, String recipientName) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.userId = userId;
+            this.accountId = accountId;
+            this.amount = amount;
+            this.paymentType = paymentType;
+            this.recipientName = recipientName;
+        }
+        
+        public long getId() { return id; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public long getUserId() { return userId; }
+        public long getAccountId() { return accountId; }
+        public BigDecimal getAmount() { return amount; }
+        public Payment.PaymentType getPaymentType() { return paymentType; }
+        public String getRecipientName() { return recipientName; }
+    }
+    
+    public List<Claimed> claim(int limit) {
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Claimed(
+                rs.getLong("id"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getLong("user_id"),
+                rs.getLong("account_id"),
+                rs.getBigDecimal("amount"),
+                Payment.PaymentType.valueOf(rs.getString("payment_type")),
+                rs.getString("recipient_name")),
+            limit);
+    }
+    
+    public void updateStatus(List<Claimed> payments, Payment.PaymentStatus status, LocalDateTime processedAt) {
+        if (payments.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.batchUpdate(STATUS_SQL, payments, BATCH_SIZE, (ps, payment) -> {
+            ps.setString(1, status.name());
+            ps.setTimestamp(2, Timestamp.valueOf(processedAt));
+            ps.setLong(3, payment.getId());
+            ps.setTimestamp(4, Timestamp.valueOf(payment.getCreatedAt()));
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package com.mybankaccount.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// JDBC access for the stuck-transaction reaper. Stale PENDING rows are claimed with
+// FOR UPDATE SKIP LOCKED, so rows still held by a live request or by another node's
+// reaper are passed over instead of waited on. Must run inside a transaction.
+@Repository
+public class StuckTransactionStore {
+    
+    // Oldest first through idx_transactions_pending_created. posted_at is set when the
+    // posting reached the ledger, i.e. the money moved and only the status was lost.
+    private static final String CLAIM_SQL =
+        "SELECT t.id, t.created_at, t.from_account_id, t.to_account_id, t.amount, " +
+        "       (SELECT min(l.created_at) FROM ledger_entries l " +
+        "         WHERE l.transaction_reference = t.transaction_reference) AS posted_at " +
+        "  FROM transactions t " +
+        " WHERE t.status = 'PENDING' AND t.created_at < ? " +
+        " ORDER BY t.created_at " +
+        " LIMIT ? " +
+        "   FOR UPDATE OF t SKIP LOCKED";
+    
+    private static final String COMPLETE_SQL =
+        "UPDATE transactions SET status = 'COMPLETED', processed_at = ? " +
+        " WHERE id = ? AND created_at = ? AND status = 'PENDING'";
+    
+    private static final String CANCEL_SQL =
+        "UPDATE transactions SET status = 'CANCELLED', processed_at = now(), failure_reason = ? " +
+        " WHERE id = ? AND created_at = ? AND status = 'PENDING'";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public StuckTransactionStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // A claimed row; postedAt is null when no ledger entry exists for it
+    public static class Stale {
+        private final long id;
+        private final LocalDateTime createdAt;
+        private final Long fromAccountId;
+        private final Long toAccountId;
+        private final BigDecimal amount;
+        private final LocalDateTime postedAt;
+        
+        Stale(long id, LocalDateTime createdAt, Long fromAccountId, Long toAccountId, BigDecimal amount,
+              LocalDateTime postedAt) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+            this.postedAt = postedAt;
+        }
+        
+        public boolean isPosted() { return postedAt != null; }
+        public long getId() { return id; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public Long getFromAccountId() { return fromAccountId; }
+        public Long getToAccountId() { return toAccountId; }
+        public BigDecimal getAmount() { return amount; }
+        public LocalDateTime getPostedAt() { return postedAt; }
+    }
+    
+    public List<Stale> claim(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            long fromAccountId = rs.getLong("from_account_id");
+            Long from = rs.wasNull() ? null : fromAccountId;
+            long toAccountId = rs.getLong("to_account_id");
+            Long to = rs.wasNull() ? null : toAccountId;
+            Timestamp postedAt = rs.getTimestamp("posted_at");
+            return new Stale(rs.getLong("id"), rs.getTimestamp("created_at").toLocalDateTime(), from, to,
+                rs.getBigDecimal("amount"), postedAt != null ? postedAt.toLocalDateTime() : null);
+        }, Timestamp.valueOf(cutoff), limit);
+    }
+    
+    public void complete(List<Stale> rows) {
+        jdbcTemplate.batchUpdate(COMPLETE_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(row.getPostedAt()));
+            ps.setLong(2, row.getId());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getCreatedAt()));
+        });
+    }
+    
+    public void cancel(List<Stale> rows, String reason) {
+        jdbcTemplate.batchUpdate(CANCEL_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setString(1, reason);
+            ps.setLong(2, row.getId());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getCreatedAt()));
+        });
+    }
+    
+    // created_at of the oldest PENDING row before the cutoff, or null if there is none
+    public LocalDateTime findOldestPending(LocalDateTime cutoff) {
+        return jdbcTemplate.query(
+            "SELECT min(created_at) FROM transactions WHERE status = 'PENDING' AND created_at < ?",
+            rs -> {
+                rs.next();
+                Timestamp oldest = rs.getTimestamp(1);
+                return oldest != null ? oldest.toLocalDateTime() : null;
+            },
+            Timestamp.valueOf(cutoff));
+    }
+}
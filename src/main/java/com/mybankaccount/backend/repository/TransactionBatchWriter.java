@@ -0,0 +1,58 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Transaction;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+// Inserts transaction rows with JDBC batching, for paths that post many at once
+@Repository
+public class TransactionBatchWriter {
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO transactions (transaction_reference, from_account_id, to_account_id, amount, " +
+        "transaction_type, status, description, fee, created_at, processed_at, currency, failure_reason) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final int BATCH_SIZE = 500;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public TransactionBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public void insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.batchUpdate(INSERT_SQL, transactions, BATCH_SIZE, (ps, t) -> {
+            ps.setString(1, t.getTransactionReference());
+            setAccountId(ps, 2, t.getFromAccount() != null ? t.getFromAccount().getId() : null);
+            setAccountId(ps, 3, t.getToAccount() != null ? t.getToAccount().getId() : null);
+            ps.setBigDecimal(4, t.getAmount());
+            ps.setString(5, t.getTransactionType().name());
+            ps.setString(6, t.getStatus().name());
+            ps.setString(7, t.getDescription());
+            ps.setBigDecimal(8, t.getFee());
+            ps.setTimestamp(9, t.getCreatedAt() != null ? Timestamp.valueOf(t.getCreatedAt()) : null);
+            ps.setTimestamp(10, t.getProcessedAt() != null ? Timestamp.valueOf(t.getProcessedAt()) : null);
+            ps.setString(11, t.getCurrency());
+            ps.setString(12, t.getFailureReason());
+        });
+    }
+    
+    private static void setAccountId(PreparedStatement ps, int index, Long accountId) throws SQLException {
+        if (accountId != null) {
+            ps.setLong(index, accountId);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
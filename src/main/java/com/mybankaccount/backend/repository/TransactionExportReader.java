@@ -0,0 +1,82 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.entity.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+// Reads transactions for exports through a server-side cursor: rows are fetched in
+// chunks of fetch-size and handed to the consumer one at a time, never collected.
+// The PostgreSQL driver only uses a cursor inside a transaction, so callers must open one.
+@Repository
+public class TransactionExportReader {
+    
+    private static final String SELECT =
+        "SELECT t.id, t.transaction_reference, fa.account_number AS from_account_number, " +
+        "       ta.account_number AS to_account_number, t.amount, t.transaction_type, t.status, " +
+        "       t.description, t.fee, t.created_at, t.processed_at, t.currency, t.failure_reason " +
+        "  FROM transactions t " +
+        "  LEFT JOIN accounts fa ON fa.id = t.from_account_id " +
+        "  LEFT JOIN accounts ta ON ta.id = t.to_account_id ";
+    
+    // Outgoing and incoming sides as separate ordered scans, merged by the planner
+    private static final String BY_ACCOUNT_SQL =
+        "SELECT * FROM ((" + SELECT + " WHERE t.from_account_id = ?) " +
+        "UNION ALL (" + SELECT + " WHERE t.to_account_id = ? AND t.from_account_id IS DISTINCT FROM ?)) h " +
+        "ORDER BY h.created_at DESC, h.id DESC";
+    
+    private static final String BY_DATE_RANGE_SQL =
+        SELECT + " WHERE t.created_at BETWEEN ? AND ? ORDER BY t.created_at DESC, t.id DESC";
+    
+    private static final String BY_STATUS_SQL =
+        SELECT + " WHERE t.status = ? ORDER BY t.created_at DESC, t.id DESC";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public TransactionExportReader(JdbcTemplate jdbcTemplate,
+                                   @Value("${bank.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+    
+    public void forEachByAccount(Long accountId, Consumer<TransactionResponse> consumer) {
+        jdbcTemplate.query(BY_ACCOUNT_SQL, rs -> { consumer.accept(map(rs)); }, accountId, accountId, accountId);
+    }
+    
+    public void forEachByDateRange(LocalDateTime startDate, LocalDateTime endDate, Consumer<TransactionResponse> consumer) {
+        jdbcTemplate.query(BY_DATE_RANGE_SQL, rs -> { consumer.accept(map(rs)); },
+            Timestamp.valueOf(startDate), Timestamp.valueOf(endDate));
+    }
+    
+    public void forEachByStatus(Transaction.TransactionStatus status, Consumer<TransactionResponse> consumer) {
+        jdbcTemplate.query(BY_STATUS_SQL, rs -> { consumer.accept(map(rs)); }, status.name());
+    }
+    
+    private static TransactionResponse map(ResultSet rs) throws SQLException {
+        return new TransactionResponse(
+            rs.getLong("id"),
+            rs.getString("transaction_reference"),
+            rs.getString("from_account_number"),
+            rs.getString("to_account_number"),
+            rs.getBigDecimal("amount"),
+            Transaction.TransactionType.valueOf(rs.getString("transaction_type")),
+            Transaction.TransactionStatus.valueOf(rs.getString("status")),
+            rs.getString("description"),
+            rs.getBigDecimal("fee"),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            toLocalDateTime(rs.getTimestamp("processed_at")),
+            rs.getString("currency"),
+            rs.getString("failure_reason"));
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
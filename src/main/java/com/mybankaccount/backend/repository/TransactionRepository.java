@@ -1,5 +1,6 @@
 package com.mybankaccount.backend.repository;
 
+import com.mybankaccount.backend.dto.TransactionResponse;
 import com.mybankaccount.backend.entity.Transaction;
 import com.mybankaccount.backend.entity.Account;
 import org.springframework.data.domain.Page;
@@ -17,8 +18,20 @@ import java.util.Optional;
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     
-    // Find by transaction reference
-    Optional<Transaction> findByTransactionReference(String transactionReference);
+    // Selects exactly the TransactionResponse columns, with both account numbers joined
+    // in the same statement instead of loaded through the lazy account proxies
+    String RESPONSE_SELECT =
+        "SELECT new com.mybankaccount.backend.dto.TransactionResponse(t.id, t.transactionReference, " +
+        "fa.accountNumber, ta.accountNumber, t.amount, t.transactionType, t.status, t.description, t.fee, " +
+        "t.createdAt, t.processedAt, t.currency, t.failureReason) " +
+        "FROM Transaction t LEFT JOIN t.fromAccount fa LEFT JOIN t.toAccount ta ";
+    
+    // Find by transaction reference, through transaction_references where the reference is
+    // unique; created_at then keeps the read in one partition. Empty once the month is archived.
+    @Query(value = "SELECT t.* FROM transaction_references r " +
+                   "JOIN transactions t ON t.id = r.transaction_id AND t.created_at = r.created_at " +
+                   "WHERE r.transaction_reference = :reference", nativeQuery = true)
+    Optional<Transaction> findByTransactionReference(@Param("reference") String transactionReference);
     
     // Find transactions by account (either from or to)
     @Query("SELECT t FROM Transaction t WHERE t.fromAccount = :account OR t.toAccount = :account ORDER BY t.createdAt DESC")
@@ -27,6 +40,39 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     @Query("SELECT t FROM Transaction t WHERE t.fromAccount = :account OR t.toAccount = :account ORDER BY t.createdAt DESC")
     List<Transaction> findByAccount(@Param("account") Account account);
     
+    // One side of an account's history for AccountHistoryQuery, as responses: rows at or
+    // after :since and strictly older than (createdAt, id), newest first, at most
+    // page-size rows. Each is a single range scan on (from/to_account_id, created_at, id).
+    // The incoming side skips rows the outgoing side already returns, so a transfer to the
+    // same account is seen once. The plain "createdAt <= :createdAt" lets the planner skip
+    // monthly partitions.
+    @Query(RESPONSE_SELECT +
+           "WHERE t.fromAccount.id = :accountId AND t.createdAt >= :since AND t.createdAt <= :createdAt " +
+           "AND (t.createdAt < :createdAt OR t.id < :id) ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionResponse> findOutgoingSlice(@Param("accountId") Long accountId,
+                                                @Param("since") LocalDateTime since,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") long id,
+                                                Pageable pageable);
+    
+    @Query(RESPONSE_SELECT +
+           "WHERE t.toAccount.id = :accountId AND (t.fromAccount IS NULL OR t.fromAccount.id <> :accountId) " +
+           "AND t.createdAt >= :since AND t.createdAt <= :createdAt " +
+           "AND (t.createdAt < :createdAt OR t.id < :id) ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionResponse> findIncomingSlice(@Param("accountId") Long accountId,
+                                                @Param("since") LocalDateTime since,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") long id,
+                                                Pageable pageable);
+    
+    // Counts of the two sides from :since on, without the OR predicate
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.fromAccount.id = :accountId AND t.createdAt >= :since")
+    long countOutgoing(@Param("accountId") Long accountId, @Param("since") LocalDateTime since);
+    
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.toAccount.id = :accountId " +
+           "AND (t.fromAccount IS NULL OR t.fromAccount.id <> :accountId) AND t.createdAt >= :since")
+    long countIncoming(@Param("accountId") Long accountId, @Param("since") LocalDateTime since);
+    
     // Find transactions by from account
     Page<Transaction> findByFromAccountOrderByCreatedAtDesc(Account fromAccount, Pageable pageable);
     List<Transaction> findByFromAccountOrderByCreatedAtDesc(Account fromAccount);
@@ -39,6 +85,9 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     List<Transaction> findByStatusOrderByCreatedAtDesc(Transaction.TransactionStatus status);
     Page<Transaction> findByStatusOrderByCreatedAtDesc(Transaction.TransactionStatus status, Pageable pageable);
     
+    @Query(RESPONSE_SELECT + "WHERE t.status = :status ORDER BY t.createdAt DESC")
+    List<TransactionResponse> findResponsesByStatus(@Param("status") Transaction.TransactionStatus status);
+    
     // Find by transaction type
     List<Transaction> findByTransactionTypeOrderByCreatedAtDesc(Transaction.TransactionType transactionType);
     Page<Transaction> findByTransactionTypeOrderByCreatedAtDesc(Transaction.TransactionType transactionType, Pageable pageable);
@@ -53,6 +102,10 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
                                      @Param("endDate") LocalDateTime endDate, 
                                      Pageable pageable);
     
+    @Query(RESPONSE_SELECT + "WHERE t.createdAt BETWEEN :startDate AND :endDate ORDER BY t.createdAt DESC")
+    List<TransactionResponse> findResponsesByDateRange(@Param("startDate") LocalDateTime startDate,
+                                                       @Param("endDate") LocalDateTime endDate);
+    
     // Find account transactions by date range
     @Query("SELECT t FROM Transaction t WHERE (t.fromAccount = :account OR t.toAccount = :account) " +
            "AND t.createdAt BETWEEN :startDate AND :endDate ORDER BY t.createdAt DESC")
@@ -97,10 +150,17 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     List<Transaction> findRecentTransactionsByAccount(@Param("account") Account account, 
                                                      @Param("since") LocalDateTime since);
     
-    // Check if transaction reference exists
-    boolean existsByTransactionReference(String transactionReference);
+    // Check if transaction reference was ever posted, including archived months
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM transaction_references WHERE transaction_reference = :reference)",
+           nativeQuery = true)
+    boolean existsByTransactionReference(@Param("reference") String transactionReference);
     
-    // Find failed transactions with retry count less than max
+    // Find failed transactions created since the given time; retry state is in transaction_retries
     @Query("SELECT t FROM Transaction t WHERE t.status = 'FAILED' AND t.createdAt >= :since")
     List<Transaction> findFailedTransactionsSince(@Param("since") LocalDateTime since);
+    
+    // A transaction to re-drive with its accounts; created_at keeps the lookup in one partition
+    @Query("SELECT t FROM Transaction t LEFT JOIN FETCH t.fromAccount LEFT JOIN FETCH t.toAccount " +
+           "WHERE t.id = :id AND t.createdAt = :createdAt")
+    Optional<Transaction> findForRetry(@Param("id") Long id, @Param("createdAt") LocalDateTime createdAt);
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Transaction;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// JDBC access to transaction_retries. Due rows are claimed by pushing next_attempt_at
+// past a lease in one statement with FOR UPDATE SKIP LOCKED, so nodes polling at the
+// same time take disjoint rows and no lock outlives the claim.
+@Repository
+public class TransactionRetryStore {
+    
+    public enum State {
+        SCHEDULED, SUCCEEDED, EXHAUSTED, TERMINAL
+    }
+    
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    private static final String CLAIM_SQL =
+        "UPDATE transaction_retries r SET next_attempt_at = ? " +
+        " WHERE r.transaction_id IN (" +
+        "       SELECT transaction_id FROM transaction_retries " +
+        "        WHERE state = 'SCHEDULED' AND next_attempt_at <= ? " +
+        "        ORDER BY next_attempt_at " +
+        "        LIMIT ? " +
+        "          FOR UPDATE SKIP LOCKED) " +
+        "RETURNING r.transaction_id, r.transaction_created_at, r.attempts";
+    
+    // The entity keeps the id Hibernate assigned before the posting rolled back
+    private static final String INSERT_FAILED_SQL =
+        "INSERT INTO transactions (id, transaction_reference, from_account_id, to_account_id, amount, " +
+        "transaction_type, status, description, fee, created_at, processed_at, currency, failure_reason) " +
+        "VALUES (coalesce(?, nextval('transactions_seq')), ?, ?, ?, ?, ?, 'FAILED', ?, ?, ?, ?, ?, ?) " +
+        "RETURNING id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public TransactionRetryStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // A claimed row; attempts counts the tries made so far, the original one included
+    public static class Due {
+        private final long transactionId;
+        private final LocalDateTime transactionCreatedAt;
+        private final int attempts;
+        
+        Due(long transactionId, LocalDateTime transactionCreatedAt, int attempts) {
+            this.transactionId = transactionId;
+            this.transactionCreatedAt = transactionCreatedAt;
+            this.attempts = attempts;
+        }
+        
+        public long getTransactionId() { return transactionId; }
+        public LocalDateTime getTransactionCreatedAt() { return transactionCreatedAt; }
+        public int getAttempts() { return attempts; }
+    }
+    
+    // Writes the FAILED row of a posting whose own transaction rolled back; returns its id
+    public long insertFailedTransaction(Transaction t) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_FAILED_SQL);
+            setLong(ps, 1, t.getId());
+            ps.setString(2, t.getTransactionReference());
+            setLong(ps, 3, t.getFromAccount() != null ? t.getFromAccount().getId() : null);
+            setLong(ps, 4, t.getToAccount() != null ? t.getToAccount().getId() : null);
+            ps.setBigDecimal(5, t.getAmount());
+            ps.setString(6, t.getTransactionType().name());
+            ps.setString(7, t.getDescription());
+            ps.setBigDecimal(8, t.getFee());
+            ps.setTimestamp(9, Timestamp.valueOf(t.getCreatedAt()));
+            ps.setTimestamp(10, t.getProcessedAt() != null ? Timestamp.valueOf(t.getProcessedAt()) : null);
+            ps.setString(11, t.getCurrency());
+            ps.setString(12, truncate(t.getFailureReason()));
+            return ps;
+        }, rs -> {
+            rs.next();
+            return rs.getLong(1);
+        });
+    }
+    
+    public void insert(long transactionId, LocalDateTime transactionCreatedAt, State state, int attempts,
+                       LocalDateTime nextAttemptAt, String lastError, LocalDateTime now) {
+        jdbcTemplate.update(
+            "INSERT INTO transaction_retries (transaction_id, transaction_created_at, state, attempts, " +
+            "next_attempt_at, last_error, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (transaction_id) DO NOTHING",
+            transactionId, Timestamp.valueOf(transactionCreatedAt), state.name(), attempts,
+            nextAttemptAt != null ? Timestamp.valueOf(nextAttemptAt) : null, truncate(lastError),
+            Timestamp.valueOf(now));
+    }
+    
+    public List<Due> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int limit) {
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Due(
+                rs.getLong("transaction_id"),
+                rs.getTimestamp("transaction_created_at").toLocalDateTime(),
+                rs.getInt("attempts")),
+            Timestamp.valueOf(leaseUntil), Timestamp.valueOf(now), limit);
+    }
+    
+    // Locks a claimed row for the attempt; false if another node has already moved it on
+    public boolean lockForAttempt(long transactionId, int attempts) {
+        return !jdbcTemplate.queryForList(
+            "SELECT 1 FROM transaction_retries WHERE transaction_id = ? AND state = 'SCHEDULED' " +
+            "AND attempts = ? FOR UPDATE",
+            Integer.class, transactionId, attempts).isEmpty();
+    }
+    
+    public void markSucceeded(long transactionId, int attempts, LocalDateTime now) {
+        jdbcTemplate.update(
+            "UPDATE transaction_retries SET state = 'SUCCEEDED', attempts = ?, next_attempt_at = NULL, " +
+            "updated_at = ? WHERE transaction_id = ?",
+            attempts, Timestamp.valueOf(now), transactionId);
+    }
+    
+    // Records a failed attempt; nextAttemptAt is null unless state is SCHEDULED
+    public void markFailed(long transactionId, State state, int attempts, LocalDateTime nextAttemptAt,
+                           String lastError, LocalDateTime now) {
+        jdbcTemplate.update(
+            "UPDATE transaction_retries SET state = ?, attempts = ?, next_attempt_at = ?, last_error = ?, " +
+            "updated_at = ? WHERE transaction_id = ?",
+            state.name(), attempts, nextAttemptAt != null ? Timestamp.valueOf(nextAttemptAt) : null,
+            truncate(lastError), Timestamp.valueOf(now), transactionId);
+    }
+    
+    // Keeps the transaction's own failure_reason in step with the latest attempt
+    public void updateFailureReason(long transactionId, LocalDateTime createdAt, String reason) {
+        jdbcTemplate.update(
+            "UPDATE transactions SET failure_reason = ? WHERE id = ? AND created_at = ? AND status = 'FAILED'",
+            truncate(reason), transactionId, Timestamp.valueOf(createdAt));
+    }
+    
+    public Map<String, Long> countByState() {
+        Map<String, Long> counts = new TreeMap<>();
+        jdbcTemplate.query("SELECT state, count(*) FROM transaction_retries GROUP BY state",
+            rs -> { counts.put(rs.getString(1), rs.getLong(2)); });
+        return counts;
+    }
+    
+    // next_attempt_at of the most overdue scheduled row, or null if nothing is due
+    public LocalDateTime findOldestDue(LocalDateTime now) {
+        return jdbcTemplate.query(
+            "SELECT min(next_attempt_at) FROM transaction_retries WHERE state = 'SCHEDULED' AND next_attempt_at <= ?",
+            rs -> {
+                rs.next();
+                Timestamp oldest = rs.getTimestamp(1);
+                return oldest != null ? oldest.toLocalDateTime() : null;
+            },
+            Timestamp.valueOf(now));
+    }
+    
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+    
+    private static String truncate(String message) {
+        return message != null && message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
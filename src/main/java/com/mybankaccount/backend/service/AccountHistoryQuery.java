@@ -0,0 +1,226 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+// Reads an account's history, as responses, without the "from = :account OR to = :account"
+// predicate.
+// The outgoing and incoming sides are separate keyset range scans, each already ordered
+// newest first, and are merged lazily: a side is only asked for its next slice when the
+// merge has used up the previous one, so a page costs about page-size index reads per
+// side however long the history is. Months moved to the cold tier are all older than
+// the table's rows, so they are read from TransactionArchive after the table is used up.
+@Component
+public class AccountHistoryQuery {
+    
+    // Lower bound for "no lower bound"; older than any stored row
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1900, 1, 1, 0, 0);
+    
+    // Newest first, ties broken by id, matching the scan order of both sides
+    private static final Comparator<TransactionResponse> NEWEST_FIRST =
+        Comparator.comparing(TransactionResponse::getCreatedAt).thenComparing(TransactionResponse::getId).reversed();
+    
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchive transactionArchive;
+    private final int sliceSize;
+    
+    public AccountHistoryQuery(TransactionRepository transactionRepository,
+                               TransactionArchive transactionArchive,
+                               @Value("${bank.history.slice-size:500}") int sliceSize) {
+        this.transactionRepository = transactionRepository;
+        this.transactionArchive = transactionArchive;
+        this.sliceSize = sliceSize;
+    }
+    
+    // Up to limit rows strictly older than the cursor
+    public List<TransactionResponse> page(Long accountId, TransactionCursor before, int limit) {
+        return collect(iterate(accountId, EARLIEST, before, limit), 0, limit);
+    }
+    
+    // Rows offset .. offset + limit of the full history; reads offset + limit rows
+    public List<TransactionResponse> page(Long accountId, int offset, int limit) {
+        return collect(iterate(accountId, EARLIEST, TransactionCursor.START, offset + limit), offset, limit);
+    }
+    
+    // Every row with since <= createdAt <= until; a null until means no upper bound
+    public List<TransactionResponse> between(Long accountId, LocalDateTime since, LocalDateTime until) {
+        TransactionCursor before = until != null ? TransactionCursor.at(until, Long.MAX_VALUE) : TransactionCursor.START;
+        return collect(iterate(accountId, since, before, sliceSize), 0, Integer.MAX_VALUE);
+    }
+    
+    public List<TransactionResponse> all(Long accountId) {
+        return collect(iterate(accountId, EARLIEST, TransactionCursor.START, sliceSize), 0, Integer.MAX_VALUE);
+    }
+    
+    public long count(Long accountId) {
+        LocalDateTime hotSince = hotSince(EARLIEST);
+        return transactionRepository.countOutgoing(accountId, hotSince)
+            + transactionRepository.countIncoming(accountId, hotSince)
+            + transactionArchive.count(accountId);
+    }
+    
+    // Lazy k-way merge of the two sides; firstSlice sizes the first read of each side.
+    // Archived rows follow once both sides are exhausted.
+    public Iterator<TransactionResponse> iterate(Long accountId, LocalDateTime since, TransactionCursor before, int firstSlice) {
+        LocalDateTime hotSince = hotSince(since);
+        List<Iterator<TransactionResponse>> sides = List.of(
+            new SideScan(before, firstSlice, (cursor, limit) -> transactionRepository.findOutgoingSlice(
+                accountId, hotSince, cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, limit))),
+            new SideScan(before, firstSlice, (cursor, limit) -> transactionRepository.findIncomingSlice(
+                accountId, hotSince, cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, limit))));
+        Iterator<TransactionResponse> hot = new MergeIterator(sides);
+        if (!since.isBefore(hotSince)) {
+            return hot;
+        }
+        return new ConcatIterator(hot, () -> transactionArchive.iterate(accountId, since, before));
+    }
+    
+    // Rows before the archive boundary are no longer read from the table, even while a
+    // freshly archived partition is still being dropped
+    private LocalDateTime hotSince(LocalDateTime since) {
+        LocalDateTime archivedBefore = transactionArchive.getHotSince();
+        return archivedBefore != null && archivedBefore.isAfter(since) ? archivedBefore : since;
+    }
+    
+    private static List<TransactionResponse> collect(Iterator<TransactionResponse> rows, int offset, int limit) {
+        for (int skipped = 0; skipped < offset && rows.hasNext(); skipped++) {
+            rows.next();
+        }
+        List<TransactionResponse> result = new ArrayList<>(Math.min(limit, 1024));
+        while (result.size() < limit && rows.hasNext()) {
+            result.add(rows.next());
+        }
+        return result;
+    }
+    
+    @FunctionalInterface
+    private interface SliceReader {
+        List<TransactionResponse> read(TransactionCursor before, int limit);
+    }
+    
+    // One side, read slice by slice from the cursor onwards
+    private final class SideScan implements Iterator<TransactionResponse> {
+        private final SliceReader reader;
+        private final ArrayDeque<TransactionResponse> buffer = new ArrayDeque<>();
+        private TransactionCursor cursor;
+        private int nextSlice;
+        private boolean exhausted;
+        
+        SideScan(TransactionCursor start, int firstSlice, SliceReader reader) {
+            this.reader = reader;
+            this.cursor = start;
+            this.nextSlice = Math.max(1, Math.min(firstSlice, sliceSize));
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (buffer.isEmpty() && !exhausted) {
+                List<TransactionResponse> slice = reader.read(cursor, nextSlice);
+                buffer.addAll(slice);
+                exhausted = slice.size() < nextSlice;
+                if (!slice.isEmpty()) {
+                    cursor = TransactionCursor.after(slice.get(slice.size() - 1));
+                }
+                // Callers that keep reading past the first page are walking a long range
+                nextSlice = sliceSize;
+            }
+            return !buffer.isEmpty();
+        }
+        
+        @Override
+        public TransactionResponse next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffer.poll();
+        }
+    }
+    
+    // Always yields the newest head among the sides. The side that produced the last row
+    // is only refilled when another row is asked for, so a full page never triggers an
+    // extra slice read.
+    private static final class MergeIterator implements Iterator<TransactionResponse> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> NEWEST_FIRST.compare(a.row, b.row));
+        private Iterator<TransactionResponse> pending;
+        
+        MergeIterator(List<Iterator<TransactionResponse>> sides) {
+            for (Iterator<TransactionResponse> side : sides) {
+                if (side.hasNext()) {
+                    heads.add(new Head(side.next(), side));
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (pending != null) {
+                if (pending.hasNext()) {
+                    heads.add(new Head(pending.next(), pending));
+                }
+                pending = null;
+            }
+            return !heads.isEmpty();
+        }
+        
+        @Override
+        public TransactionResponse next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Head head = heads.poll();
+            pending = head.side;
+            return head.row;
+        }
+    }
+    
+    // The first iterator, then the second, which is only created once the first runs out
+    private static final class ConcatIterator implements Iterator<TransactionResponse> {
+        private Iterator<TransactionResponse> current;
+        private Supplier<Iterator<TransactionResponse>> rest;
+        
+        ConcatIterator(Iterator<TransactionResponse> first, Supplier<Iterator<TransactionResponse>> rest) {
+            this.current = first;
+            this.rest = rest;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (!current.hasNext() && rest != null) {
+                current = rest.get();
+                rest = null;
+            }
+            return current.hasNext();
+        }
+        
+        @Override
+        public TransactionResponse next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+    
+    private static final class Head {
+        private final TransactionResponse row;
+        private final Iterator<TransactionResponse> side;
+        
+        Head(TransactionResponse row, Iterator<TransactionResponse> side) {
+            this.row = row;
+            this.side = side;
+        }
+    }
+}
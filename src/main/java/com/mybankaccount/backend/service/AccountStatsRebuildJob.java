@@ -0,0 +1,111 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.AccountStatsStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Recomputes account_stats from the transactions table. The account id space is cut
+// into chunks that are rebuilt in parallel, each in its own short transaction, so live
+// postings only ever wait for one chunk. Used for backfill and as a periodic drift check.
+@Component
+public class AccountStatsRebuildJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AccountStatsRebuildJob.class);
+    
+    private final AccountStatsStore accountStatsStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    public AccountStatsRebuildJob(AccountStatsStore accountStatsStore,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${bank.stats.rebuild.threads:4}") int threads,
+                                  @Value("${bank.stats.rebuild.chunk-size:1000}") int chunkSize) {
+        this.accountStatsStore = accountStatsStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "account-stats-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunkSize = chunkSize;
+    }
+    
+    // What one rebuild covered and how many accounts it had to correct
+    public static class Result {
+        private final int chunks;
+        private final int driftedAccounts;
+        
+        Result(int chunks, int driftedAccounts) {
+            this.chunks = chunks;
+            this.driftedAccounts = driftedAccounts;
+        }
+        
+        public int getChunks() { return chunks; }
+        public int getDriftedAccounts() { return driftedAccounts; }
+    }
+    
+    @Scheduled(cron = "${bank.stats.rebuild.cron:0 30 3 * * SUN}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+    
+    public Result rebuild() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("An account stats rebuild is already running");
+        }
+        try {
+            long[] range = accountStatsStore.findAccountIdRange();
+            if (range == null) {
+                return new Result(0, 0);
+            }
+            
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (long from = range[0]; from <= range[1]; from += chunkSize) {
+                long chunkFrom = from;
+                long chunkTo = Math.min(from + chunkSize - 1, range[1]);
+                chunks.add(executor.submit(() ->
+                    transactionTemplate.execute(status -> accountStatsStore.rebuildRange(chunkFrom, chunkTo))));
+            }
+            
+            int drifted = 0;
+            for (Future<Integer> chunk : chunks) {
+                drifted += chunk.get();
+            }
+            
+            if (drifted > 0) {
+                logger.warn("Account stats rebuild corrected {} account(s) across {} chunk(s)", drifted, chunks.size());
+            } else {
+                logger.info("Account stats rebuild found no drift across {} chunk(s)", chunks.size());
+            }
+            return new Result(chunks.size(), drifted);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rebuilding account stats", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Account stats rebuild failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,59 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.AccountStatsStore;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Folds newly inserted transaction rows into account_stats. Called in the transaction
+// that inserts them, so the totals commit or roll back together with the rows.
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class AccountStatsRecorder {
+    
+    private final AccountStatsStore accountStatsStore;
+    
+    public AccountStatsRecorder(AccountStatsStore accountStatsStore) {
+        this.accountStatsStore = accountStatsStore;
+    }
+    
+    public void record(Transaction transaction) {
+        recordAll(List.of(transaction));
+    }
+    
+    public void recordAll(List<Transaction> transactions) {
+        accountStatsStore.applyDeltas(deltas(transactions, 1));
+    }
+    
+    // A row that was counted when it was inserted and has completed since: amounts only
+    public void recordCompletion(Transaction transaction) {
+        accountStatsStore.applyDeltas(deltas(List.of(transaction), 0));
+    }
+    
+    private static Map<Long, AccountStatsStore.Stats> deltas(List<Transaction> transactions, long countPerRow) {
+        Map<Long, AccountStatsStore.Stats> deltas = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            BigDecimal completed = transaction.isCompleted() ? transaction.getAmount() : BigDecimal.ZERO;
+            Long fromId = transaction.getFromAccount() != null ? transaction.getFromAccount().getId() : null;
+            Long toId = transaction.getToAccount() != null ? transaction.getToAccount().getId() : null;
+            
+            if (fromId != null) {
+                deltas.merge(fromId, new AccountStatsStore.Stats(BigDecimal.ZERO, completed, countPerRow,
+                    transaction.getCreatedAt()), AccountStatsStore.Stats::plus);
+            }
+            if (toId != null) {
+                // A transaction touching the same account twice still counts once
+                long count = toId.equals(fromId) ? 0 : countPerRow;
+                deltas.merge(toId, new AccountStatsStore.Stats(completed, BigDecimal.ZERO, count,
+                    transaction.getCreatedAt()), AccountStatsStore.Stats::plus);
+            }
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,45 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.BalanceCheckpointStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+// Nightly job writing each account's closing balance for every day since the last run,
+// up to yesterday. The first run backfills from the day of the oldest ledger entry, so
+// every day an account has history for has a checkpoint. Each day commits on its own,
+// so an interrupted backfill resumes where it stopped.
+@Component
+public class BalanceCheckpointJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceCheckpointJob.class);
+    
+    private final BalanceCheckpointStore balanceCheckpointStore;
+    private final TransactionTemplate transactionTemplate;
+    
+    public BalanceCheckpointJob(BalanceCheckpointStore balanceCheckpointStore,
+                                PlatformTransactionManager transactionManager) {
+        this.balanceCheckpointStore = balanceCheckpointStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Scheduled(cron = "${bank.checkpoint.cron:0 15 0 * * *}")
+    public void writeCheckpoints() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate day = balanceCheckpointStore.findLatestDay()
+            .map(latest -> latest.plusDays(1))
+            .or(balanceCheckpointStore::findFirstLedgerDay)
+            .orElse(yesterday);
+        
+        for (; !day.isAfter(yesterday); day = day.plusDays(1)) {
+            LocalDate checkpointDay = day;
+            Integer accounts = transactionTemplate.execute(status -> balanceCheckpointStore.writeDay(checkpointDay));
+            logger.info("Wrote balance checkpoints for {} covering {} account(s)", day, accounts);
+        }
+    }
+}
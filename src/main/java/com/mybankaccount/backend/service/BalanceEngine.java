@@ -0,0 +1,313 @@
+package com.mybankaccount.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory balance engine. Accounts are partitioned into shards by id and each shard has
+// one writer thread fed by a lock-free ring buffer, so transfers inside a shard run without
+// locks. A transfer across shards reserves the amount on the source shard, credits the
+// destination shard and then confirms the hold, or releases it if the credit is refused.
+// With a directory set, each shard keeps a snapshot plus an event log there; start()
+// restores from them, settles any hold left open by a crash and then takes the committed
+// table state of every restored account, since the log can hold changes the database
+// never committed.
+public class BalanceEngine implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceEngine.class);
+    
+    private final BalanceEngineShard[] shards;
+    private final int ringCapacity;
+    private final Path directory;
+    private final long snapshotEveryOps;
+    private final boolean syncWrites;
+    private final AtomicLong holdIds = new AtomicLong();
+    private boolean started;
+    
+    // Directory may be null for a purely in-memory engine
+    public BalanceEngine(int shardCount, int ringCapacity, Path directory, long snapshotEveryOps, boolean syncWrites) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Balance engine needs at least one shard");
+        }
+        this.shards = new BalanceEngineShard[shardCount];
+        this.ringCapacity = ringCapacity;
+        this.directory = directory;
+        this.snapshotEveryOps = snapshotEveryOps;
+        this.syncWrites = syncWrites;
+    }
+    
+    // Account state as held by a shard; only its writer thread changes it
+    static final class AccountState {
+        final long id;
+        final String accountNumber;
+        volatile boolean active;
+        volatile BigDecimal balance;
+        
+        AccountState(long id, String accountNumber, boolean active, BigDecimal balance) {
+            this.id = id;
+            this.accountNumber = accountNumber;
+            this.active = active;
+            this.balance = balance;
+        }
+    }
+    
+    // Amount taken from the source of a cross-shard transfer and not yet confirmed
+    static final class Hold {
+        final long holdId;
+        final long accountId;
+        final long destinationAccountId;
+        final BigDecimal amount;
+        
+        Hold(long holdId, long accountId, long destinationAccountId, BigDecimal amount) {
+            this.holdId = holdId;
+            this.accountId = accountId;
+            this.destinationAccountId = destinationAccountId;
+            this.amount = amount;
+        }
+    }
+    
+    // Everything read back from snapshots and logs on start
+    static final class State {
+        final Map<Long, AccountState> accounts = new HashMap<>();
+        final Map<Long, Hold> holds = new HashMap<>();
+        final Set<Long> credits = new HashSet<>();
+    }
+    
+    // Committed state of an account as the accounts table has it
+    public static final class Committed {
+        final boolean active;
+        final BigDecimal balance;
+        
+        public Committed(boolean active, BigDecimal balance) {
+            this.active = active;
+            this.balance = balance;
+        }
+    }
+    
+    // Reads the committed state of the given accounts; ids it does not return are dropped
+    @FunctionalInterface
+    public interface CommittedState {
+        Map<Long, Committed> load(Set<Long> accountIds);
+    }
+    
+    // Trusts the snapshots and logs as they are; for engines with no database behind them
+    public void start() {
+        start(null);
+    }
+    
+    public synchronized void start(CommittedState committedState) {
+        if (started) {
+            return;
+        }
+        
+        State state = new State();
+        Set<Integer> existingShards = Set.of();
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                existingShards = EngineShardLog.restore(directory, state);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not restore the balance engine from " + directory, e);
+            }
+        }
+        int settled = settleOpenHolds(state);
+        int corrected = committedState != null && !state.accounts.isEmpty()
+            ? reconcile(state, committedState.load(state.accounts.keySet()))
+            : 0;
+        
+        for (int i = 0; i < shards.length; i++) {
+            EngineShardLog log = directory != null ? new EngineShardLog(directory, i, syncWrites) : null;
+            shards[i] = new BalanceEngineShard(i, ringCapacity, log, snapshotEveryOps);
+        }
+        for (AccountState account : state.accounts.values()) {
+            shardFor(account.id).load(account);
+        }
+        // Kept so that a crash before every shard has its fresh snapshot settles the same way
+        for (long holdId : state.credits) {
+            shards[0].loadCredit(holdId);
+        }
+        // Hold ids stay unique across restarts without being persisted
+        holdIds.set(System.currentTimeMillis() << 20);
+        
+        // Starting writes a fresh snapshot per shard, so files of a larger old layout can go
+        for (BalanceEngineShard shard : shards) {
+            shard.start();
+        }
+        for (int index : existingShards) {
+            if (index >= shards.length) {
+                try {
+                    EngineShardLog.delete(directory, index);
+                } catch (IOException e) {
+                    logger.warn("Could not delete old balance engine shard {} files", index, e);
+                }
+            }
+        }
+        
+        started = true;
+        logger.info("Balance engine started with {} shard(s), {} account(s) restored, {} open hold(s) settled, "
+            + "{} account(s) corrected from the table", shards.length, state.accounts.size(), settled, corrected);
+    }
+    
+    // Stops every shard even if interrupted part way, then restores the interrupt
+    @Override
+    public synchronized void close() {
+        if (!started) {
+            return;
+        }
+        boolean interrupted = false;
+        for (BalanceEngineShard shard : shards) {
+            try {
+                shard.stop();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        started = false;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    public int shardOf(long accountId) {
+        // Spread sequential ids evenly over the shards
+        return Math.floorMod(Long.hashCode(accountId * 0x9E3779B97F4A7C15L), shards.length);
+    }
+    
+    public boolean isRegistered(long accountId) {
+        return shardFor(accountId).isRegistered(accountId);
+    }
+    
+    // Makes an account known to the engine with its current balance; no-op when already known
+    public void register(long accountId, String accountNumber, boolean active, BigDecimal balance) {
+        BalanceEngineShard shard = shardFor(accountId);
+        if (!shard.isRegistered(accountId)) {
+            check(shard.call(EngineCommand.register(accountId, accountNumber, active, balance)));
+        }
+    }
+    
+    public boolean isActive(long accountId) {
+        AccountState account = shardFor(accountId).account(accountId);
+        return account != null && account.active;
+    }
+    
+    public void setActive(long accountId, boolean active) {
+        BalanceEngineShard shard = shardFor(accountId);
+        if (shard.isRegistered(accountId)) {
+            check(shard.call(EngineCommand.setActive(accountId, active)));
+        }
+    }
+    
+    public void transfer(long fromAccountId, long toAccountId, BigDecimal amount) {
+        BalanceEngineShard source = shardFor(fromAccountId);
+        BalanceEngineShard destination = shardFor(toAccountId);
+        if (source == destination) {
+            check(source.call(EngineCommand.transfer(fromAccountId, toAccountId, amount)));
+            return;
+        }
+        
+        long holdId = holdIds.incrementAndGet();
+        check(source.call(EngineCommand.reserve(holdId, fromAccountId, toAccountId, amount)));
+        String refused = destination.call(EngineCommand.credit(holdId, toAccountId, amount));
+        if (refused != null) {
+            check(source.call(EngineCommand.release(holdId)));
+            throw new RuntimeException(refused);
+        }
+        source.submit(EngineCommand.confirm(holdId));
+    }
+    
+    public void deposit(long accountId, BigDecimal amount) {
+        check(shardFor(accountId).call(EngineCommand.deposit(accountId, amount)));
+    }
+    
+    public void withdraw(long accountId, BigDecimal amount) {
+        check(shardFor(accountId).call(EngineCommand.withdraw(accountId, amount)));
+    }
+    
+    // Applies a change without any checks; used to undo postings the database rolled back
+    public void adjust(long accountId, BigDecimal delta) {
+        check(shardFor(accountId).call(EngineCommand.adjust(accountId, delta)));
+    }
+    
+    public Optional<BigDecimal> getBalance(long accountId) {
+        AccountState account = shardFor(accountId).account(accountId);
+        return account != null ? Optional.of(account.balance) : Optional.empty();
+    }
+    
+    public int getAccountCount() {
+        int count = 0;
+        for (BalanceEngineShard shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+    
+    // Asks every shard to write a snapshot and start a new log
+    public void snapshot() {
+        for (BalanceEngineShard shard : shards) {
+            check(shard.call(EngineCommand.snapshot()));
+        }
+    }
+    
+    private BalanceEngineShard shardFor(long accountId) {
+        return shards[shardOf(accountId)];
+    }
+    
+    private static void check(String error) {
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+    }
+    
+    // A hold whose credit reached the destination log is finished; any other hold is refunded
+    private static int settleOpenHolds(State state) {
+        int settled = 0;
+        for (Iterator<Hold> iterator = state.holds.values().iterator(); iterator.hasNext(); ) {
+            Hold hold = iterator.next();
+            if (!state.credits.contains(hold.holdId)) {
+                AccountState source = state.accounts.get(hold.accountId);
+                if (source != null) {
+                    source.balance = source.balance.add(hold.amount);
+                }
+            }
+            iterator.remove();
+            settled++;
+        }
+        return settled;
+    }
+    
+    // Takes the table's state for every restored account and returns how many differed
+    private static int reconcile(State state, Map<Long, Committed> committed) {
+        int corrected = 0;
+        for (Iterator<AccountState> iterator = state.accounts.values().iterator(); iterator.hasNext(); ) {
+            AccountState account = iterator.next();
+            Committed row = committed.get(account.id);
+            if (row == null) {
+                iterator.remove();
+                corrected++;
+            } else if (account.active != row.active || account.balance.compareTo(row.balance) != 0) {
+                logger.warn("Balance engine account {} restored as {} but committed as {}; taking the committed balance",
+                    account.id, account.balance, row.balance);
+                account.active = row.active;
+                account.balance = row.balance;
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+}
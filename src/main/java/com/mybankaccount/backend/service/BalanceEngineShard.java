@@ -0,0 +1,396 @@
+package com.mybankaccount.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+// One partition of the balance engine. A single writer thread owns every account in the
+// shard and applies commands from its ring buffer one after another, so balance checks
+// and updates need no locks. After each drained batch the writer flushes the event log
+// once and only then reports the results, so an acknowledged change is in the log.
+final class BalanceEngineShard implements Runnable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceEngineShard.class);
+    
+    private static final int MAX_DRAIN = 256;
+    private static final int IDLE_SPINS = 200;
+    private static final long IDLE_PARK_NANOS = 50_000;
+    // Credits only matter until the source shard confirms the hold, which follows at once
+    private static final int RECENT_CREDITS = 1 << 16;
+    
+    private final int index;
+    private final EngineRingBuffer<EngineCommand> ring;
+    private final EngineShardLog log;
+    private final long snapshotEveryOps;
+    
+    // Written by the writer thread only; readers see balances through the volatile fields
+    private final Map<Long, BalanceEngine.AccountState> accounts = new ConcurrentHashMap<>();
+    private final Map<Long, BalanceEngine.Hold> holds = new HashMap<>();
+    private final Map<Long, Boolean> recentCredits = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENT_CREDITS;
+        }
+    };
+    
+    private long mutationsSinceSnapshot;
+    private boolean snapshotRequested;
+    
+    private volatile boolean running;
+    private volatile boolean parked;
+    private Thread writer;
+    
+    BalanceEngineShard(int index, int ringCapacity, EngineShardLog log, long snapshotEveryOps) {
+        this.index = index;
+        this.ring = new EngineRingBuffer<>(ringCapacity);
+        this.log = log;
+        this.snapshotEveryOps = snapshotEveryOps;
+    }
+    
+    // Before start only
+    void load(BalanceEngine.AccountState account) {
+        accounts.put(account.id, account);
+    }
+    
+    // Before start only
+    void loadCredit(long holdId) {
+        recentCredits.put(holdId, Boolean.TRUE);
+    }
+    
+    void start() {
+        if (log != null) {
+            writeSnapshot();
+        }
+        running = true;
+        writer = new Thread(this, "balance-engine-shard-" + index);
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join(5000);
+        }
+    }
+    
+    boolean isRegistered(long accountId) {
+        return accounts.containsKey(accountId);
+    }
+    
+    BalanceEngine.AccountState account(long accountId) {
+        return accounts.get(accountId);
+    }
+    
+    int size() {
+        return accounts.size();
+    }
+    
+    // Submits and waits; returns the failure reason or null
+    String call(EngineCommand command) {
+        submit(command);
+        return command.await();
+    }
+    
+    void submit(EngineCommand command) {
+        while (!ring.offer(command)) {
+            if (!running) {
+                throw new IllegalStateException("Balance engine is not running");
+            }
+            // Ring is full: let the writer catch up
+            Thread.onSpinWait();
+        }
+        if (!running) {
+            throw new IllegalStateException("Balance engine is not running");
+        }
+        // A missed wake-up only costs one bounded park on the writer side
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+    }
+    
+    @Override
+    public void run() {
+        List<EngineCommand> batch = new ArrayList<>(MAX_DRAIN);
+        String[] results = new String[MAX_DRAIN];
+        int idleSpins = 0;
+        
+        while (running || !ring.isEmpty()) {
+            EngineCommand command = ring.poll();
+            if (command == null) {
+                if (++idleSpins < IDLE_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    parked = true;
+                    if (running && ring.isEmpty()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    parked = false;
+                }
+                continue;
+            }
+            idleSpins = 0;
+            
+            do {
+                results[batch.size()] = apply(command);
+                batch.add(command);
+            } while (batch.size() < MAX_DRAIN && (command = ring.poll()) != null);
+            
+            String failure = persist();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(failure != null ? failure : results[i]);
+            }
+            batch.clear();
+            
+            if (failure != null) {
+                // In-memory state is ahead of the log now; stop and let a restart restore it
+                running = false;
+                failPending(failure);
+                return;
+            }
+        }
+        
+        if (log != null) {
+            try {
+                writeSnapshot();
+                log.close();
+            } catch (RuntimeException e) {
+                logger.error("Balance engine shard {} could not write its final snapshot", index, e);
+            }
+        }
+        failPending("Balance engine is not running");
+    }
+    
+    private String apply(EngineCommand command) {
+        switch (command.op) {
+            case REGISTER:
+                return register(command);
+            case SET_ACTIVE:
+                return setActive(command);
+            case TRANSFER:
+                return transfer(command);
+            case DEPOSIT:
+                return deposit(command);
+            case WITHDRAW:
+                return withdraw(command);
+            case ADJUST:
+                return adjust(command);
+            case RESERVE:
+                return reserve(command);
+            case CREDIT:
+                return credit(command);
+            case CONFIRM:
+                return confirm(command);
+            case RELEASE:
+                return release(command);
+            case SNAPSHOT:
+                snapshotRequested = true;
+                return null;
+            default:
+                return "Unsupported engine command " + command.op;
+        }
+    }
+    
+    private String register(EngineCommand command) {
+        if (!accounts.containsKey(command.accountId)) {
+            changed(new BalanceEngine.AccountState(
+                command.accountId, command.accountNumber, command.active, command.amount), true);
+        }
+        return null;
+    }
+    
+    private String setActive(EngineCommand command) {
+        BalanceEngine.AccountState account = accounts.get(command.accountId);
+        if (account == null) {
+            return "Account not found: " + command.accountId;
+        }
+        account.active = command.active;
+        changed(account, false);
+        return null;
+    }
+    
+    private String transfer(EngineCommand command) {
+        BalanceEngine.AccountState from = accounts.get(command.accountId);
+        BalanceEngine.AccountState to = accounts.get(command.counterpartyId);
+        if (from == null) {
+            return "Source account not found: " + command.accountId;
+        }
+        if (to == null) {
+            return "Destination account not found: " + command.counterpartyId;
+        }
+        if (!from.active) {
+            return "Source account is not active";
+        }
+        if (!to.active) {
+            return "Destination account is not active";
+        }
+        if (from.balance.compareTo(command.amount) < 0) {
+            return "Insufficient balance in source account";
+        }
+        
+        from.balance = from.balance.subtract(command.amount);
+        to.balance = to.balance.add(command.amount);
+        changed(from, false);
+        changed(to, false);
+        return null;
+    }
+    
+    private String deposit(EngineCommand command) {
+        BalanceEngine.AccountState account = accounts.get(command.accountId);
+        if (account == null) {
+            return "Account not found: " + command.accountId;
+        }
+        if (!account.active) {
+            return "Account is not active";
+        }
+        
+        account.balance = account.balance.add(command.amount);
+        changed(account, false);
+        return null;
+    }
+    
+    private String withdraw(EngineCommand command) {
+        BalanceEngine.AccountState account = accounts.get(command.accountId);
+        if (account == null) {
+            return "Account not found: " + command.accountId;
+        }
+        if (!account.active) {
+            return "Account is not active";
+        }
+        if (account.balance.compareTo(command.amount) < 0) {
+            return "Insufficient balance";
+        }
+        
+        account.balance = account.balance.subtract(command.amount);
+        changed(account, false);
+        return null;
+    }
+    
+    // Unconditional change, used to undo a posting the database did not keep
+    private String adjust(EngineCommand command) {
+        BalanceEngine.AccountState account = accounts.get(command.accountId);
+        if (account == null) {
+            return "Account not found: " + command.accountId;
+        }
+        
+        account.balance = account.balance.add(command.amount);
+        changed(account, false);
+        return null;
+    }
+    
+    // First half of a cross-shard transfer: debit the source and keep the amount on hold
+    private String reserve(EngineCommand command) {
+        BalanceEngine.AccountState from = accounts.get(command.accountId);
+        if (from == null) {
+            return "Source account not found: " + command.accountId;
+        }
+        if (!from.active) {
+            return "Source account is not active";
+        }
+        if (from.balance.compareTo(command.amount) < 0) {
+            return "Insufficient balance in source account";
+        }
+        
+        from.balance = from.balance.subtract(command.amount);
+        BalanceEngine.Hold hold = new BalanceEngine.Hold(
+            command.holdId, command.accountId, command.counterpartyId, command.amount);
+        holds.put(hold.holdId, hold);
+        changed(from, false);
+        if (log != null) {
+            log.holdOpened(hold);
+        }
+        return null;
+    }
+    
+    // Second half, on the destination shard
+    private String credit(EngineCommand command) {
+        BalanceEngine.AccountState to = accounts.get(command.accountId);
+        if (to == null) {
+            return "Destination account not found: " + command.accountId;
+        }
+        if (!to.active) {
+            return "Destination account is not active";
+        }
+        
+        to.balance = to.balance.add(command.amount);
+        recentCredits.put(command.holdId, Boolean.TRUE);
+        changed(to, false);
+        if (log != null) {
+            log.credited(command.holdId);
+        }
+        return null;
+    }
+    
+    // The destination was credited; the hold is done
+    private String confirm(EngineCommand command) {
+        if (holds.remove(command.holdId) != null && log != null) {
+            log.holdClosed(command.holdId);
+        }
+        return null;
+    }
+    
+    // The destination refused the credit; give the amount back to the source
+    private String release(EngineCommand command) {
+        BalanceEngine.Hold hold = holds.remove(command.holdId);
+        if (hold == null) {
+            return null;
+        }
+        
+        BalanceEngine.AccountState from = accounts.get(hold.accountId);
+        from.balance = from.balance.add(hold.amount);
+        changed(from, false);
+        if (log != null) {
+            log.holdClosed(hold.holdId);
+        }
+        return null;
+    }
+    
+    private void changed(BalanceEngine.AccountState account, boolean added) {
+        if (added) {
+            accounts.put(account.id, account);
+        }
+        if (log != null) {
+            log.account(account);
+        }
+        mutationsSinceSnapshot++;
+    }
+    
+    // Returns a failure reason when the log could not be written
+    private String persist() {
+        if (log == null) {
+            return null;
+        }
+        try {
+            log.flush();
+            if (snapshotRequested || mutationsSinceSnapshot >= snapshotEveryOps) {
+                writeSnapshot();
+            }
+            return null;
+        } catch (RuntimeException e) {
+            logger.error("Balance engine shard {} could not persist its log; stopping the shard", index, e);
+            return "Balance engine could not persist the change";
+        }
+    }
+    
+    private void writeSnapshot() {
+        log.writeSnapshot(accounts.values(), holds.values(), recentCredits.keySet());
+        mutationsSinceSnapshot = 0;
+        snapshotRequested = false;
+    }
+    
+    private void failPending(String reason) {
+        EngineCommand command;
+        while ((command = ring.poll()) != null) {
+            command.complete(reason);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+
+import java.math.BigDecimal;
+
+// Applies balance changes to accounts under a concurrency-control scheme selected
+// with bank.balance.strategy. Implementations leave the passed entities holding the
+// balances that were written, and throw when the source account cannot cover a debit.
+public interface BalanceMutationStrategy {
+    
+    // Move money between two accounts
+    void transfer(Account fromAccount, Account toAccount, BigDecimal amount);
+    
+    // Add money to an account
+    void deposit(Account account, BigDecimal amount);
+    
+    // Take money from an account
+    void withdraw(Account account, BigDecimal amount);
+}
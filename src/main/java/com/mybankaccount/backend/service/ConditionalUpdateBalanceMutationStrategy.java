@@ -0,0 +1,65 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.repository.AccountRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+// One UPDATE ... SET balance = balance - ? WHERE id = ? AND balance >= ? per side.
+// The database does the check and the write atomically; no read is needed first.
+@Component
+@ConditionalOnProperty(name = "bank.balance.strategy", havingValue = "conditional")
+public class ConditionalUpdateBalanceMutationStrategy implements BalanceMutationStrategy {
+    
+    private final AccountRepository accountRepository;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    public ConditionalUpdateBalanceMutationStrategy(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+    }
+    
+    @Override
+    public void transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        // Each UPDATE holds its row lock until commit, so touch rows in id order
+        if (fromAccount.getId() < toAccount.getId()) {
+            debit(fromAccount, amount, "Insufficient balance in source account");
+            credit(toAccount, amount, "Destination account is not active");
+        } else {
+            credit(toAccount, amount, "Destination account is not active");
+            debit(fromAccount, amount, "Insufficient balance in source account");
+        }
+        
+        entityManager.refresh(fromAccount);
+        entityManager.refresh(toAccount);
+    }
+    
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        credit(account, amount, "Account is not active");
+        entityManager.refresh(account);
+    }
+    
+    @Override
+    public void withdraw(Account account, BigDecimal amount) {
+        debit(account, amount, "Insufficient balance");
+        entityManager.refresh(account);
+    }
+    
+    private void debit(Account account, BigDecimal amount, String failureMessage) {
+        if (accountRepository.debitIfSufficient(account.getId(), amount) != 1) {
+            throw new RuntimeException(failureMessage);
+        }
+    }
+    
+    private void credit(Account account, BigDecimal amount, String failureMessage) {
+        if (accountRepository.creditIfActive(account.getId(), amount) != 1) {
+            throw new RuntimeException(failureMessage);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.repository.AccountRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+
+// The in-memory BalanceEngine decides every balance change; the accounts table then
+// records it as a delta in the same database transaction. Debits are reserved in the
+// engine before commit and given back if the transaction does not commit; credits reach
+// the engine only after commit, so nothing is ever approved against money that may still
+// roll back. The engine is the source of truth while this strategy is active, so every
+// balance change must go through it.
+@Component
+@ConditionalOnProperty(name = "bank.balance.strategy", havingValue = "engine")
+public class EngineBalanceMutationStrategy implements BalanceMutationStrategy {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EngineBalanceMutationStrategy.class);
+    
+    private final BalanceEngine balanceEngine;
+    private final AccountRepository accountRepository;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    public EngineBalanceMutationStrategy(BalanceEngine balanceEngine, AccountRepository accountRepository) {
+        this.balanceEngine = balanceEngine;
+        this.accountRepository = accountRepository;
+    }
+    
+    @Override
+    public void transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        register(fromAccount);
+        register(toAccount);
+        if (!balanceEngine.isActive(fromAccount.getId())) {
+            throw new RuntimeException("Source account is not active");
+        }
+        if (!balanceEngine.isActive(toAccount.getId())) {
+            throw new RuntimeException("Destination account is not active");
+        }
+        reserve(fromAccount, amount, "Insufficient balance in source account");
+        
+        // Row locks are held until commit, so record in id order
+        boolean sourceFirst = fromAccount.getId() < toAccount.getId();
+        Account first = sourceFirst ? fromAccount : toAccount;
+        Account second = sourceFirst ? toAccount : fromAccount;
+        BigDecimal firstDelta = sourceFirst ? amount.negate() : amount;
+        try {
+            record(first, firstDelta);
+            try {
+                record(second, firstDelta.negate());
+            } catch (RuntimeException e) {
+                // The caller may still commit, as the batch paths do for failed items
+                record(first, firstDelta.negate());
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            balanceEngine.adjust(fromAccount.getId(), amount);
+            throw e;
+        }
+        
+        undoOnRollback(() -> balanceEngine.adjust(fromAccount.getId(), amount));
+        creditAfterCommit(toAccount, amount);
+    }
+    
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        register(account);
+        if (!balanceEngine.isActive(account.getId())) {
+            throw new RuntimeException("Account is not active");
+        }
+        record(account, amount);
+        creditAfterCommit(account, amount);
+    }
+    
+    @Override
+    public void withdraw(Account account, BigDecimal amount) {
+        register(account);
+        reserve(account, amount, "Insufficient balance");
+        try {
+            record(account, amount.negate());
+        } catch (RuntimeException e) {
+            balanceEngine.adjust(account.getId(), amount);
+            throw e;
+        }
+        undoOnRollback(() -> balanceEngine.adjust(account.getId(), amount));
+    }
+    
+    // Accounts enter the engine with their table balance the first time they are used
+    private void register(Account account) {
+        balanceEngine.register(account.getId(), account.getAccountNumber(), account.isActive(), account.getBalance());
+    }
+    
+    private void reserve(Account account, BigDecimal amount, String insufficientMessage) {
+        try {
+            balanceEngine.withdraw(account.getId(), amount);
+        } catch (RuntimeException e) {
+            if ("Insufficient balance".equals(e.getMessage())) {
+                throw new RuntimeException(insufficientMessage, e);
+            }
+            throw e;
+        }
+    }
+    
+    // The table refuses a delta that would take the balance below zero, in case it and the
+    // engine ever disagree
+    private void record(Account account, BigDecimal delta) {
+        if (accountRepository.applyBalanceDelta(account.getId(), delta) == 0) {
+            throw new RuntimeException("Account balance does not cover the change: " + account.getAccountNumber());
+        }
+        entityManager.refresh(account);
+    }
+    
+    private void undoOnRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    try {
+                        undo.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Could not undo a rolled-back balance change in the balance engine", e);
+                    }
+                }
+            }
+        });
+    }
+    
+    // The table already holds the credit, so the engine takes it unchecked. If that fails the
+    // next engine start picks the committed balance up from the table.
+    private void creditAfterCommit(Account account, BigDecimal amount) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            balanceEngine.adjust(account.getId(), amount);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    balanceEngine.adjust(account.getId(), amount);
+                } catch (RuntimeException e) {
+                    logger.error("Could not apply a committed credit to account {} in the balance engine",
+                        account.getId(), e);
+                }
+            }
+        });
+    }
+}
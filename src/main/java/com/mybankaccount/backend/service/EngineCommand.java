@@ -0,0 +1,104 @@
+package com.mybankaccount.backend.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.locks.LockSupport;
+
+// One request to a BalanceEngineShard writer. The caller waits in await() for the
+// writer to apply it; fire-and-forget commands have no caller to wake.
+final class EngineCommand {
+    
+    enum Op { REGISTER, SET_ACTIVE, TRANSFER, DEPOSIT, WITHDRAW, ADJUST, RESERVE, CREDIT, CONFIRM, RELEASE, SNAPSHOT }
+    
+    private static final int AWAIT_SPINS = 1000;
+    
+    final Op op;
+    final long accountId;
+    final long counterpartyId;
+    final BigDecimal amount;
+    final long holdId;
+    final String accountNumber;
+    final boolean active;
+    
+    private final Thread caller;
+    private String error;
+    private volatile boolean done;
+    
+    private EngineCommand(Op op, long accountId, long counterpartyId, BigDecimal amount, long holdId,
+                          String accountNumber, boolean active, boolean awaited) {
+        this.op = op;
+        this.accountId = accountId;
+        this.counterpartyId = counterpartyId;
+        this.amount = amount;
+        this.holdId = holdId;
+        this.accountNumber = accountNumber;
+        this.active = active;
+        this.caller = awaited ? Thread.currentThread() : null;
+    }
+    
+    static EngineCommand register(long accountId, String accountNumber, boolean active, BigDecimal balance) {
+        return new EngineCommand(Op.REGISTER, accountId, 0, balance, 0, accountNumber, active, true);
+    }
+    
+    static EngineCommand setActive(long accountId, boolean active) {
+        return new EngineCommand(Op.SET_ACTIVE, accountId, 0, null, 0, null, active, true);
+    }
+    
+    static EngineCommand transfer(long fromAccountId, long toAccountId, BigDecimal amount) {
+        return new EngineCommand(Op.TRANSFER, fromAccountId, toAccountId, amount, 0, null, false, true);
+    }
+    
+    static EngineCommand deposit(long accountId, BigDecimal amount) {
+        return new EngineCommand(Op.DEPOSIT, accountId, 0, amount, 0, null, false, true);
+    }
+    
+    static EngineCommand withdraw(long accountId, BigDecimal amount) {
+        return new EngineCommand(Op.WITHDRAW, accountId, 0, amount, 0, null, false, true);
+    }
+    
+    static EngineCommand adjust(long accountId, BigDecimal delta) {
+        return new EngineCommand(Op.ADJUST, accountId, 0, delta, 0, null, false, true);
+    }
+    
+    static EngineCommand reserve(long holdId, long fromAccountId, long toAccountId, BigDecimal amount) {
+        return new EngineCommand(Op.RESERVE, fromAccountId, toAccountId, amount, holdId, null, false, true);
+    }
+    
+    static EngineCommand credit(long holdId, long toAccountId, BigDecimal amount) {
+        return new EngineCommand(Op.CREDIT, toAccountId, 0, amount, holdId, null, false, true);
+    }
+    
+    static EngineCommand confirm(long holdId) {
+        return new EngineCommand(Op.CONFIRM, 0, 0, null, holdId, null, false, false);
+    }
+    
+    static EngineCommand release(long holdId) {
+        return new EngineCommand(Op.RELEASE, 0, 0, null, holdId, null, false, true);
+    }
+    
+    static EngineCommand snapshot() {
+        return new EngineCommand(Op.SNAPSHOT, 0, 0, null, 0, null, false, true);
+    }
+    
+    // Called by the writer; error is null on success
+    void complete(String error) {
+        this.error = error;
+        this.done = true;
+        if (caller != null) {
+            LockSupport.unpark(caller);
+        }
+    }
+    
+    // Spins briefly, then parks until the writer has applied the command
+    String await() {
+        int spins = 0;
+        while (!done) {
+            if (spins < AWAIT_SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        return error;
+    }
+}
@@ -0,0 +1,293 @@
+package com.mybankaccount.backend.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Persistence for one engine shard: a snapshot file with the whole shard state and an
+// event log of changes since that snapshot. Every log record sets state instead of
+// applying a change, so replaying a log over a newer snapshot gives the same result.
+// Log records are framed as [length][crc32][payload]; a torn tail ends the replay.
+final class EngineShardLog implements AutoCloseable {
+    
+    private static final byte ACCOUNT = 1;
+    private static final byte HOLD_OPEN = 2;
+    private static final byte HOLD_CLOSE = 3;
+    private static final byte CREDITED = 4;
+    
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final Pattern SHARD_FILE = Pattern.compile("shard-(\\d+)\\.(snapshot|log)");
+    
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final boolean syncWrites;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    
+    private FileOutputStream logStream;
+    private DataOutputStream out;
+    
+    EngineShardLog(Path directory, int shardIndex, boolean syncWrites) {
+        this.snapshotFile = directory.resolve("shard-" + shardIndex + ".snapshot");
+        this.logFile = directory.resolve("shard-" + shardIndex + ".log");
+        this.syncWrites = syncWrites;
+        openLog(true);
+    }
+    
+    void account(BalanceEngine.AccountState account) {
+        try {
+            begin(ACCOUNT);
+            writeAccount(recordOut, account);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    void holdOpened(BalanceEngine.Hold hold) {
+        try {
+            begin(HOLD_OPEN);
+            writeHold(recordOut, hold);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    void holdClosed(long holdId) {
+        try {
+            begin(HOLD_CLOSE);
+            recordOut.writeLong(holdId);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    void credited(long holdId) {
+        try {
+            begin(CREDITED);
+            recordOut.writeLong(holdId);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Hands buffered records to the OS, and to the disk when syncWrites is set
+    void flush() {
+        try {
+            out.flush();
+            if (syncWrites) {
+                logStream.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Writes the full shard state next to the old snapshot, swaps it in and starts a new log
+    void writeSnapshot(Collection<BalanceEngine.AccountState> accounts, Collection<BalanceEngine.Hold> holds,
+                       Collection<Long> credits) {
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+                 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                data.writeInt(SNAPSHOT_FORMAT);
+                data.writeInt(accounts.size());
+                for (BalanceEngine.AccountState account : accounts) {
+                    writeAccount(data, account);
+                }
+                data.writeInt(holds.size());
+                for (BalanceEngine.Hold hold : holds) {
+                    writeHold(data, hold);
+                }
+                data.writeInt(credits.size());
+                for (long holdId : credits) {
+                    data.writeLong(holdId);
+                }
+                data.flush();
+                file.getFD().sync();
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write engine snapshot " + snapshotFile, e);
+        }
+        
+        closeLog();
+        openLog(false);
+    }
+    
+    @Override
+    public void close() {
+        closeLog();
+    }
+    
+    // Loads every shard's snapshot and log into state; returns the shard indexes found
+    static Set<Integer> restore(Path directory, BalanceEngine.State state) throws IOException {
+        Set<Integer> indexes = new TreeSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SHARD_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    indexes.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        
+        for (int index : indexes) {
+            Path snapshot = directory.resolve("shard-" + index + ".snapshot");
+            if (Files.exists(snapshot)) {
+                readSnapshot(snapshot, state);
+            }
+            Path log = directory.resolve("shard-" + index + ".log");
+            if (Files.exists(log)) {
+                replayLog(log, state);
+            }
+        }
+        return indexes;
+    }
+    
+    static void delete(Path directory, int shardIndex) throws IOException {
+        Files.deleteIfExists(directory.resolve("shard-" + shardIndex + ".snapshot"));
+        Files.deleteIfExists(directory.resolve("shard-" + shardIndex + ".log"));
+    }
+    
+    private static void readSnapshot(Path file, BalanceEngine.State state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            int format = in.readInt();
+            if (format != SNAPSHOT_FORMAT) {
+                throw new IOException("Unsupported engine snapshot format " + format + " in " + file);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                BalanceEngine.AccountState account = readAccount(in);
+                state.accounts.put(account.id, account);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                BalanceEngine.Hold hold = readHold(in);
+                state.holds.put(hold.holdId, hold);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                state.credits.add(in.readLong());
+            }
+        }
+    }
+    
+    private static void replayLog(Path file, BalanceEngine.State state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            while (true) {
+                byte[] payload = readRecord(in);
+                if (payload == null) {
+                    return;
+                }
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+                switch (data.readByte()) {
+                    case ACCOUNT -> {
+                        BalanceEngine.AccountState account = readAccount(data);
+                        state.accounts.put(account.id, account);
+                    }
+                    case HOLD_OPEN -> {
+                        BalanceEngine.Hold hold = readHold(data);
+                        state.holds.put(hold.holdId, hold);
+                    }
+                    case HOLD_CLOSE -> state.holds.remove(data.readLong());
+                    case CREDITED -> state.credits.add(data.readLong());
+                    default -> throw new IOException("Unknown engine log record in " + file);
+                }
+            }
+        }
+    }
+    
+    // Returns null at the end of the log or at a torn or corrupt record
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+    
+    private static void writeAccount(DataOutputStream data, BalanceEngine.AccountState account) throws IOException {
+        data.writeLong(account.id);
+        data.writeUTF(account.accountNumber);
+        data.writeBoolean(account.active);
+        data.writeUTF(account.balance.toPlainString());
+    }
+    
+    private static BalanceEngine.AccountState readAccount(DataInputStream data) throws IOException {
+        long id = data.readLong();
+        String accountNumber = data.readUTF();
+        boolean active = data.readBoolean();
+        BigDecimal balance = new BigDecimal(data.readUTF());
+        return new BalanceEngine.AccountState(id, accountNumber, active, balance);
+    }
+    
+    private static void writeHold(DataOutputStream data, BalanceEngine.Hold hold) throws IOException {
+        data.writeLong(hold.holdId);
+        data.writeLong(hold.accountId);
+        data.writeLong(hold.destinationAccountId);
+        data.writeUTF(hold.amount.toPlainString());
+    }
+    
+    private static BalanceEngine.Hold readHold(DataInputStream data) throws IOException {
+        return new BalanceEngine.Hold(data.readLong(), data.readLong(), data.readLong(), new BigDecimal(data.readUTF()));
+    }
+    
+    private void begin(byte type) throws IOException {
+        record.reset();
+        recordOut.writeByte(type);
+    }
+    
+    private void end() throws IOException {
+        byte[] payload = record.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+    
+    private void openLog(boolean append) {
+        try {
+            logStream = new FileOutputStream(logFile.toFile(), append);
+            out = new DataOutputStream(new BufferedOutputStream(logStream, 64 * 1024));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open engine log " + logFile, e);
+        }
+    }
+    
+    private void closeLog() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close engine log " + logFile, e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.mybankaccount.backend.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Hierarchical timing wheel for PaymentScheduler. Level 0 has 2^wheelBits slots one tick
+// wide; each level above has slots as wide as a whole turn of the level below. An item
+// goes into the lowest level whose current turn contains its due tick, and the items of a
+// higher slot are moved down when the clock reaches the start of that slot. Adding an item
+// and advancing the clock one tick are O(1) however many items are waiting. Items due past
+// the top level's turn wait in an overflow list that is redistributed once per top turn.
+// Not thread-safe.
+class HierarchicalTimingWheel<T> {
+    
+    private static final class Entry<T> {
+        final long tick;
+        final T item;
+        
+        Entry(long tick, T item) {
+            this.tick = tick;
+            this.item = item;
+        }
+    }
+    
+    private final long tickMillis;
+    private final int wheelBits;
+    private final long mask;
+    private final List<List<ArrayDeque<Entry<T>>>> levels;
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    // Added at or before the current tick, handed out by the next advance
+    private final List<T> ready = new ArrayList<>();
+    private long currentTick;
+    private int size;
+    
+    HierarchicalTimingWheel(long tickMillis, int wheelBits, int levelCount, long startMillis) {
+        if (tickMillis < 1 || wheelBits < 1 || levelCount < 1 || wheelBits * levelCount > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel shape");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelBits = wheelBits;
+        this.mask = (1L << wheelBits) - 1;
+        this.levels = new ArrayList<>(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            List<ArrayDeque<Entry<T>>> slots = new ArrayList<>(1 << wheelBits);
+            for (int slot = 0; slot < 1 << wheelBits; slot++) {
+                slots.add(new ArrayDeque<>());
+            }
+            levels.add(slots);
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+    
+    void add(long dueMillis, T item) {
+        place(new Entry<>(Math.floorDiv(dueMillis, tickMillis), item));
+        size++;
+    }
+    
+    private void place(Entry<T> entry) {
+        if (entry.tick <= currentTick) {
+            ready.add(entry.item);
+            return;
+        }
+        for (int level = 0; level < levels.size(); level++) {
+            int turnShift = wheelBits * (level + 1);
+            if ((entry.tick >> turnShift) == (currentTick >> turnShift)) {
+                levels.get(level).get((int) ((entry.tick >> (wheelBits * level)) & mask)).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+    
+    // Moves the clock to nowMillis and returns every item due by then, earliest tick first
+    List<T> advanceTo(long nowMillis) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        List<T> due = new ArrayList<>(ready);
+        ready.clear();
+        
+        while (currentTick < target) {
+            if (due.size() == size) {
+                // Nothing left to cascade, so the clock can jump
+                currentTick = target;
+                break;
+            }
+            currentTick++;
+            cascade();
+            ArrayDeque<Entry<T>> slot = levels.get(0).get((int) (currentTick & mask));
+            while (!slot.isEmpty()) {
+                due.add(slot.poll().item);
+            }
+            due.addAll(ready);
+            ready.clear();
+        }
+        
+        size -= due.size();
+        return due;
+    }
+    
+    // At the start of a slot on a higher level, spread its items over the levels below
+    private void cascade() {
+        if ((currentTick & ((1L << (wheelBits * levels.size())) - 1)) == 0 && !overflow.isEmpty()) {
+            List<Entry<T>> waiting = new ArrayList<>(overflow);
+            overflow.clear();
+            waiting.forEach(this::place);
+        }
+        for (int level = levels.size() - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (wheelBits * level)) - 1)) != 0) {
+                continue;
+            }
+            ArrayDeque<Entry<T>> slot = levels.get(level).get((int) ((currentTick >> (wheelBits * level)) & mask));
+            while (!slot.isEmpty()) {
+                place(slot.poll());
+            }
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,125 @@
+package com.mybankaccount.backend.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Hands out collision-free identifiers without a database query per id. Each kind of
+// id draws serials from a block reserved with one nextval call; blocks are never shared
+// between nodes, so uniqueness does not depend on probing the target table.
+@Service
+public class IdAllocator {
+    
+    // Must match the INCREMENT BY of the *_block_seq sequences
+    static final int BLOCK_SIZE = 1000;
+    
+    private static final int TIME_WIDTH = 9;
+    private static final int SERIAL_WIDTH = 8;
+    
+    private final BlockCursor accountNumbers;
+    private final BlockCursor customerNumbers;
+    private final BlockCursor references;
+    
+    public IdAllocator(JdbcTemplate jdbcTemplate) {
+        this.accountNumbers = new BlockCursor(() -> reserveBlock(jdbcTemplate, "account_number_block_seq"));
+        this.customerNumbers = new BlockCursor(() -> reserveBlock(jdbcTemplate, "customer_number_block_seq"));
+        this.references = new BlockCursor(() -> reserveBlock(jdbcTemplate, "reference_block_seq"));
+    }
+    
+    // 12 digits: 11-digit serial plus a Luhn check digit
+    public String nextAccountNumber() {
+        return withCheckDigit(Long.toString(accountNumbers.next()));
+    }
+    
+    // 11 digits: 10-digit serial plus a Luhn check digit
+    public String nextCustomerNumber() {
+        return withCheckDigit(Long.toString(customerNumbers.next()));
+    }
+    
+    // TXN + creation time + serial, so references sort roughly by creation time
+    public String nextTransactionReference() {
+        return "TXN" + timeOrderedSuffix();
+    }
+    
+    // PAY- + creation time + serial, drawn from the same serials as transaction references
+    public String nextPaymentTransactionId() {
+        return "PAY-" + timeOrderedSuffix();
+    }
+    
+    static int luhnCheckDigit(String payload) {
+        int sum = 0;
+        boolean doubleIt = true;
+        for (int i = payload.length() - 1; i >= 0; i--) {
+            int digit = payload.charAt(i) - '0';
+            if (doubleIt) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleIt = !doubleIt;
+        }
+        return (10 - sum % 10) % 10;
+    }
+    
+    private static String withCheckDigit(String payload) {
+        return payload + luhnCheckDigit(payload);
+    }
+    
+    private String timeOrderedSuffix() {
+        return padBase36(System.currentTimeMillis(), TIME_WIDTH) + padBase36(references.next(), SERIAL_WIDTH);
+    }
+    
+    private static String padBase36(long value, int width) {
+        String encoded = Long.toString(value, 36).toUpperCase();
+        return encoded.length() >= width ? encoded : "0".repeat(width - encoded.length()) + encoded;
+    }
+    
+    private static long reserveBlock(JdbcTemplate jdbcTemplate, String sequence) {
+        Long start = jdbcTemplate.queryForObject("SELECT nextval('" + sequence + "')", Long.class);
+        if (start == null) {
+            throw new IllegalStateException("Could not reserve id block from " + sequence);
+        }
+        return start;
+    }
+    
+    // Serials from the current block; only the thread that finds it exhausted reserves the next one
+    static final class BlockCursor {
+        private final LongSupplier blockSource;
+        private volatile Block current;
+        
+        BlockCursor(LongSupplier blockSource) {
+            this.blockSource = blockSource;
+        }
+        
+        long next() {
+            while (true) {
+                Block block = current;
+                if (block != null) {
+                    long serial = block.next.getAndIncrement();
+                    if (serial < block.end) {
+                        return serial;
+                    }
+                }
+                synchronized (this) {
+                    if (current == block) {
+                        current = new Block(blockSource.getAsLong());
+                    }
+                }
+            }
+        }
+    }
+    
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+        
+        Block(long start) {
+            this.next = new AtomicLong(start);
+            this.end = start + BLOCK_SIZE;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.IdempotencyRecordStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Remembers the first response of each request sent with an Idempotency-Key, per user.
+// Completed responses sit in a bounded in-memory cache in front of idempotency_records.
+// A duplicate that arrives while the first request is still running waits for its
+// result: on this node through an in-flight future, on other nodes by polling the row.
+// A claim older than the lease belongs to a request that died with its node, and the
+// next duplicate takes it over instead of waiting for the TTL.
+@Service
+public class IdempotencyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    
+    private static final long POLL_INTERVAL_MS = 50;
+    
+    private final IdempotencyRecordStore store;
+    private final Duration ttl;
+    private final long waitTimeoutMillis;
+    private final Duration claimLease;
+    private final Map<String, StoredResponse> cache;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, LocalDateTime> claims = new ConcurrentHashMap<>();
+    
+    public IdempotencyService(IdempotencyRecordStore store,
+                              @Value("${bank.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${bank.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${bank.idempotency.wait-timeout-ms:30000}") long waitTimeoutMillis,
+                              @Value("${bank.idempotency.claim-lease-ms:120000}") long claimLeaseMillis) {
+        if (claimLeaseMillis <= waitTimeoutMillis) {
+            throw new IllegalArgumentException("bank.idempotency.claim-lease-ms must be longer than wait-timeout-ms");
+        }
+        this.store = store;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.claimLease = Duration.ofMillis(claimLeaseMillis);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+    
+    // A response as it was first sent
+    public static class StoredResponse {
+        private final String requestHash;
+        private final int statusCode;
+        private final String contentType;
+        private final byte[] body;
+        private final LocalDateTime expiresAt;
+        
+        public StoredResponse(String requestHash, int statusCode, String contentType, byte[] body, LocalDateTime expiresAt) {
+            this.requestHash = requestHash;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+        
+        public String getRequestHash() { return requestHash; }
+        public int getStatusCode() { return statusCode; }
+        public String getContentType() { return contentType; }
+        public byte[] getBody() { return body; }
+        public LocalDateTime getExpiresAt() { return expiresAt; }
+    }
+    
+    public enum Decision { EXECUTE, REPLAY, KEY_REUSED, IN_PROGRESS }
+    
+    // What the caller should do with a request; carries the response to replay
+    public static class Outcome {
+        private final Decision decision;
+        private final StoredResponse response;
+        
+        private Outcome(Decision decision, StoredResponse response) {
+            this.decision = decision;
+            this.response = response;
+        }
+        
+        public Decision getDecision() { return decision; }
+        public StoredResponse getResponse() { return response; }
+    }
+    
+    // EXECUTE means the caller now owns the key and must call complete or abandon
+    public Outcome begin(String scope, String key, String requestHash) {
+        String cacheKey = scope + '\n' + key;
+        
+        while (true) {
+            StoredResponse cached = cache.get(cacheKey);
+            if (cached != null) {
+                if (cached.getExpiresAt().isAfter(LocalDateTime.now())) {
+                    return answer(cached, requestHash);
+                }
+                cache.remove(cacheKey);
+            }
+            
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(cacheKey, mine);
+            if (running != null) {
+                StoredResponse result = await(running);
+                if (result == null) {
+                    // The first request gave up without a result, or is still running
+                    if (!running.isDone()) {
+                        return new Outcome(Decision.IN_PROGRESS, null);
+                    }
+                    continue;
+                }
+                return answer(result, requestHash);
+            }
+            
+            Outcome outcome;
+            try {
+                outcome = claim(scope, key, requestHash, cacheKey);
+            } catch (RuntimeException e) {
+                inFlight.remove(cacheKey, mine);
+                mine.complete(null);
+                throw e;
+            }
+            if (outcome.getDecision() != Decision.EXECUTE) {
+                inFlight.remove(cacheKey, mine);
+                mine.complete(outcome.getResponse());
+            }
+            return outcome;
+        }
+    }
+    
+    // Stores the first response and hands it to every waiting duplicate
+    public void complete(String scope, String key, String requestHash, int statusCode, String contentType, byte[] body) {
+        String cacheKey = scope + '\n' + key;
+        StoredResponse response = new StoredResponse(requestHash, statusCode, contentType, body,
+            LocalDateTime.now().plus(ttl));
+        try {
+            LocalDateTime claimedAt = claims.remove(cacheKey);
+            if (claimedAt != null) {
+                store.complete(scope, key, claimedAt, statusCode, contentType, body);
+            }
+            cache.put(cacheKey, response);
+        } finally {
+            CompletableFuture<StoredResponse> future = inFlight.remove(cacheKey);
+            if (future != null) {
+                future.complete(response);
+            }
+        }
+    }
+    
+    // Releases the key without a result, so a retry runs the request again
+    public void abandon(String scope, String key) {
+        String cacheKey = scope + '\n' + key;
+        try {
+            LocalDateTime claimedAt = claims.remove(cacheKey);
+            if (claimedAt != null) {
+                store.release(scope, key, claimedAt);
+            }
+        } finally {
+            CompletableFuture<StoredResponse> future = inFlight.remove(cacheKey);
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${bank.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int purged = store.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency record(s)", purged);
+        }
+    }
+    
+    private Outcome claim(String scope, String key, String requestHash, String cacheKey) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        
+        while (true) {
+            // Microseconds, as stored, so the claim can be matched on later
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            if (store.tryClaim(scope, key, requestHash, now, now.plus(ttl))) {
+                claims.put(cacheKey, now);
+                return new Outcome(Decision.EXECUTE, null);
+            }
+            
+            Optional<IdempotencyRecordStore.Row> row = store.find(scope, key);
+            if (row.isEmpty()) {
+                continue;
+            }
+            
+            IdempotencyRecordStore.Row existing = row.get();
+            if (!existing.getExpiresAt().isAfter(now)) {
+                store.deleteIfExpired(scope, key, now);
+                continue;
+            }
+            if (existing.isCompleted()) {
+                StoredResponse response = new StoredResponse(existing.getRequestHash(), existing.getStatusCode(),
+                    existing.getContentType(), existing.getResponseBody(), existing.getExpiresAt());
+                cache.put(cacheKey, response);
+                return answer(response, requestHash);
+            }
+            if (!existing.getRequestHash().equals(requestHash)) {
+                return new Outcome(Decision.KEY_REUSED, null);
+            }
+            
+            // Running on another node, or claimed by one that went away
+            if (!existing.getClaimedAt().plus(claimLease).isAfter(now)
+                    && store.tryTakeOver(scope, key, existing.getClaimedAt(), now)) {
+                logger.warn("Took over a stale idempotency claim claimed at {}", existing.getClaimedAt());
+                claims.put(cacheKey, now);
+                return new Outcome(Decision.EXECUTE, null);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return new Outcome(Decision.IN_PROGRESS, null);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome(Decision.IN_PROGRESS, null);
+            }
+        }
+    }
+    
+    // Null when the first request was abandoned or did not finish in time
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+    
+    private static Outcome answer(StoredResponse response, String requestHash) {
+        if (!response.getRequestHash().equals(requestHash)) {
+            return new Outcome(Decision.KEY_REUSED, response);
+        }
+        return new Outcome(Decision.REPLAY, response);
+    }
+}
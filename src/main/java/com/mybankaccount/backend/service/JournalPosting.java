@@ -0,0 +1,102 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One completed posting as stored in the transaction journal
+public class JournalPosting {
+    
+    private static final long NO_ACCOUNT = -1L;
+    
+    private final String transactionReference;
+    private final Transaction.TransactionType transactionType;
+    private final Long fromAccountId;
+    private final Long toAccountId;
+    private final BigDecimal amount;
+    private final String description;
+    private final LocalDateTime createdAt;
+    
+    public JournalPosting(String transactionReference, Transaction.TransactionType transactionType,
+                          Long fromAccountId, Long toAccountId, BigDecimal amount,
+                          String description, LocalDateTime createdAt) {
+        this.transactionReference = transactionReference;
+        this.transactionType = transactionType;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.description = description;
+        this.createdAt = createdAt;
+    }
+    
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(transactionReference);
+            out.writeUTF(transactionType.name());
+            out.writeLong(fromAccountId != null ? fromAccountId : NO_ACCOUNT);
+            out.writeLong(toAccountId != null ? toAccountId : NO_ACCOUNT);
+            out.writeUTF(amount.toPlainString());
+            out.writeBoolean(description != null);
+            if (description != null) {
+                out.writeUTF(description);
+            }
+            out.writeUTF(createdAt.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static JournalPosting decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String reference = in.readUTF();
+            Transaction.TransactionType type = Transaction.TransactionType.valueOf(in.readUTF());
+            long fromId = in.readLong();
+            long toId = in.readLong();
+            BigDecimal amount = new BigDecimal(in.readUTF());
+            String description = in.readBoolean() ? in.readUTF() : null;
+            LocalDateTime createdAt = LocalDateTime.parse(in.readUTF());
+            return new JournalPosting(reference, type,
+                fromId != NO_ACCOUNT ? fromId : null, toId != NO_ACCOUNT ? toId : null,
+                amount, description, createdAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Completed transaction row for this posting; accounts are id-only stubs
+    public Transaction toTransaction() {
+        Transaction transaction = new Transaction(transactionReference, accountStub(fromAccountId),
+            accountStub(toAccountId), amount, transactionType, description);
+        transaction.setCreatedAt(createdAt);
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        transaction.setProcessedAt(createdAt);
+        return transaction;
+    }
+    
+    private static Account accountStub(Long id) {
+        if (id == null) {
+            return null;
+        }
+        Account account = new Account();
+        account.setId(id);
+        return account;
+    }
+    
+    public String getTransactionReference() { return transactionReference; }
+    public Transaction.TransactionType getTransactionType() { return transactionType; }
+    public Long getFromAccountId() { return fromAccountId; }
+    public Long getToAccountId() { return toAccountId; }
+    public BigDecimal getAmount() { return amount; }
+    public String getDescription() { return description; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,206 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.TransactionBatchWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Applies the transaction journal to the transactions, accounts and ledger tables in
+// large batches. Each batch inserts its transaction rows and ledger entries, writes the
+// new balance per account and advances journal_checkpoint in one database transaction,
+// so a batch is applied exactly once. On startup everything after the checkpoint is
+// replayed before the journal accepts new postings.
+@Component
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class JournalProjector {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JournalProjector.class);
+    
+    private final TransactionJournal journal;
+    private final TransactionBatchWriter transactionBatchWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerRecorder ledgerRecorder;
+    private final AccountStatsRecorder accountStatsRecorder;
+    private final int batchSize;
+    private final long intervalMillis;
+    
+    private volatile long projectedPosition;
+    private volatile boolean running;
+    private Thread worker;
+    
+    public JournalProjector(TransactionJournal journal,
+                            TransactionBatchWriter transactionBatchWriter,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            LedgerRecorder ledgerRecorder,
+                            AccountStatsRecorder accountStatsRecorder,
+                            @Value("${bank.journal.projector.batch-size:5000}") int batchSize,
+                            @Value("${bank.journal.projector.interval-ms:50}") long intervalMillis) {
+        this.journal = journal;
+        this.transactionBatchWriter = transactionBatchWriter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerRecorder = ledgerRecorder;
+        this.accountStatsRecorder = accountStatsRecorder;
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+    }
+    
+    @PostConstruct
+    public void recoverAndStart() {
+        Long checkpoint = jdbcTemplate.queryForObject(
+            "SELECT position FROM journal_checkpoint WHERE id = 1", Long.class);
+        projectedPosition = checkpoint != null ? checkpoint : 0L;
+        
+        long replayed = 0;
+        int applied;
+        while ((applied = projectBatch()) > 0) {
+            replayed += applied;
+        }
+        logger.info("Journal recovery replayed {} posting(s), projected up to position {}", replayed, projectedPosition);
+        
+        running = true;
+        worker = new Thread(this::projectLoop, "transaction-journal-projector");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(5000);
+        }
+        // Drain what is already durable so a clean shutdown leaves nothing to replay
+        while (projectBatch() > 0) {
+            // keep going
+        }
+    }
+    
+    public long getProjectedPosition() {
+        return projectedPosition;
+    }
+    
+    // Lag between what is durable in the journal and what is in the tables
+    public long getLagBytes() {
+        return journal.getDurablePosition() - projectedPosition;
+    }
+    
+    private void projectLoop() {
+        while (running) {
+            try {
+                if (projectBatch() == 0) {
+                    Thread.sleep(intervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Journal projection failed at position {}, retrying", projectedPosition, e);
+                try {
+                    Thread.sleep(Math.max(intervalMillis, 1000));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    // SELECT ... FOR UPDATE in id order; returns the current balance per account
+    private Map<Long, BigDecimal> lockBalances(Set<Long> accountIds) {
+        Map<Long, BigDecimal> balances = new TreeMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                "SELECT id, balance FROM accounts WHERE id = ANY (?) ORDER BY id FOR UPDATE");
+            ps.setArray(1, connection.createArrayOf("bigint", accountIds.toArray(new Long[0])));
+            return ps;
+        }, rs -> {
+            balances.put(rs.getLong("id"), rs.getBigDecimal("balance"));
+        });
+        return balances;
+    }
+    
+    private synchronized int projectBatch() {
+        List<TransactionJournal.Entry> entries = journal.read(projectedPosition, batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        
+        List<JournalPosting> postings = new ArrayList<>(entries.size());
+        // Sorted by id so concurrent writers always lock account rows in the same order
+        Set<Long> accountIds = new TreeSet<>();
+        for (TransactionJournal.Entry entry : entries) {
+            JournalPosting posting = JournalPosting.decode(entry.getPayload());
+            postings.add(posting);
+            if (posting.getFromAccountId() != null) {
+                accountIds.add(posting.getFromAccountId());
+            }
+            if (posting.getToAccountId() != null) {
+                accountIds.add(posting.getToAccountId());
+            }
+        }
+        
+        long nextPosition = entries.get(entries.size() - 1).getNextPosition();
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, BigDecimal> balances = lockBalances(accountIds);
+            
+            // Replay the batch in journal order to get the running balance of every leg
+            List<Transaction> transactions = new ArrayList<>(postings.size());
+            List<LedgerRecorder.Posting> ledgerPostings = new ArrayList<>(postings.size());
+            for (JournalPosting posting : postings) {
+                List<LedgerRecorder.Leg> legs = new ArrayList<>(2);
+                if (posting.getFromAccountId() != null) {
+                    BigDecimal balance = balances.merge(posting.getFromAccountId(), posting.getAmount().negate(), BigDecimal::add);
+                    legs.add(new LedgerRecorder.Leg(posting.getFromAccountId(), posting.getAmount().negate(), balance));
+                }
+                if (posting.getToAccountId() != null) {
+                    BigDecimal balance = balances.merge(posting.getToAccountId(), posting.getAmount(), BigDecimal::add);
+                    legs.add(new LedgerRecorder.Leg(posting.getToAccountId(), posting.getAmount(), balance));
+                }
+                transactions.add(posting.toTransaction());
+                ledgerPostings.add(new LedgerRecorder.Posting(posting.getTransactionReference(),
+                    posting.getTransactionType(), posting.getCreatedAt(), legs));
+            }
+            
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> balanceUpdates = new ArrayList<>(balances.size());
+            balances.forEach((accountId, balance) -> balanceUpdates.add(new Object[] { balance, now, accountId }));
+            
+            transactionBatchWriter.insertAll(transactions);
+            jdbcTemplate.batchUpdate(
+                "UPDATE accounts SET balance = ?, version = version + 1, updated_at = ? WHERE id = ?",
+                balanceUpdates);
+            ledgerRecorder.recordAll(ledgerPostings);
+            accountStatsRecorder.recordAll(transactions);
+            jdbcTemplate.update("UPDATE journal_checkpoint SET position = ?, updated_at = ? WHERE id = 1",
+                nextPosition, now);
+        });
+        
+        projectedPosition = nextPosition;
+        journal.deleteSegmentsBefore(nextPosition);
+        return entries.size();
+    }
+}
@@ -0,0 +1,210 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.AccountRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Posting path for journal mode (bank.journal.enabled=true). Balances are checked and
+// moved in an in-memory book, the posting is appended to the journal while the account
+// entries are held, and the caller returns once the journal has synced it. The tables
+// catch up through JournalProjector. The book is loaded from the database on first use
+// of each account and is authoritative from then on, so one node owns the journal and
+// every balance change must go through this service while journal mode is on.
+@Service
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class JournaledPostingService {
+    
+    private final TransactionJournal journal;
+    private final AccountRepository accountRepository;
+    private final Map<String, BookEntry> book = new ConcurrentHashMap<>();
+    
+    // The projector is a dependency so that recovery has replayed the journal before the
+    // first posting is accepted
+    public JournaledPostingService(TransactionJournal journal, JournalProjector journalProjector,
+                                   AccountRepository accountRepository) {
+        this.journal = journal;
+        this.accountRepository = accountRepository;
+    }
+    
+    // A posting appended to the journal; durable once awaitDurable(position) returns
+    public static class Posted {
+        private final Transaction transaction;
+        private final long position;
+        
+        Posted(Transaction transaction, long position) {
+            this.transaction = transaction;
+            this.position = position;
+        }
+        
+        public Transaction getTransaction() { return transaction; }
+        public long getPosition() { return position; }
+    }
+    
+    public Transaction transfer(String transactionReference, String fromAccountNumber, String toAccountNumber,
+                                BigDecimal amount, String description) {
+        Posted posted = postTransfer(transactionReference, fromAccountNumber, toAccountNumber, amount, description);
+        journal.awaitDurable(posted.getPosition());
+        return posted.getTransaction();
+    }
+    
+    // Appends without waiting, so a batch can wait once for its last posting
+    public Posted postTransfer(String transactionReference, String fromAccountNumber, String toAccountNumber,
+                               BigDecimal amount, String description) {
+        BookEntry from = entry(fromAccountNumber, "Source account not found: ");
+        BookEntry to = entry(toAccountNumber, "Destination account not found: ");
+        BookEntry first = from.id < to.id ? from : to;
+        BookEntry second = first == from ? to : from;
+        
+        synchronized (first) {
+            synchronized (second) {
+                if (!from.active) {
+                    throw new RuntimeException("Source account is not active");
+                }
+                if (!to.active) {
+                    throw new RuntimeException("Destination account is not active");
+                }
+                if (from.balance.compareTo(amount) < 0) {
+                    throw new RuntimeException("Insufficient balance in source account");
+                }
+                
+                JournalPosting posting = new JournalPosting(transactionReference, Transaction.TransactionType.TRANSFER,
+                    from.id, to.id, amount, description, LocalDateTime.now());
+                long position = journal.append(posting.encode());
+                from.balance = from.balance.subtract(amount);
+                to.balance = to.balance.add(amount);
+                return new Posted(toTransaction(posting, from, to), position);
+            }
+        }
+    }
+    
+    public Transaction deposit(String transactionReference, String accountNumber, BigDecimal amount, String description) {
+        BookEntry account = entry(accountNumber, "Account not found: ");
+        long position;
+        JournalPosting posting;
+        
+        synchronized (account) {
+            if (!account.active) {
+                throw new RuntimeException("Account is not active");
+            }
+            
+            posting = new JournalPosting(transactionReference, Transaction.TransactionType.DEPOSIT,
+                null, account.id, amount, description, LocalDateTime.now());
+            position = journal.append(posting.encode());
+            account.balance = account.balance.add(amount);
+        }
+        
+        journal.awaitDurable(position);
+        return toTransaction(posting, null, account);
+    }
+    
+    public Transaction withdraw(String transactionReference, String accountNumber, BigDecimal amount, String description) {
+        BookEntry account = entry(accountNumber, "Account not found: ");
+        long position;
+        JournalPosting posting;
+        
+        synchronized (account) {
+            if (!account.active) {
+                throw new RuntimeException("Account is not active");
+            }
+            if (account.balance.compareTo(amount) < 0) {
+                throw new RuntimeException("Insufficient balance");
+            }
+            
+            posting = new JournalPosting(transactionReference, Transaction.TransactionType.WITHDRAWAL,
+                account.id, null, amount, description, LocalDateTime.now());
+            position = journal.append(posting.encode());
+            account.balance = account.balance.subtract(amount);
+        }
+        
+        journal.awaitDurable(position);
+        return toTransaction(posting, account, null);
+    }
+    
+    public void awaitDurable(long position) {
+        journal.awaitDurable(position);
+    }
+    
+    // Balance including postings the projector has not applied yet
+    public Optional<BigDecimal> getBalance(String accountNumber) {
+        BookEntry entry = book.get(accountNumber);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        synchronized (entry) {
+            return Optional.of(entry.balance);
+        }
+    }
+    
+    // Activation goes through the book like a posting, so it takes effect for the next one.
+    // Deactivation needs a zero balance, checked against the book under the account's
+    // monitor so no posting can slip in between the check and the flag.
+    public void setActive(String accountNumber, boolean active) {
+        BookEntry account = entry(accountNumber, "Account not found: ");
+        synchronized (account) {
+            if (!active && account.balance.compareTo(BigDecimal.ZERO) != 0) {
+                throw new RuntimeException("Cannot deactivate account with non-zero balance");
+            }
+            account.active = active;
+        }
+    }
+    
+    // Detached copy of the account carrying the journal balance, safe to return to clients
+    public Account snapshotOf(Account account) {
+        Account snapshot = new Account(account.getAccountNumber(), account.getUser(), account.getAccountType());
+        snapshot.setId(account.getId());
+        snapshot.setCurrency(account.getCurrency());
+        snapshot.setIsActive(account.getIsActive());
+        snapshot.setCreatedAt(account.getCreatedAt());
+        snapshot.setUpdatedAt(account.getUpdatedAt());
+        snapshot.setVersion(account.getVersion());
+        snapshot.setBalance(getBalance(account.getAccountNumber()).orElse(account.getBalance()));
+        return snapshot;
+    }
+    
+    private BookEntry entry(String accountNumber, String notFoundMessage) {
+        BookEntry entry = book.get(accountNumber);
+        if (entry != null) {
+            return entry;
+        }
+        
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException(notFoundMessage + accountNumber));
+        BookEntry loaded = new BookEntry(account);
+        BookEntry existing = book.putIfAbsent(accountNumber, loaded);
+        return existing != null ? existing : loaded;
+    }
+    
+    private static Transaction toTransaction(JournalPosting posting, BookEntry from, BookEntry to) {
+        Transaction transaction = posting.toTransaction();
+        if (from != null) {
+            transaction.getFromAccount().setAccountNumber(from.accountNumber);
+        }
+        if (to != null) {
+            transaction.getToAccount().setAccountNumber(to.accountNumber);
+        }
+        return transaction;
+    }
+    
+    // Guarded by its own monitor
+    private static final class BookEntry {
+        private final long id;
+        private final String accountNumber;
+        private boolean active;
+        private BigDecimal balance;
+        
+        BookEntry(Account account) {
+            this.id = account.getId();
+            this.accountNumber = account.getAccountNumber();
+            this.active = account.isActive();
+            this.balance = account.getBalance();
+        }
+    }
+}
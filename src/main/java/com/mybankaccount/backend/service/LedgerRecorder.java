@@ -0,0 +1,112 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.LedgerEntryWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Writes the ledger entries of completed postings. Every posting path calls this in the
+// transaction that moves the money, after the touched account rows are locked, so the
+// per-account sequence and the running balance follow the order the balances changed in.
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class LedgerRecorder {
+    
+    private final LedgerEntryWriter ledgerEntryWriter;
+    
+    public LedgerRecorder(LedgerEntryWriter ledgerEntryWriter) {
+        this.ledgerEntryWriter = ledgerEntryWriter;
+    }
+    
+    // One account side of a posting with the balance right after it
+    public static class Leg {
+        private final long accountId;
+        private final BigDecimal amount;
+        private final BigDecimal balanceAfter;
+        
+        public Leg(long accountId, BigDecimal amount, BigDecimal balanceAfter) {
+            this.accountId = accountId;
+            this.amount = amount;
+            this.balanceAfter = balanceAfter;
+        }
+        
+        public static Leg debit(Account account, BigDecimal amount) {
+            return new Leg(account.getId(), amount.negate(), account.getBalance());
+        }
+        
+        public static Leg credit(Account account, BigDecimal amount) {
+            return new Leg(account.getId(), amount, account.getBalance());
+        }
+    }
+    
+    // The legs of one posting, in the order they were applied
+    public static class Posting {
+        private final String transactionReference;
+        private final Transaction.TransactionType transactionType;
+        private final LocalDateTime postedAt;
+        private final List<Leg> legs;
+        
+        public Posting(String transactionReference, Transaction.TransactionType transactionType,
+                       LocalDateTime postedAt, List<Leg> legs) {
+            this.transactionReference = transactionReference;
+            this.transactionType = transactionType;
+            this.postedAt = postedAt;
+            this.legs = legs;
+        }
+        
+        // Uses the balances the transaction's accounts hold right now
+        public static Posting of(Transaction transaction) {
+            List<Leg> legs = new ArrayList<>(2);
+            if (transaction.getFromAccount() != null) {
+                legs.add(Leg.debit(transaction.getFromAccount(), transaction.getAmount()));
+            }
+            if (transaction.getToAccount() != null) {
+                legs.add(Leg.credit(transaction.getToAccount(), transaction.getAmount()));
+            }
+            LocalDateTime postedAt = transaction.getProcessedAt() != null ? transaction.getProcessedAt() : LocalDateTime.now();
+            return new Posting(transaction.getTransactionReference(), transaction.getTransactionType(), postedAt, legs);
+        }
+    }
+    
+    public void record(Transaction transaction) {
+        recordAll(List.of(Posting.of(transaction)));
+    }
+    
+    public void record(String transactionReference, Transaction.TransactionType transactionType, Leg... legs) {
+        recordAll(List.of(new Posting(transactionReference, transactionType, LocalDateTime.now(), Arrays.asList(legs))));
+    }
+    
+    public void recordAll(List<Posting> postings) {
+        Map<Long, Integer> entriesPerAccount = new TreeMap<>();
+        for (Posting posting : postings) {
+            for (Leg leg : posting.legs) {
+                entriesPerAccount.merge(leg.accountId, 1, Integer::sum);
+            }
+        }
+        if (entriesPerAccount.isEmpty()) {
+            return;
+        }
+        
+        Map<Long, Long> nextSequence = ledgerEntryWriter.reserveSequences(entriesPerAccount);
+        
+        List<LedgerEntryWriter.Row> rows = new ArrayList<>();
+        for (Posting posting : postings) {
+            for (Leg leg : posting.legs) {
+                long seq = nextSequence.merge(leg.accountId, 1L, Long::sum) - 1;
+                rows.add(new LedgerEntryWriter.Row(leg.accountId, seq, posting.transactionReference,
+                    posting.transactionType.name(), leg.amount, leg.balanceAfter, posting.postedAt));
+            }
+        }
+        ledgerEntryWriter.insertAll(rows);
+    }
+}
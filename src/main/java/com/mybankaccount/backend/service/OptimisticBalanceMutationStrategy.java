@@ -0,0 +1,94 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.repository.AccountRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Reads without locking and writes with a compare-and-set on the @Version column.
+// A lost race re-reads the row and tries again, backing off exponentially with
+// jitter, until bank.balance.optimistic.max-attempts is reached.
+@Component
+@ConditionalOnProperty(name = "bank.balance.strategy", havingValue = "optimistic")
+public class OptimisticBalanceMutationStrategy implements BalanceMutationStrategy {
+    
+    private final AccountRepository accountRepository;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    public OptimisticBalanceMutationStrategy(AccountRepository accountRepository,
+                                             @Value("${bank.balance.optimistic.max-attempts:5}") int maxAttempts,
+                                             @Value("${bank.balance.optimistic.backoff-ms:5}") long backoffMillis) {
+        this.accountRepository = accountRepository;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+    
+    @Override
+    public void transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        // A successful CAS keeps the row locked until commit, so apply in id order
+        if (fromAccount.getId() < toAccount.getId()) {
+            apply(fromAccount, amount.negate(), "Insufficient balance in source account");
+            apply(toAccount, amount, null);
+        } else {
+            apply(toAccount, amount, null);
+            apply(fromAccount, amount.negate(), "Insufficient balance in source account");
+        }
+    }
+    
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        apply(account, amount, null);
+    }
+    
+    @Override
+    public void withdraw(Account account, BigDecimal amount) {
+        apply(account, amount.negate(), "Insufficient balance");
+    }
+    
+    private void apply(Account account, BigDecimal delta, String insufficientMessage) {
+        for (int attempt = 1; ; attempt++) {
+            if (!account.isActive()) {
+                throw new RuntimeException("Account is not active: " + account.getAccountNumber());
+            }
+            
+            BigDecimal newBalance = account.getBalance().add(delta);
+            if (newBalance.signum() < 0) {
+                throw new RuntimeException(insufficientMessage);
+            }
+            
+            if (accountRepository.compareAndSetBalance(account.getId(), account.getVersion(), newBalance) == 1) {
+                entityManager.refresh(account);
+                return;
+            }
+            
+            if (attempt >= maxAttempts) {
+                throw new OptimisticLockingFailureException("Account " + account.getAccountNumber()
+                        + " is being updated concurrently, gave up after " + attempt + " attempts");
+            }
+            
+            backoff(attempt);
+            entityManager.refresh(account);
+        }
+    }
+    
+    private void backoff(int attempt) {
+        long ceiling = backoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying balance update", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.PartitionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.List;
+
+// Keeps the monthly partitions of transactions and payments in shape. Every night it
+// creates the partitions for the coming months, vacuums only the current month and
+// freezes the month that just closed (older months are no longer written, so nothing
+// else needs vacuuming), and optionally detaches months past the retention window.
+// It runs without a transaction because VACUUM and DETACH ... CONCURRENTLY need that.
+@Component
+public class PartitionMaintenanceJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PartitionMaintenanceJob.class);
+    
+    private final PartitionStore partitionStore;
+    private final int monthsAhead;
+    private final int detachAfterMonths;
+    
+    public PartitionMaintenanceJob(PartitionStore partitionStore,
+                                   @Value("${bank.partitions.months-ahead:3}") int monthsAhead,
+                                   @Value("${bank.partitions.detach-after-months:0}") int detachAfterMonths) {
+        this.partitionStore = partitionStore;
+        this.monthsAhead = monthsAhead;
+        this.detachAfterMonths = detachAfterMonths;
+    }
+    
+    // Inserts fail without a partition for their month, so don't wait for the first night
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        createAhead(YearMonth.now());
+    }
+    
+    @Scheduled(cron = "${bank.partitions.cron:0 0 1 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        createAhead(current);
+        
+        for (String table : PartitionStore.PARTITIONED_TABLES) {
+            List<YearMonth> attached = partitionStore.findAttachedMonths(table);
+            if (attached.contains(current)) {
+                partitionStore.vacuum(table, current, false);
+            }
+            if (attached.contains(current.minusMonths(1))) {
+                partitionStore.vacuum(table, current.minusMonths(1), true);
+            }
+            if (detachAfterMonths > 0) {
+                detachOlderThan(table, current.minusMonths(detachAfterMonths));
+            }
+        }
+    }
+    
+    // Creates every missing partition from the given month to monthsAhead months later
+    public void createAhead(YearMonth from) {
+        for (String table : PartitionStore.PARTITIONED_TABLES) {
+            for (int i = 0; i <= monthsAhead; i++) {
+                partitionStore.createMonth(table, from.plusMonths(i));
+            }
+        }
+    }
+    
+    // Detaches every month before cutoff. The detached partitions stay as standalone
+    // tables, to be archived or dropped separately.
+    public void detachOlderThan(String table, YearMonth cutoff) {
+        for (YearMonth month : partitionStore.findDetachPendingMonths(table)) {
+            partitionStore.finalizeDetach(table, month);
+            logger.info("Finalized detach of {}", PartitionStore.partitionName(table, month));
+        }
+        for (YearMonth month : partitionStore.findAttachedMonths(table)) {
+            if (month.isBefore(cutoff)) {
+                partitionStore.detachConcurrently(table, month);
+                logger.info("Detached {}", PartitionStore.partitionName(table, month));
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.AccountRepository;
+import com.mybankaccount.backend.repository.PendingPaymentStore;
+import com.mybankaccount.backend.repository.TransactionBatchWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Drains PENDING payments left by scheduled bill runs without one request per payment.
+// Each thread claims chunks of chunk-size payments with SKIP LOCKED, each chunk in its
+// own transaction. A chunk locks its accounts once in id order and debits each account
+// once for all of its payments that fit the balance, oldest first; the rest fail. The
+// WITHDRAWAL rows, ledger entries and payment statuses go out as JDBC batches.
+@Component
+@ConditionalOnProperty(name = "bank.payments.batch.enabled", havingValue = "true")
+public class PaymentBatchProcessor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PaymentBatchProcessor.class);
+    
+    private final PendingPaymentStore pendingPaymentStore;
+    private final AccountRepository accountRepository;
+    private final TransactionBatchWriter transactionBatchWriter;
+    private final LedgerRecorder ledgerRecorder;
+    private final AccountStatsRecorder accountStatsRecorder;
+    private final PaymentRollupRecorder paymentRollupRecorder;
+    private final IdAllocator idAllocator;
+    private final BalanceMutationStrategy balanceMutationStrategy;
+    private final BalanceEngine balanceEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int threads;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    public PaymentBatchProcessor(PendingPaymentStore pendingPaymentStore,
+                                 AccountRepository accountRepository,
+                                 TransactionBatchWriter transactionBatchWriter,
+                                 LedgerRecorder ledgerRecorder,
+                                 AccountStatsRecorder accountStatsRecorder,
+                                 PaymentRollupRecorder paymentRollupRecorder,
+                                 IdAllocator idAllocator,
+                                 BalanceMutationStrategy balanceMutationStrategy,
+                                 ObjectProvider<BalanceEngine> balanceEngine,
+                                 ObjectProvider<JournaledPostingService> journaledPostingService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${bank.payments.batch.threads:4}") int threads,
+                                 @Value("${bank.payments.batch.chunk-size:500}") int chunkSize,
+                                 @Value("${bank.payments.batch.max-chunks:1000}") int maxChunks) {
+        if (threads < 1 || chunkSize < 1 || maxChunks < 1) {
+            throw new IllegalArgumentException("bank.payments.batch.threads, chunk-size and max-chunks must be at least 1");
+        }
+        // The journal's book owns every balance while journal mode is on
+        if (journaledPostingService.getIfAvailable() != null) {
+            throw new IllegalStateException("bank.payments.batch.enabled cannot be combined with bank.journal.enabled");
+        }
+        this.pendingPaymentStore = pendingPaymentStore;
+        this.accountRepository = accountRepository;
+        this.transactionBatchWriter = transactionBatchWriter;
+        this.ledgerRecorder = ledgerRecorder;
+        this.accountStatsRecorder = accountStatsRecorder;
+        this.paymentRollupRecorder = paymentRollupRecorder;
+        this.idAllocator = idAllocator;
+        this.balanceMutationStrategy = balanceMutationStrategy;
+        this.balanceEngine = balanceEngine.getIfAvailable();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+    }
+    
+    // What one drain did
+    public static class Result {
+        private final int chunks;
+        private final int completed;
+        private final int failed;
+        
+        Result(int chunks, int completed, int failed) {
+            this.chunks = chunks;
+            this.completed = completed;
+            this.failed = failed;
+        }
+        
+        Result plus(Result other) {
+            return new Result(chunks + other.chunks, completed + other.completed, failed + other.failed);
+        }
+        
+        public int getChunks() { return chunks; }
+        public int getCompleted() { return completed; }
+        public int getFailed() { return failed; }
+    }
+    
+    @Scheduled(fixedDelayString = "${bank.payments.batch.interval-ms:10000}")
+    public void scheduledDrain() {
+        if (!running.get()) {
+            drain();
+        }
+    }
+    
+    public Result drain() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A payment batch run is already in progress");
+        }
+        try {
+            List<Future<Result>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(this::drainChunks));
+            }
+            
+            Result total = new Result(0, 0, 0);
+            for (Future<Result> worker : workers) {
+                total = total.plus(worker.get());
+            }
+            
+            if (total.getCompleted() + total.getFailed() > 0) {
+                logger.info("Processed {} pending payment(s) in {} chunk(s): {} completed, {} failed",
+                    total.getCompleted() + total.getFailed(), total.getChunks(), total.getCompleted(), total.getFailed());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing pending payments", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Payment batch run failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    // One thread's share: chunks until the backlog runs dry or its share of max-chunks is spent
+    private Result drainChunks() {
+        Result total = new Result(0, 0, 0);
+        for (int i = 0; i < Math.max(1, maxChunks / threads); i++) {
+            Result chunk = transactionTemplate.execute(status -> processChunk());
+            total = total.plus(chunk);
+            if (chunk.getCompleted() + chunk.getFailed() < chunkSize) {
+                break;
+            }
+        }
+        return total;
+    }
+    
+    private Result processChunk() {
+        List<PendingPaymentStore.Claimed> claimed = pendingPaymentStore.claim(chunkSize);
+        if (claimed.isEmpty()) {
+            return new Result(0, 0, 0);
+        }
+        
+        // Claimed oldest first, which each account's group keeps
+        Map<Long, List<PendingPaymentStore.Claimed>> byAccount = claimed.stream()
+            .collect(Collectors.groupingBy(PendingPaymentStore.Claimed::getAccountId, TreeMap::new, Collectors.toList()));
+        Map<Long, Account> accounts = accountRepository.findAllByIdInForUpdate(byAccount.keySet()).stream()
+            .collect(Collectors.toMap(Account::getId, Function.identity()));
+        
+        List<PendingPaymentStore.Claimed> completed = new ArrayList<>();
+        List<PendingPaymentStore.Claimed> failed = new ArrayList<>();
+        List<Transaction> postings = new ArrayList<>();
+        List<LedgerRecorder.Posting> ledgerPostings = new ArrayList<>();
+        
+        for (Map.Entry<Long, List<PendingPaymentStore.Claimed>> group : byAccount.entrySet()) {
+            Account account = accounts.get(group.getKey());
+            if (account == null || !account.isActive()) {
+                failed.addAll(group.getValue());
+                continue;
+            }
+            
+            BigDecimal balanceBefore = account.getBalance();
+            BigDecimal total = BigDecimal.ZERO;
+            List<PendingPaymentStore.Claimed> accepted = new ArrayList<>();
+            for (PendingPaymentStore.Claimed payment : group.getValue()) {
+                if (total.add(payment.getAmount()).compareTo(balanceBefore) <= 0) {
+                    total = total.add(payment.getAmount());
+                    accepted.add(payment);
+                } else {
+                    failed.add(payment);
+                }
+            }
+            if (accepted.isEmpty()) {
+                continue;
+            }
+            
+            if (!debit(account, total)) {
+                failed.addAll(accepted);
+                continue;
+            }
+            
+            // One debit per account, but a row and ledger entry per payment with its own running balance
+            BigDecimal balanceAfter = balanceBefore;
+            for (PendingPaymentStore.Claimed payment : accepted) {
+                balanceAfter = balanceAfter.subtract(payment.getAmount());
+                Transaction transaction = new Transaction(idAllocator.nextTransactionReference(), account, null,
+                    payment.getAmount(), Transaction.TransactionType.WITHDRAWAL,
+                    "Payment: " + payment.getPaymentType() + " - " + payment.getRecipientName());
+                transaction.markAsCompleted();
+                postings.add(transaction);
+                ledgerPostings.add(new LedgerRecorder.Posting(transaction.getTransactionReference(),
+                    transaction.getTransactionType(), transaction.getProcessedAt(),
+                    List.of(new LedgerRecorder.Leg(account.getId(), payment.getAmount().negate(), balanceAfter))));
+            }
+            completed.addAll(accepted);
+        }
+        
+        // Account updates are flushed by Hibernate at commit
+        transactionBatchWriter.insertAll(postings);
+        ledgerRecorder.recordAll(ledgerPostings);
+        accountStatsRecorder.recordAll(postings);
+        
+        LocalDateTime now = LocalDateTime.now();
+        pendingPaymentStore.updateStatus(completed, Payment.PaymentStatus.COMPLETED, now);
+        pendingPaymentStore.updateStatus(failed, Payment.PaymentStatus.FAILED, now);
+        paymentRollupRecorder.recordProcessed(completed, failed);
+        return new Result(1, completed.size(), failed.size());
+    }
+    
+    // Engine mode: the balance engine decides, as in the batch transfer path
+    private boolean debit(Account account, BigDecimal amount) {
+        if (balanceEngine == null) {
+            return account.withdraw(amount);
+        }
+        try {
+            balanceMutationStrategy.withdraw(account, amount);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
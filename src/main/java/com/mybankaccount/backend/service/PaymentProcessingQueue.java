@@ -0,0 +1,153 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.exception.QueueFullException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Async mode of POST /api/payments/{id}/process: requests are put on a bounded queue
+// served by a fixed pool of workers that run PaymentService.processPayment, and the
+// caller polls the payment for the outcome. A full queue rejects instead of growing, so
+// a burst is pushed back to clients with a Retry-After rather than piling up in memory.
+@Component
+@ConditionalOnProperty(name = "bank.payments.processing", havingValue = "async")
+public class PaymentProcessingQueue {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PaymentProcessingQueue.class);
+    
+    private final PaymentService paymentService;
+    private final ThreadPoolExecutor executor;
+    private final int workers;
+    private final int capacity;
+    
+    // Payments queued or running on this node, so a repeated request does not queue twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalProcessingNanos = new AtomicLong();
+    private final AtomicLong maxProcessingNanos = new AtomicLong();
+    
+    public PaymentProcessingQueue(PaymentService paymentService,
+                                  @Value("${bank.payments.async.workers:8}") int workers,
+                                  @Value("${bank.payments.async.queue-capacity:1000}") int capacity) {
+        if (workers < 1 || capacity < 1) {
+            throw new IllegalArgumentException("bank.payments.async.workers and queue-capacity must be at least 1");
+        }
+        this.paymentService = paymentService;
+        this.workers = workers;
+        this.capacity = capacity;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacity), runnable -> {
+                Thread thread = new Thread(runnable, "payment-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    // Queues the payment and returns it as it was when accepted
+    public Payment submit(Long paymentId) {
+        Payment payment = paymentService.getPaymentById(paymentId);
+        if (payment.getStatus() != Payment.PaymentStatus.PENDING) {
+            throw new RuntimeException("Payment is not in pending status");
+        }
+        if (!inFlight.add(paymentId)) {
+            return payment;
+        }
+        
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> process(paymentId, enqueuedAt));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(paymentId);
+            rejected.incrementAndGet();
+            throw new QueueFullException("Payment processing queue is full, try again later", retryAfterSeconds());
+        }
+        accepted.incrementAndGet();
+        return payment;
+    }
+    
+    private void process(Long paymentId, long enqueuedAt) {
+        long startedAt = System.nanoTime();
+        record(totalWaitNanos, maxWaitNanos, startedAt - enqueuedAt);
+        try {
+            paymentService.processPayment(paymentId);
+            completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            logger.warn("Payment {} failed: {}", paymentId, e.getMessage());
+            try {
+                paymentService.markFailed(paymentId);
+            } catch (RuntimeException markFailure) {
+                logger.error("Could not mark payment {} as failed", paymentId, markFailure);
+            }
+        } finally {
+            inFlight.remove(paymentId);
+            record(totalProcessingNanos, maxProcessingNanos, System.nanoTime() - startedAt);
+        }
+    }
+    
+    private static void record(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+    
+    // Time for the workers to drain a full queue at the average processing time so far
+    private long retryAfterSeconds() {
+        long processed = completed.get() + failed.get();
+        if (processed == 0) {
+            return 1;
+        }
+        long averageNanos = totalProcessingNanos.get() / processed;
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(averageNanos * capacity / workers));
+    }
+    
+    // Depth, throughput counters and wait/processing times since startup
+    public Map<String, Object> getMetrics() {
+        long started = completed.get() + failed.get() + executor.getActiveCount();
+        long processed = completed.get() + failed.get();
+        Map<String, Object> metrics = new TreeMap<>();
+        metrics.put("workers", workers);
+        metrics.put("capacity", capacity);
+        metrics.put("depth", executor.getQueue().size());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("accepted", accepted.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("completed", completed.get());
+        metrics.put("failed", failed.get());
+        metrics.put("avgWaitMs", started > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / started) : 0);
+        metrics.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        metrics.put("avgProcessingMs", processed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalProcessingNanos.get() / processed) : 0);
+        metrics.put("maxProcessingMs", TimeUnit.NANOSECONDS.toMillis(maxProcessingNanos.get()));
+        return metrics;
+    }
+    
+    // Queued payments stay PENDING in the database and can be submitted again
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("{} queued payment(s) left PENDING at shutdown", executor.shutdownNow().size());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.PaymentRollupStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Recomputes payment_rollups from the payments table, user id chunks in parallel, each
+// in its own transaction. Used for backfill and as a periodic drift check, like the
+// account stats rebuild.
+@Component
+public class PaymentRollupRebuildJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PaymentRollupRebuildJob.class);
+    
+    private final PaymentRollupStore paymentRollupStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    public PaymentRollupRebuildJob(PaymentRollupStore paymentRollupStore,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${bank.payments.rollup.rebuild.threads:4}") int threads,
+                                   @Value("${bank.payments.rollup.rebuild.chunk-size:1000}") int chunkSize) {
+        this.paymentRollupStore = paymentRollupStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-rollup-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunkSize = chunkSize;
+    }
+    
+    // What one rebuild covered and how many rollup rows it had to correct
+    public static class Result {
+        private final int chunks;
+        private final int driftedRows;
+        
+        Result(int chunks, int driftedRows) {
+            this.chunks = chunks;
+            this.driftedRows = driftedRows;
+        }
+        
+        public int getChunks() { return chunks; }
+        public int getDriftedRows() { return driftedRows; }
+    }
+    
+    @Scheduled(cron = "${bank.payments.rollup.rebuild.cron:0 0 4 * * SUN}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+    
+    public Result rebuild() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A payment rollup rebuild is already running");
+        }
+        try {
+            long[] range = paymentRollupStore.findUserIdRange();
+            if (range == null) {
+                return new Result(0, 0);
+            }
+            
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (long from = range[0]; from <= range[1]; from += chunkSize) {
+                long chunkFrom = from;
+                long chunkTo = Math.min(from + chunkSize - 1, range[1]);
+                chunks.add(executor.submit(() ->
+                    transactionTemplate.execute(status -> paymentRollupStore.rebuildRange(chunkFrom, chunkTo))));
+            }
+            
+            int drifted = 0;
+            for (Future<Integer> chunk : chunks) {
+                drifted += chunk.get();
+            }
+            
+            if (drifted > 0) {
+                logger.warn("Payment rollup rebuild corrected {} row(s) across {} chunk(s)", drifted, chunks.size());
+            } else {
+                logger.info("Payment rollup rebuild found no drift across {} chunk(s)", chunks.size());
+            }
+            return new Result(chunks.size(), drifted);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rebuilding payment rollups", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Payment rollup rebuild failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
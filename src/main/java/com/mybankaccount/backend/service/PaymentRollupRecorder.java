@@ -0,0 +1,82 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.repository.PaymentRollupStore;
+import com.mybankaccount.backend.repository.PendingPaymentStore;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Folds payment creations and status changes into payment_rollups. Called in the
+// transaction that writes the payment, so the rollup commits or rolls back with it.
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class PaymentRollupRecorder {
+    
+    private final PaymentRollupStore paymentRollupStore;
+    
+    public PaymentRollupRecorder(PaymentRollupStore paymentRollupStore) {
+        this.paymentRollupStore = paymentRollupStore;
+    }
+    
+    public void recordCreated(List<Payment> payments) {
+        Map<PaymentRollupStore.Key, PaymentRollupStore.Totals> deltas = new TreeMap<>();
+        for (Payment payment : payments) {
+            add(deltas, payment.getUser().getId(), payment.getCreatedAt(), payment.getPaymentType(),
+                payment.getStatus(), payment.getAmount(), 1);
+        }
+        paymentRollupStore.applyDeltas(deltas);
+    }
+    
+    // The payment has moved from the given status to the one it has now
+    public void recordStatusChange(Payment payment, Payment.PaymentStatus from) {
+        if (payment.getStatus() == from) {
+            return;
+        }
+        Map<PaymentRollupStore.Key, PaymentRollupStore.Totals> deltas = new TreeMap<>();
+        move(deltas, payment.getUser().getId(), payment.getCreatedAt(), payment.getPaymentType(),
+            payment.getAmount(), from, payment.getStatus());
+        paymentRollupStore.applyDeltas(deltas);
+    }
+    
+    // A chunk of the batch processor: every payment left PENDING, all in one statement
+    public void recordProcessed(List<PendingPaymentStore.Claimed> completed, List<PendingPaymentStore.Claimed> failed) {
+        Map<PaymentRollupStore.Key, PaymentRollupStore.Totals> deltas = new TreeMap<>();
+        for (PendingPaymentStore.Claimed payment : completed) {
+            move(deltas, payment.getUserId(), payment.getCreatedAt(), payment.getPaymentType(), payment.getAmount(),
+                Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED);
+        }
+        for (PendingPaymentStore.Claimed payment : failed) {
+            move(deltas, payment.getUserId(), payment.getCreatedAt(), payment.getPaymentType(), payment.getAmount(),
+                Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED);
+        }
+        paymentRollupStore.applyDeltas(deltas);
+    }
+    
+    // First day of the month a payment counts in
+    public static LocalDate monthOf(LocalDateTime createdAt) {
+        return createdAt.toLocalDate().withDayOfMonth(1);
+    }
+    
+    private static void move(Map<PaymentRollupStore.Key, PaymentRollupStore.Totals> deltas, long userId,
+                             LocalDateTime createdAt, Payment.PaymentType paymentType, BigDecimal amount,
+                             Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        add(deltas, userId, createdAt, paymentType, from, amount, -1);
+        add(deltas, userId, createdAt, paymentType, to, amount, 1);
+    }
+    
+    private static void add(Map<PaymentRollupStore.Key, PaymentRollupStore.Totals> deltas, long userId,
+                            LocalDateTime createdAt, Payment.PaymentType paymentType, Payment.PaymentStatus status,
+                            BigDecimal amount, int sign) {
+        deltas.merge(new PaymentRollupStore.Key(userId, monthOf(createdAt), paymentType, status),
+            new PaymentRollupStore.Totals(sign, sign < 0 ? amount.negate() : amount),
+            PaymentRollupStore.Totals::plus);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.PaymentScheduleRequest;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.PaymentSchedule;
+import com.mybankaccount.backend.entity.User;
+import com.mybankaccount.backend.repository.PaymentScheduleRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+@Service
+@Transactional
+public class PaymentScheduleService {
+    
+    private final PaymentScheduleRepository paymentScheduleRepository;
+    private final AccountService accountService;
+    private final PaymentScheduler paymentScheduler;
+    
+    public PaymentScheduleService(PaymentScheduleRepository paymentScheduleRepository,
+                                  AccountService accountService,
+                                  ObjectProvider<PaymentScheduler> paymentScheduler) {
+        this.paymentScheduleRepository = paymentScheduleRepository;
+        this.accountService = accountService;
+        // Absent with bank.schedules.enabled=false: schedules are kept but not fired on this node
+        this.paymentScheduler = paymentScheduler.getIfAvailable();
+    }
+    
+    public PaymentSchedule createSchedule(User user, PaymentScheduleRequest request) {
+        Account account = accountService.getAccountById(request.getAccountId())
+                .orElseThrow(() -> new RuntimeException("Account not found with id: " + request.getAccountId()));
+        if (!account.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Account does not belong to the user");
+        }
+        if (!account.isActive()) {
+            throw new RuntimeException("Account is not active");
+        }
+        validateScheduleRequest(request, account);
+        
+        PaymentSchedule schedule = new PaymentSchedule(user, account, request.getScheduleType(), request.getAmount(),
+                request.getFrequency(), request.getFirstRunAt());
+        schedule.setPaymentType(request.getPaymentType());
+        schedule.setRecipientName(request.getRecipientName());
+        schedule.setRecipientAccount(request.getRecipientAccount());
+        schedule.setDescription(request.getDescription());
+        schedule.setEndAt(request.getEndAt());
+        
+        PaymentSchedule saved = paymentScheduleRepository.save(schedule);
+        trackAfterCommit(saved);
+        return saved;
+    }
+    
+    public PaymentSchedule cancelSchedule(Long scheduleId, User user) {
+        PaymentSchedule schedule = getScheduleById(scheduleId);
+        validateScheduleOwnership(user, schedule);
+        
+        if (!schedule.isActive()) {
+            throw new RuntimeException("Schedule is not active");
+        }
+        
+        schedule.cancel();
+        return paymentScheduleRepository.save(schedule);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<PaymentSchedule> getUserSchedules(User user, boolean activeOnly) {
+        return activeOnly
+                ? paymentScheduleRepository.findByUserAndIsActiveTrueOrderByNextRunAtAsc(user)
+                : paymentScheduleRepository.findByUserOrderByCreatedAtDesc(user);
+    }
+    
+    @Transactional(readOnly = true)
+    public PaymentSchedule getUserSchedule(Long scheduleId, User user) {
+        PaymentSchedule schedule = getScheduleById(scheduleId);
+        validateScheduleOwnership(user, schedule);
+        return schedule;
+    }
+    
+    private PaymentSchedule getScheduleById(Long scheduleId) {
+        return paymentScheduleRepository.findById(scheduleId)
+                .orElseThrow(() -> new RuntimeException("Schedule not found with id: " + scheduleId));
+    }
+    
+    private void validateScheduleRequest(PaymentScheduleRequest request, Account account) {
+        if (request.getScheduleType() == PaymentSchedule.ScheduleType.PAYMENT) {
+            if (request.getPaymentType() == null) {
+                throw new RuntimeException("Payment type is required for a payment schedule");
+            }
+            if (request.getRecipientName() == null || request.getRecipientName().trim().isEmpty()) {
+                throw new RuntimeException("Recipient name is required");
+            }
+        } else {
+            if (request.getRecipientAccount() == null || request.getRecipientAccount().trim().isEmpty()) {
+                throw new RuntimeException("Recipient account is required for a transfer schedule");
+            }
+            if (request.getRecipientAccount().equals(account.getAccountNumber())) {
+                throw new RuntimeException("Cannot transfer to the same account");
+            }
+            if (accountService.getActiveAccountByAccountNumber(request.getRecipientAccount()).isEmpty()) {
+                throw new RuntimeException("Recipient account not found or inactive");
+            }
+        }
+        
+        if (request.getEndAt() != null && request.getEndAt().isBefore(request.getFirstRunAt())) {
+            throw new RuntimeException("End time cannot be before the first run");
+        }
+    }
+    
+    private void validateScheduleOwnership(User user, PaymentSchedule schedule) {
+        if (!schedule.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Schedule does not belong to the user");
+        }
+    }
+    
+    // A first run inside the scheduler's loaded window would otherwise wait for the overdue sweep
+    private void trackAfterCommit(PaymentSchedule schedule) {
+        if (paymentScheduler == null) {
+            return;
+        }
+        Long scheduleId = schedule.getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            paymentScheduler.track(scheduleId, schedule.getNextRunAt());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                paymentScheduler.track(scheduleId, schedule.getNextRunAt());
+            }
+        });
+    }
+}
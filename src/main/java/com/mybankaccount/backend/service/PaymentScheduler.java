@@ -0,0 +1,318 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.BatchTransferResponse;
+import com.mybankaccount.backend.dto.TransferRequest;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.entity.PaymentSchedule;
+import com.mybankaccount.backend.entity.User;
+import com.mybankaccount.backend.repository.PaymentRepository;
+import com.mybankaccount.backend.repository.PaymentScheduleStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fires standing orders. Active schedules with a run inside the next window are loaded
+// into a HierarchicalTimingWheel, by id and time only, and each tick fires whatever has
+// come due in batches of batch-size, one database transaction per batch. A batch locks
+// its schedules with SKIP LOCKED, creates bill payments as PENDING payments and posts
+// transfers through transferBatch, and moves each schedule's next_run_at on in the same
+// transaction. next_run_at is the watermark: a batch that commits has advanced its
+// schedules and one that does not leaves them due, so a restart neither skips nor
+// repeats a run. Nodes can run this side by side; each run goes to whichever locks it.
+@Component
+@ConditionalOnProperty(name = "bank.schedules.enabled", havingValue = "true")
+public class PaymentScheduler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PaymentScheduler.class);
+    
+    private final PaymentScheduleStore paymentScheduleStore;
+    private final PaymentRepository paymentRepository;
+    private final PaymentService paymentService;
+    private final TransactionService transactionService;
+    private final IdAllocator idAllocator;
+    private final PaymentRollupRecorder paymentRollupRecorder;
+    private final PaymentBatchProcessor paymentBatchProcessor;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final HierarchicalTimingWheel<Long> wheel;
+    private final Duration window;
+    private final Duration grace;
+    private final int batchSize;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // Runs before this time are in the wheel or have been fired; guarded by the wheel
+    private LocalDateTime loadedThrough;
+    
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong submittedPayments = new AtomicLong();
+    private final AtomicLong completedTransfers = new AtomicLong();
+    private final AtomicLong failedRuns = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile LocalDateTime lastRefreshAt;
+    
+    public PaymentScheduler(PaymentScheduleStore paymentScheduleStore,
+                            PaymentRepository paymentRepository,
+                            PaymentService paymentService,
+                            TransactionService transactionService,
+                            IdAllocator idAllocator,
+                            PaymentRollupRecorder paymentRollupRecorder,
+                            ObjectProvider<PaymentBatchProcessor> paymentBatchProcessor,
+                            ObjectProvider<JournaledPostingService> journaledPostingService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${bank.schedules.tick-ms:1000}") long tickMillis,
+                            @Value("${bank.schedules.window-ms:600000}") long windowMillis,
+                            @Value("${bank.schedules.grace-ms:120000}") long graceMillis,
+                            @Value("${bank.schedules.batch-size:200}") int batchSize,
+                            @Value("${bank.transfer.batch.max-size:1000}") int maxTransferBatchSize) {
+        if (batchSize < 1 || batchSize > maxTransferBatchSize) {
+            throw new IllegalArgumentException("bank.schedules.batch-size must be between 1 and bank.transfer.batch.max-size");
+        }
+        if (windowMillis < tickMillis) {
+            throw new IllegalArgumentException("bank.schedules.window-ms cannot be shorter than tick-ms");
+        }
+        // Journal postings are durable before the batch commits, so a batch that rolled back
+        // after posting would be fired again and post its transfers twice
+        if (journaledPostingService.getIfAvailable() != null) {
+            throw new IllegalStateException("bank.schedules.enabled cannot be combined with bank.journal.enabled");
+        }
+        this.paymentScheduleStore = paymentScheduleStore;
+        this.paymentRepository = paymentRepository;
+        this.paymentService = paymentService;
+        this.transactionService = transactionService;
+        this.idAllocator = idAllocator;
+        this.paymentRollupRecorder = paymentRollupRecorder;
+        // When present it drains the payments created here; otherwise they are processed one by one
+        this.paymentBatchProcessor = paymentBatchProcessor.getIfAvailable();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        // 64 slots a level, four levels: a horizon of 64^4 ticks, ~194 days at one second
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, 6, 4, System.currentTimeMillis());
+        this.window = Duration.ofMillis(windowMillis);
+        this.grace = Duration.ofMillis(graceMillis);
+        this.batchSize = batchSize;
+    }
+    
+    // Extends the loaded window and picks up runs this node passed over: locked by a
+    // failed node or an edit at the time, or created before the window reached them
+    @Scheduled(fixedDelayString = "${bank.schedules.refresh-ms:60000}")
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime horizon = now.plus(window);
+        LocalDateTime from;
+        synchronized (wheel) {
+            from = loadedThrough;
+        }
+        
+        int[] loaded = {0};
+        readOnlyTemplate.executeWithoutResult(status -> {
+            if (from == null) {
+                // First load after startup: everything still waiting, however old
+                paymentScheduleStore.forEachOverdue(horizon, (id, runAt) -> loaded[0] += add(id, runAt));
+            } else {
+                paymentScheduleStore.forEachOverdue(now.minus(grace), (id, runAt) -> loaded[0] += add(id, runAt));
+                paymentScheduleStore.forEachInWindow(from, horizon, (id, runAt) -> loaded[0] += add(id, runAt));
+            }
+        });
+        
+        synchronized (wheel) {
+            loadedThrough = horizon;
+        }
+        lastRefreshAt = now;
+        if (loaded[0] > 0) {
+            logger.debug("Loaded {} standing order run(s) due before {}", loaded[0], horizon);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${bank.schedules.tick-ms:1000}")
+    public void tick() {
+        List<Long> due;
+        synchronized (wheel) {
+            due = wheel.advanceTo(System.currentTimeMillis());
+        }
+        for (int from = 0; from < due.size(); from += batchSize) {
+            fire(due.subList(from, Math.min(from + batchSize, due.size())));
+        }
+    }
+    
+    // Called once a schedule's next run is committed, so a run inside the loaded window is not missed
+    public void track(Long scheduleId, LocalDateTime runAt) {
+        if (runAt == null) {
+            return;
+        }
+        synchronized (wheel) {
+            if (loadedThrough != null && runAt.isBefore(loadedThrough)) {
+                wheel.add(toEpochMillis(runAt), scheduleId);
+            }
+        }
+    }
+    
+    private int add(Long scheduleId, LocalDateTime runAt) {
+        synchronized (wheel) {
+            wheel.add(toEpochMillis(runAt), scheduleId);
+        }
+        return 1;
+    }
+    
+    private void fire(List<Long> scheduleIds) {
+        List<Long> payments = new ArrayList<>();
+        List<PaymentScheduleStore.Outcome> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> runBatch(new LinkedHashSet<>(scheduleIds), payments));
+        } catch (RuntimeException e) {
+            if (scheduleIds.size() > 1) {
+                // Find the schedule that broke the batch by running the rest on their own
+                logger.warn("Standing order batch of {} failed, running its schedules one by one: {}",
+                    scheduleIds.size(), e.getMessage());
+                scheduleIds.forEach(id -> fire(List.of(id)));
+            } else if (TransactionRetryEngine.isRetryable(e)) {
+                // Still due, so the next refresh after the grace period tries again
+                logger.warn("Standing order {} hit a transient failure and stays due: {}", scheduleIds.get(0), e.getMessage());
+            } else {
+                recordFailure(scheduleIds.get(0), e);
+            }
+            return;
+        }
+        
+        for (PaymentScheduleStore.Outcome outcome : outcomes) {
+            track(outcome.getScheduleId(), outcome.getNextRunAt());
+        }
+        if (paymentBatchProcessor == null) {
+            payments.forEach(this::process);
+        }
+    }
+    
+    private List<PaymentScheduleStore.Outcome> runBatch(Collection<Long> scheduleIds, List<Long> payments) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentScheduleStore.Due> due = paymentScheduleStore.lockDue(scheduleIds, now);
+        skipped.addAndGet(scheduleIds.size() - due.size());
+        
+        List<PaymentScheduleStore.Due> paymentRuns = new ArrayList<>();
+        List<Payment> newPayments = new ArrayList<>();
+        List<PaymentScheduleStore.Due> transferRuns = new ArrayList<>();
+        List<TransferRequest> transfers = new ArrayList<>();
+        for (PaymentScheduleStore.Due run : due) {
+            if (run.getScheduleType() == PaymentSchedule.ScheduleType.PAYMENT) {
+                Payment payment = new Payment(entityManager.getReference(User.class, run.getUserId()),
+                    entityManager.getReference(Account.class, run.getAccountId()), run.getPaymentType(),
+                    run.getAmount(), run.getRecipientName(), run.getDescription());
+                payment.setRecipientAccount(run.getRecipientAccount());
+                payment.setPaymentReference("SCH-" + run.getId());
+                payment.setTransactionId(idAllocator.nextPaymentTransactionId());
+                paymentRuns.add(run);
+                newPayments.add(payment);
+            } else {
+                TransferRequest transfer = new TransferRequest();
+                transfer.setFromAccountNumber(run.getAccountNumber());
+                transfer.setToAccountNumber(run.getRecipientAccount());
+                transfer.setAmount(run.getAmount());
+                transfer.setDescription(run.getDescription() != null ? run.getDescription() : "Standing order #" + run.getId());
+                transferRuns.add(run);
+                transfers.add(transfer);
+            }
+        }
+        
+        List<PaymentScheduleStore.Outcome> outcomes = new ArrayList<>(due.size());
+        paymentRepository.saveAll(newPayments);
+        paymentRollupRecorder.recordCreated(newPayments);
+        for (int i = 0; i < paymentRuns.size(); i++) {
+            Payment payment = newPayments.get(i);
+            outcomes.add(new PaymentScheduleStore.Outcome(paymentRuns.get(i).getId(), paymentRuns.get(i).nextRunAt(),
+                PaymentSchedule.RunStatus.SUBMITTED, payment.getTransactionId(), null));
+            payments.add(payment.getId());
+        }
+        
+        if (!transfers.isEmpty()) {
+            List<BatchTransferResponse.ItemResult> results = transactionService.transferBatch(transfers).getResults();
+            for (int i = 0; i < transferRuns.size(); i++) {
+                BatchTransferResponse.ItemResult result = results.get(i);
+                outcomes.add(new PaymentScheduleStore.Outcome(transferRuns.get(i).getId(), transferRuns.get(i).nextRunAt(),
+                    result.isSuccess() ? PaymentSchedule.RunStatus.COMPLETED : PaymentSchedule.RunStatus.FAILED,
+                    result.getTransactionReference(), result.getError()));
+                if (result.isSuccess()) {
+                    completedTransfers.incrementAndGet();
+                } else {
+                    failedRuns.incrementAndGet();
+                }
+            }
+        }
+        
+        paymentScheduleStore.advance(outcomes, now);
+        fired.addAndGet(outcomes.size());
+        submittedPayments.addAndGet(paymentRuns.size());
+        return outcomes;
+    }
+    
+    // A run that cannot be fired at all is recorded as FAILED and the schedule moves on
+    private void recordFailure(Long scheduleId, RuntimeException cause) {
+        logger.error("Standing order {} failed", scheduleId, cause);
+        List<PaymentScheduleStore.Outcome> outcomes = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<PaymentScheduleStore.Outcome> failed = new ArrayList<>();
+            for (PaymentScheduleStore.Due run : paymentScheduleStore.lockDue(List.of(scheduleId), now)) {
+                failed.add(new PaymentScheduleStore.Outcome(run.getId(), run.nextRunAt(),
+                    PaymentSchedule.RunStatus.FAILED, null, cause.getMessage()));
+            }
+            paymentScheduleStore.advance(failed, now);
+            return failed;
+        });
+        failedRuns.addAndGet(outcomes.size());
+        outcomes.forEach(outcome -> track(outcome.getScheduleId(), outcome.getNextRunAt()));
+    }
+    
+    // As the async queue does: a failed payment is marked FAILED after its own rollback
+    private void process(Long paymentId) {
+        try {
+            paymentService.processPayment(paymentId);
+        } catch (RuntimeException e) {
+            logger.warn("Scheduled payment {} failed: {}", paymentId, e.getMessage());
+            try {
+                paymentService.markFailed(paymentId);
+            } catch (RuntimeException markFailure) {
+                logger.error("Could not mark payment {} as failed", paymentId, markFailure);
+            }
+        }
+    }
+    
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    // Wheel size and run counters since startup
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        synchronized (wheel) {
+            metrics.put("waiting", wheel.size());
+            metrics.put("loadedThrough", loadedThrough);
+        }
+        metrics.put("lastRefreshAt", lastRefreshAt);
+        metrics.put("fired", fired.get());
+        metrics.put("submittedPayments", submittedPayments.get());
+        metrics.put("completedTransfers", completedTransfers.get());
+        metrics.put("failed", failedRuns.get());
+        metrics.put("skipped", skipped.get());
+        return metrics;
+    }
+}
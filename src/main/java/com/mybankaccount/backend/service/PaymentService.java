@@ -4,14 +4,15 @@ import com.mybankaccount.backend.entity.Account;
 import com.mybankaccount.backend.entity.Payment;
 import com.mybankaccount.backend.entity.User;
 import com.mybankaccount.backend.repository.PaymentRepository;
+import com.mybankaccount.backend.repository.PaymentRollupStore;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @Transactional
@@ -20,13 +21,22 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final AccountService accountService;
     private final TransactionService transactionService;
+    private final IdAllocator idAllocator;
+    private final PaymentRollupRecorder paymentRollupRecorder;
+    private final PaymentRollupStore paymentRollupStore;
     
     public PaymentService(PaymentRepository paymentRepository, 
                          AccountService accountService,
-                         TransactionService transactionService) {
+                         TransactionService transactionService,
+                         IdAllocator idAllocator,
+                         PaymentRollupRecorder paymentRollupRecorder,
+                         PaymentRollupStore paymentRollupStore) {
         this.paymentRepository = paymentRepository;
         this.accountService = accountService;
         this.transactionService = transactionService;
+        this.idAllocator = idAllocator;
+        this.paymentRollupRecorder = paymentRollupRecorder;
+        this.paymentRollupStore = paymentRollupStore;
     }
     
     public Payment createPayment(User user, Long accountId, Payment.PaymentType paymentType, 
@@ -43,13 +53,16 @@ public class PaymentService {
         Payment payment = new Payment(user, account, paymentType, amount, recipientName, description);
         payment.setRecipientAccount(recipientAccount);
         payment.setPaymentReference(paymentReference);
-        payment.setTransactionId(generateTransactionId());
+        payment.setTransactionId(idAllocator.nextPaymentTransactionId());
         
-        return paymentRepository.save(payment);
+        Payment saved = paymentRepository.save(payment);
+        paymentRollupRecorder.recordCreated(List.of(saved));
+        return saved;
     }
     
     public Payment processPayment(Long paymentId) {
-        Payment payment = getPaymentById(paymentId);
+        Payment payment = paymentRepository.findByIdForUpdate(paymentId)
+                .orElseThrow(() -> new RuntimeException("Payment not found with id: " + paymentId));
         
         if (payment.getStatus() != Payment.PaymentStatus.PENDING) {
             throw new RuntimeException("Payment is not in pending status");
@@ -64,6 +77,7 @@ public class PaymentService {
             
             payment.setStatus(Payment.PaymentStatus.COMPLETED);
             payment.setProcessedAt(LocalDateTime.now());
+            paymentRollupRecorder.recordStatusChange(payment, Payment.PaymentStatus.PENDING);
             
             return paymentRepository.save(payment);
             
@@ -74,6 +88,21 @@ public class PaymentService {
         }
     }
     
+    // Records the failure of a payment processed off the request thread. processPayment's
+    // own FAILED update rolls back with it, so this runs afterwards in a new transaction.
+    // The row is locked and re-checked, since the batch processor may have completed the
+    // still-pending payment in between.
+    public void markFailed(Long paymentId) {
+        Payment payment = paymentRepository.findByIdForUpdate(paymentId)
+                .orElseThrow(() -> new RuntimeException("Payment not found with id: " + paymentId));
+        if (payment.getStatus() == Payment.PaymentStatus.PENDING) {
+            payment.setStatus(Payment.PaymentStatus.FAILED);
+            payment.setProcessedAt(LocalDateTime.now());
+            paymentRepository.save(payment);
+            paymentRollupRecorder.recordStatusChange(payment, Payment.PaymentStatus.PENDING);
+        }
+    }
+    
     public Payment cancelPayment(Long paymentId, User user) {
         Payment payment = getPaymentById(paymentId);
         
@@ -85,6 +114,7 @@ public class PaymentService {
         
         payment.setStatus(Payment.PaymentStatus.CANCELLED);
         payment.setProcessedAt(LocalDateTime.now());
+        paymentRollupRecorder.recordStatusChange(payment, Payment.PaymentStatus.PENDING);
         
         return paymentRepository.save(payment);
     }
@@ -120,20 +150,24 @@ public class PaymentService {
         return paymentRepository.findByTransactionId(transactionId);
     }
     
+    // One read of the user's payment_rollups rows
     @Transactional(readOnly = true)
     public PaymentSummary getPaymentSummary(User user) {
-        Long pendingCount = paymentRepository.countByUserAndStatus(user, Payment.PaymentStatus.PENDING);
-        Long completedCount = paymentRepository.countByUserAndStatus(user, Payment.PaymentStatus.COMPLETED);
-        Long failedCount = paymentRepository.countByUserAndStatus(user, Payment.PaymentStatus.FAILED);
-        
-        LocalDateTime startOfMonth = LocalDateTime.now().withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime endOfMonth = LocalDateTime.now().withDayOfMonth(LocalDateTime.now().toLocalDate().lengthOfMonth())
-                .withHour(23).withMinute(59).withSecond(59);
-        
-        Double monthlyTotal = paymentRepository.getTotalPaymentAmountByUserAndDateRange(user, startOfMonth, endOfMonth);
+        PaymentRollupStore.Summary summary = paymentRollupStore.findSummary(user.getId(),
+                PaymentRollupRecorder.monthOf(LocalDateTime.now()));
         
-        return new PaymentSummary(pendingCount, completedCount, failedCount, 
-                                BigDecimal.valueOf(monthlyTotal != null ? monthlyTotal : 0.0));
+        return new PaymentSummary(summary.getPendingCount(), summary.getCompletedCount(), summary.getFailedCount(),
+                                summary.getMonthlyTotal());
+    }
+    
+    // Completed spending per month and payment type over the last given months, this one included
+    @Transactional(readOnly = true)
+    public List<PaymentRollupStore.Spending> getSpendingByCategory(User user, int months) {
+        if (months < 1 || months > 120) {
+            throw new RuntimeException("Months must be between 1 and 120");
+        }
+        LocalDate fromMonth = PaymentRollupRecorder.monthOf(LocalDateTime.now()).minusMonths(months - 1);
+        return paymentRollupStore.findSpending(user.getId(), fromMonth);
     }
     
     @Transactional(readOnly = true)
@@ -185,10 +219,6 @@ public class PaymentService {
         // No need to call updateAccount separately
     }
     
-    private String generateTransactionId() {
-        return "PAY-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-    }
-    
     public static class PaymentSummary {
         private final Long pendingCount;
         private final Long completedCount;
@@ -0,0 +1,73 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+// SELECT ... FOR UPDATE on every touched account. Transfers lock both rows in
+// ascending id order so that concurrent A->B and B->A transfers cannot deadlock.
+@Component
+@ConditionalOnProperty(name = "bank.balance.strategy", havingValue = "pessimistic", matchIfMissing = true)
+public class PessimisticBalanceMutationStrategy implements BalanceMutationStrategy {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public void transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (fromAccount.getId() < toAccount.getId()) {
+            lock(fromAccount);
+            lock(toAccount);
+        } else {
+            lock(toAccount);
+            lock(fromAccount);
+        }
+        
+        if (!fromAccount.isActive()) {
+            throw new RuntimeException("Source account is not active");
+        }
+        
+        if (!toAccount.isActive()) {
+            throw new RuntimeException("Destination account is not active");
+        }
+        
+        if (!fromAccount.withdraw(amount)) {
+            throw new RuntimeException("Insufficient balance in source account");
+        }
+        toAccount.deposit(amount);
+    }
+    
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        lock(account);
+        
+        if (!account.isActive()) {
+            throw new RuntimeException("Account is not active");
+        }
+        
+        account.deposit(amount);
+    }
+    
+    @Override
+    public void withdraw(Account account, BigDecimal amount) {
+        lock(account);
+        
+        if (!account.isActive()) {
+            throw new RuntimeException("Account is not active");
+        }
+        
+        if (!account.withdraw(amount)) {
+            throw new RuntimeException("Insufficient balance");
+        }
+    }
+    
+    // Re-read the row with FOR UPDATE so checks run against the locked balance
+    private void lock(Account account) {
+        entityManager.refresh(account, LockModeType.PESSIMISTIC_WRITE);
+    }
+}
@@ -0,0 +1,87 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+// Transfers in a single database call through the post_transfer routine, instead of
+// the lookup / probe / insert / update / update / update sequence of the JPA path.
+// Enabled with bank.transfer.executor=routine. The routine (migration V19) moves balances
+// in the accounts table itself, so it cannot be combined with the engine strategy or
+// journal mode, where balances are decided in memory.
+@Component
+@ConditionalOnProperty(name = "bank.transfer.executor", havingValue = "routine")
+public class PostingRoutineTransferExecutor {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public PostingRoutineTransferExecutor(JdbcTemplate jdbcTemplate,
+                                          @Value("${bank.balance.strategy:pessimistic}") String balanceStrategy,
+                                          @Value("${bank.journal.enabled:false}") boolean journalEnabled) {
+        if ("engine".equals(balanceStrategy) || journalEnabled) {
+            throw new IllegalArgumentException("bank.transfer.executor=routine cannot be combined with "
+                + "bank.balance.strategy=engine or bank.journal.enabled=true");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Error codes returned by post_transfer
+    public enum PostingErrorCode {
+        SOURCE_NOT_FOUND,
+        DESTINATION_NOT_FOUND,
+        SOURCE_INACTIVE,
+        DESTINATION_INACTIVE,
+        INSUFFICIENT_FUNDS
+    }
+    
+    public Transaction transfer(String transactionReference, String fromAccountNumber, String toAccountNumber,
+                                BigDecimal amount, String description) {
+        LocalDateTime now = LocalDateTime.now();
+        
+        return jdbcTemplate.queryForObject(
+            "SELECT * FROM post_transfer(?, ?, ?, ?, ?, ?)",
+            (rs, rowNum) -> {
+                String errorCode = rs.getString("o_error_code");
+                if (errorCode != null) {
+                    throw toException(PostingErrorCode.valueOf(errorCode), fromAccountNumber, toAccountNumber);
+                }
+                
+                Transaction posted = new Transaction(transactionReference,
+                    accountStub(rs.getLong("o_from_account_id"), fromAccountNumber),
+                    accountStub(rs.getLong("o_to_account_id"), toAccountNumber),
+                    amount, Transaction.TransactionType.TRANSFER, description);
+                posted.setId(rs.getLong("o_transaction_id"));
+                posted.setCreatedAt(now);
+                posted.setStatus(Transaction.TransactionStatus.COMPLETED);
+                posted.setProcessedAt(now);
+                return posted;
+            },
+            transactionReference, fromAccountNumber, toAccountNumber, amount, description, Timestamp.valueOf(now));
+    }
+    
+    // Same messages the JPA path throws for the same conditions
+    private RuntimeException toException(PostingErrorCode errorCode, String fromAccountNumber, String toAccountNumber) {
+        return switch (errorCode) {
+            case SOURCE_NOT_FOUND -> new RuntimeException("Source account not found: " + fromAccountNumber);
+            case DESTINATION_NOT_FOUND -> new RuntimeException("Destination account not found: " + toAccountNumber);
+            case SOURCE_INACTIVE -> new RuntimeException("Source account is not active");
+            case DESTINATION_INACTIVE -> new RuntimeException("Destination account is not active");
+            case INSUFFICIENT_FUNDS -> new RuntimeException("Insufficient balance in source account");
+        };
+    }
+    
+    // The response only needs id and number, so avoid loading the accounts back
+    private Account accountStub(Long id, String accountNumber) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountNumber(accountNumber);
+        return account;
+    }
+}
@@ -0,0 +1,166 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.AccountStatsStore;
+import com.mybankaccount.backend.repository.StuckTransactionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sweeps PENDING transactions older than bank.reaper.stale-after-minutes, left behind
+// when a posting died between inserting its row and finishing. Rows are claimed in
+// chunks of chunk-size, each chunk in its own short transaction, so locks are only held
+// for one chunk. A row whose posting reached the ledger is completed, anything else is
+// cancelled. SKIP LOCKED lets reapers on several nodes split the backlog between them.
+@Component
+public class StuckTransactionReaper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StuckTransactionReaper.class);
+    
+    static final String CANCEL_REASON = "Abandoned while pending";
+    
+    private final StuckTransactionStore stuckTransactionStore;
+    private final AccountStatsStore accountStatsStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration staleAfter;
+    private final int chunkSize;
+    private final int maxChunks;
+    
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private volatile Sweep lastSweep;
+    private volatile LocalDateTime oldestStale;
+    
+    public StuckTransactionReaper(StuckTransactionStore stuckTransactionStore,
+                                  AccountStatsStore accountStatsStore,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${bank.reaper.stale-after-minutes:15}") long staleAfterMinutes,
+                                  @Value("${bank.reaper.chunk-size:500}") int chunkSize,
+                                  @Value("${bank.reaper.max-chunks:100}") int maxChunks) {
+        if (chunkSize < 1 || maxChunks < 1) {
+            throw new IllegalArgumentException("bank.reaper.chunk-size and max-chunks must be at least 1");
+        }
+        this.stuckTransactionStore = stuckTransactionStore;
+        this.accountStatsStore = accountStatsStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.staleAfter = Duration.ofMinutes(staleAfterMinutes);
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+    }
+    
+    // What one sweep did
+    public static class Sweep {
+        private final LocalDateTime startedAt;
+        private final int chunks;
+        private final int completed;
+        private final int cancelled;
+        private final long durationMs;
+        
+        Sweep(LocalDateTime startedAt, int chunks, int completed, int cancelled, long durationMs) {
+            this.startedAt = startedAt;
+            this.chunks = chunks;
+            this.completed = completed;
+            this.cancelled = cancelled;
+            this.durationMs = durationMs;
+        }
+        
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public int getChunks() { return chunks; }
+        public int getCompleted() { return completed; }
+        public int getCancelled() { return cancelled; }
+        public long getDurationMs() { return durationMs; }
+    }
+    
+    @Scheduled(fixedDelayString = "${bank.reaper.interval-ms:60000}")
+    public Sweep sweep() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime cutoff = startedAt.minus(staleAfter);
+        long start = System.nanoTime();
+        int chunks = 0;
+        int completedRows = 0;
+        int cancelledRows = 0;
+        
+        while (chunks < maxChunks) {
+            int[] counts = transactionTemplate.execute(status -> reapChunk(cutoff));
+            chunks++;
+            completedRows += counts[0];
+            cancelledRows += counts[1];
+            if (counts[0] + counts[1] < chunkSize) {
+                break;
+            }
+        }
+        
+        Sweep sweep = new Sweep(startedAt, chunks, completedRows, cancelledRows,
+            (System.nanoTime() - start) / 1_000_000);
+        sweeps.incrementAndGet();
+        completed.addAndGet(completedRows);
+        cancelled.addAndGet(cancelledRows);
+        lastSweep = sweep;
+        oldestStale = stuckTransactionStore.findOldestPending(cutoff);
+        
+        if (completedRows + cancelledRows > 0) {
+            logger.warn("Reaped {} stuck transaction(s): {} completed, {} cancelled in {} chunk(s)",
+                completedRows + cancelledRows, completedRows, cancelledRows, chunks);
+        }
+        if (oldestStale != null) {
+            logger.warn("Stuck transactions remain; oldest was created at {}", oldestStale);
+        }
+        return sweep;
+    }
+    
+    // Claims one chunk and settles it; returns {completed, cancelled}
+    private int[] reapChunk(LocalDateTime cutoff) {
+        List<StuckTransactionStore.Stale> claimed = stuckTransactionStore.claim(cutoff, chunkSize);
+        List<StuckTransactionStore.Stale> posted = claimed.stream().filter(StuckTransactionStore.Stale::isPosted).toList();
+        List<StuckTransactionStore.Stale> abandoned = claimed.stream().filter(row -> !row.isPosted()).toList();
+        
+        stuckTransactionStore.complete(posted);
+        stuckTransactionStore.cancel(abandoned, CANCEL_REASON);
+        accountStatsStore.applyDeltas(completedAmounts(posted));
+        return new int[] { posted.size(), abandoned.size() };
+    }
+    
+    // Completing a row adds its amount to both sides; counts are left to the rebuild job
+    private static Map<Long, AccountStatsStore.Stats> completedAmounts(List<StuckTransactionStore.Stale> posted) {
+        Map<Long, AccountStatsStore.Stats> deltas = new TreeMap<>();
+        for (StuckTransactionStore.Stale row : posted) {
+            if (row.getFromAccountId() != null) {
+                deltas.merge(row.getFromAccountId(), new AccountStatsStore.Stats(BigDecimal.ZERO, row.getAmount(), 0,
+                    row.getCreatedAt()), AccountStatsStore.Stats::plus);
+            }
+            if (row.getToAccountId() != null) {
+                deltas.merge(row.getToAccountId(), new AccountStatsStore.Stats(row.getAmount(), BigDecimal.ZERO, 0,
+                    row.getCreatedAt()), AccountStatsStore.Stats::plus);
+            }
+        }
+        return deltas;
+    }
+    
+    // Progress counters since startup and the lag of what is still stuck
+    public Map<String, Object> getMetrics() {
+        Sweep sweep = lastSweep;
+        LocalDateTime oldest = oldestStale;
+        Map<String, Object> metrics = new TreeMap<>();
+        metrics.put("sweeps", sweeps.get());
+        metrics.put("completed", completed.get());
+        metrics.put("cancelled", cancelled.get());
+        metrics.put("lastSweepAt", sweep != null ? sweep.getStartedAt() : null);
+        metrics.put("lastSweepChunks", sweep != null ? sweep.getChunks() : 0);
+        metrics.put("lastSweepDurationMs", sweep != null ? sweep.getDurationMs() : 0);
+        metrics.put("oldestStuckCreatedAt", oldest);
+        metrics.put("lagSeconds", oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0);
+        return metrics;
+    }
+}
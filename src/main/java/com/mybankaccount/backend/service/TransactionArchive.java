@@ -0,0 +1,160 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.repository.ArchiveSegmentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Read side of the cold tier: archived months live in TransactionSegmentFile segments on
+// local disk, indexed by archive_segments. Every archived month is older than every row
+// left in transactions, so a reader takes rows from "createdAt >= hotSince" in the table
+// and everything older from here. Decoded segments are kept in a small LRU cache.
+@Component
+public class TransactionArchive {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchive.class);
+    
+    static final String SEGMENT_SUFFIX = ".seg";
+    
+    private final ArchiveSegmentStore archiveSegmentStore;
+    private final Path directory;
+    private final Map<String, TransactionSegmentFile.Contents> cache;
+    
+    private volatile List<ArchiveSegmentStore.Segment> segments = List.of();
+    private volatile LocalDateTime hotSince;
+    
+    public TransactionArchive(ArchiveSegmentStore archiveSegmentStore,
+                              @Value("${bank.archive.directory:./archive}") String directory,
+                              @Value("${bank.archive.cache-segments:8}") int cacheSegments) {
+        this.archiveSegmentStore = archiveSegmentStore;
+        this.directory = Paths.get(directory);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransactionSegmentFile.Contents> eldest) {
+                return size() > cacheSegments;
+            }
+        };
+    }
+    
+    // Loads the index once the schema is migrated and removes files of interrupted runs
+    @EventListener(ApplicationReadyEvent.class)
+    public void open() {
+        refresh();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<String> registered = segments.stream()
+            .map(ArchiveSegmentStore.Segment::getFileName)
+            .collect(Collectors.toSet());
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if ((name.endsWith(SEGMENT_SUFFIX) && !registered.contains(name)) || name.endsWith(".tmp")) {
+                    Files.delete(file);
+                    logger.info("Removed unregistered archive file {}", file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list archive directory " + directory, e);
+        }
+    }
+    
+    // Rereads the index; called after a month has been archived
+    public void refresh() {
+        List<ArchiveSegmentStore.Segment> loaded = archiveSegmentStore.findAll();
+        segments = loaded;
+        hotSince = loaded.isEmpty() ? null : loaded.get(0).getMonth().plusMonths(1).atDay(1).atStartOfDay();
+    }
+    
+    // Start of the oldest month still in the transactions table, or null if nothing is archived
+    public LocalDateTime getHotSince() {
+        return hotSince;
+    }
+    
+    Path getDirectory() {
+        return directory;
+    }
+    
+    public long count(Long accountId) {
+        return hotSince == null ? 0 : archiveSegmentStore.countArchived(accountId);
+    }
+    
+    // Archived rows of the account with createdAt >= since and before the cursor, newest
+    // first. A month's segments are only read when the previous month is used up.
+    public Iterator<TransactionResponse> iterate(Long accountId, LocalDateTime since, TransactionCursor before) {
+        List<ArchiveSegmentStore.Segment> candidates = segments.stream()
+            .filter(segment -> segment.mayContain(accountId, since, before.getCreatedAt()))
+            .toList();
+        return new ColdScan(accountId, since, before, candidates);
+    }
+    
+    private TransactionSegmentFile.Contents load(ArchiveSegmentStore.Segment segment) {
+        synchronized (cache) {
+            TransactionSegmentFile.Contents contents = cache.get(segment.getFileName());
+            if (contents == null) {
+                contents = TransactionSegmentFile.read(directory.resolve(segment.getFileName()));
+                cache.put(segment.getFileName(), contents);
+            }
+            return contents;
+        }
+    }
+    
+    // Walks the candidate segments in index order. Segments are split from one sorted
+    // stream, so within a month an account's rows continue from one file to the next.
+    private final class ColdScan implements Iterator<TransactionResponse> {
+        private final Long accountId;
+        private final LocalDateTime since;
+        private final TransactionCursor before;
+        private final List<ArchiveSegmentStore.Segment> candidates;
+        private final ArrayDeque<TransactionResponse> buffer = new ArrayDeque<>();
+        private int next;
+        
+        ColdScan(Long accountId, LocalDateTime since, TransactionCursor before,
+                 List<ArchiveSegmentStore.Segment> candidates) {
+            this.accountId = accountId;
+            this.since = since;
+            this.before = before;
+            this.candidates = candidates;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (buffer.isEmpty() && next < candidates.size()) {
+                YearMonth month = candidates.get(next).getMonth();
+                while (next < candidates.size() && candidates.get(next).getMonth().equals(month)) {
+                    buffer.addAll(load(candidates.get(next++)).rowsOf(accountId, since, before));
+                }
+            }
+            return !buffer.isEmpty();
+        }
+        
+        @Override
+        public TransactionResponse next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffer.poll();
+        }
+    }
+}
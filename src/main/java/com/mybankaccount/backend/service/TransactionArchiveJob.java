@@ -0,0 +1,135 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.repository.ArchiveSegmentStore;
+import com.mybankaccount.backend.repository.PartitionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+// Moves months older than bank.archive.after-months out of the transactions table into
+// the cold tier, oldest first. For each month:
+//   1. the partition is streamed into segment files of segment-rows rows each;
+//   2. the segments and the month's per-account totals are registered in one transaction,
+//      and from its commit on readers take the month from the archive;
+//   3. the partition is detached without blocking the parent and dropped.
+// A crash before 2 leaves unregistered files that TransactionArchive removes on startup;
+// a crash after 2 leaves a partition that the next run drops.
+@Component
+@ConditionalOnProperty(name = "bank.archive.enabled", havingValue = "true")
+public class TransactionArchiveJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchiveJob.class);
+    
+    private final ArchiveSegmentStore archiveSegmentStore;
+    private final PartitionStore partitionStore;
+    private final TransactionArchive transactionArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final int afterMonths;
+    private final int segmentRows;
+    
+    public TransactionArchiveJob(ArchiveSegmentStore archiveSegmentStore,
+                                 PartitionStore partitionStore,
+                                 TransactionArchive transactionArchive,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${bank.archive.after-months:12}") int afterMonths,
+                                 @Value("${bank.archive.segment-rows:65536}") int segmentRows) {
+        if (afterMonths < 1) {
+            throw new IllegalArgumentException("bank.archive.after-months must be at least 1");
+        }
+        this.archiveSegmentStore = archiveSegmentStore;
+        this.partitionStore = partitionStore;
+        this.transactionArchive = transactionArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.afterMonths = afterMonths;
+        this.segmentRows = segmentRows;
+    }
+    
+    @Scheduled(cron = "${bank.archive.cron:0 30 1 * * *}")
+    public void archive() {
+        YearMonth cutoff = YearMonth.now().minusMonths(afterMonths);
+        for (YearMonth month : partitionStore.findMonthTables("transactions")) {
+            if (!month.isBefore(cutoff)) {
+                break;
+            }
+            if (!archiveSegmentStore.isArchived(month)) {
+                archiveMonth(month);
+            }
+            removePartition(month);
+        }
+    }
+    
+    private void archiveMonth(YearMonth month) {
+        try {
+            Files.createDirectories(transactionArchive.getDirectory());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create archive directory", e);
+        }
+        
+        List<Path> written = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<ArchiveSegmentStore.Segment> segments = new ArrayList<>();
+                TransactionSegmentFile.Builder[] builder = { new TransactionSegmentFile.Builder() };
+                archiveSegmentStore.forEachMonthRow(month, (accountKey, transaction) -> {
+                    builder[0].add(accountKey, transaction);
+                    if (builder[0].size() >= segmentRows) {
+                        segments.add(writeSegment(month, segments.size(), builder[0], written));
+                        builder[0] = new TransactionSegmentFile.Builder();
+                    }
+                });
+                if (builder[0].size() > 0) {
+                    segments.add(writeSegment(month, segments.size(), builder[0], written));
+                }
+                
+                archiveSegmentStore.register(segments);
+                archiveSegmentStore.addMonthTotals(month);
+            });
+        } catch (RuntimeException e) {
+            for (Path file : written) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        
+        transactionArchive.refresh();
+        logger.info("Archived {} into {} segment(s)", month, written.size());
+    }
+    
+    private ArchiveSegmentStore.Segment writeSegment(YearMonth month, int index,
+                                                     TransactionSegmentFile.Builder builder, List<Path> written) {
+        String fileName = String.format("%s_%04d%s",
+            PartitionStore.partitionName("transactions", month), index, TransactionArchive.SEGMENT_SUFFIX);
+        Path file = transactionArchive.getDirectory().resolve(fileName);
+        written.add(file);
+        TransactionSegmentFile.Summary summary = builder.writeTo(file);
+        return new ArchiveSegmentStore.Segment(fileName, month, summary.getMinAccountId(), summary.getMaxAccountId(),
+            summary.getMinCreatedAt(), summary.getMaxCreatedAt(), summary.getRowCount());
+    }
+    
+    private void removePartition(YearMonth month) {
+        if (partitionStore.findDetachPendingMonths("transactions").contains(month)) {
+            partitionStore.finalizeDetach("transactions", month);
+        } else if (partitionStore.findAttachedMonths("transactions").contains(month)) {
+            partitionStore.detachConcurrently("transactions", month);
+        }
+        partitionStore.dropMonth("transactions", month);
+        logger.info("Dropped archived partition {}", PartitionStore.partitionName("transactions", month));
+    }
+}
@@ -0,0 +1,64 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.entity.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Position in an account's history, newest first: the (createdAt, id) of the last row
+// returned. Handed to clients as an opaque URL-safe token.
+public final class TransactionCursor {
+    
+    // Sorts before every real row, so it starts from the newest transaction
+    public static final TransactionCursor START = new TransactionCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+    
+    private final LocalDateTime createdAt;
+    private final long id;
+    
+    private TransactionCursor(LocalDateTime createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+    
+    public static TransactionCursor at(LocalDateTime createdAt, long id) {
+        return new TransactionCursor(createdAt, id);
+    }
+    
+    public static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getCreatedAt(), transaction.getId());
+    }
+    
+    public static TransactionCursor after(TransactionResponse transaction) {
+        return new TransactionCursor(transaction.getCreatedAt(), transaction.getId());
+    }
+    
+    public static TransactionCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('|');
+            return new TransactionCursor(LocalDateTime.parse(value.substring(0, separator)),
+                Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+    
+    public String encode() {
+        String value = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,162 @@
+package com.mybankaccount.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.AccountRepository;
+import com.mybankaccount.backend.repository.TransactionExportReader;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+// Streams transaction exports as NDJSON or CSV. Rows come off a JDBC cursor and are
+// written to the output as they arrive, so memory stays flat whatever the row count.
+@Service
+public class TransactionExportService {
+    
+    private static final String CSV_HEADER = "id,transactionReference,fromAccountNumber,toAccountNumber,amount," +
+        "transactionType,status,description,fee,createdAt,processedAt,currency,failureReason";
+    
+    private final TransactionExportReader transactionExportReader;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter rowWriter;
+    private final ObjectMapper objectMapper;
+    
+    public TransactionExportService(TransactionExportReader transactionExportReader,
+                                    AccountRepository accountRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper) {
+        this.transactionExportReader = transactionExportReader;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+    
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+        
+        private final String contentType;
+        private final String extension;
+        
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+        
+        public String getContentType() { return contentType; }
+        public String getExtension() { return extension; }
+    }
+    
+    // Export that has been validated and is ready to write
+    @FunctionalInterface
+    public interface Export {
+        void writeTo(OutputStream out) throws IOException;
+    }
+    
+    // Looks the account up now so a bad number fails before the response starts
+    public Export exportByAccount(String accountNumber, Format format) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
+        Long accountId = account.getId();
+        return out -> write(format, out, consumer -> transactionExportReader.forEachByAccount(accountId, consumer));
+    }
+    
+    public Export exportByDateRange(LocalDateTime startDate, LocalDateTime endDate, Format format) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        return out -> write(format, out, consumer -> transactionExportReader.forEachByDateRange(startDate, endDate, consumer));
+    }
+    
+    public Export exportByStatus(Transaction.TransactionStatus status, Format format) {
+        return out -> write(format, out, consumer -> transactionExportReader.forEachByStatus(status, consumer));
+    }
+    
+    private void write(Format format, OutputStream out, Consumer<Consumer<TransactionResponse>> rows) throws IOException {
+        try {
+            if (format == Format.NDJSON) {
+                writeNdjson(out, rows);
+            } else {
+                writeCsv(out, rows);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private void writeNdjson(OutputStream out, Consumer<Consumer<TransactionResponse>> rows) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            transactionTemplate.executeWithoutResult(status -> rows.accept(row -> {
+                try {
+                    rowWriter.writeValue(generator, row);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+    }
+    
+    private void writeCsv(OutputStream out, Consumer<Consumer<TransactionResponse>> rows) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        transactionTemplate.executeWithoutResult(status -> rows.accept(row -> {
+            try {
+                writeCsvRow(writer, row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        writer.flush();
+    }
+    
+    private static void writeCsvRow(Writer writer, TransactionResponse row) throws IOException {
+        Object[] values = {
+            row.getId(), row.getTransactionReference(), row.getFromAccountNumber(), row.getToAccountNumber(),
+            row.getAmount() != null ? row.getAmount().toPlainString() : null,
+            row.getTransactionType(), row.getStatus(), row.getDescription(),
+            row.getFee() != null ? row.getFee().toPlainString() : null,
+            row.getCreatedAt(), row.getProcessedAt(), row.getCurrency(), row.getFailureReason()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvField(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+    
+    // RFC 4180 quoting, plus a leading quote for values a spreadsheet would run as a formula
+    private static String csvField(String value) {
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,318 @@
+package com.mybankaccount.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal of completed postings. Records go into fixed-size
+// memory-mapped segment files as [length][crc32][payload]. A position is the segment's
+// base plus the offset inside it, so positions only grow. One flusher thread forces
+// everything appended since its last pass in a single fsync (group commit), and
+// callers block in awaitDurable until their record is covered.
+@Component
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class TransactionJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionJournal.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // Guarded by this
+    private Segment active;
+    private volatile long writePosition;
+
+    private final Object durability = new Object();
+    private volatile long durablePosition;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public TransactionJournal(@Value("${bank.journal.directory:./journal}") String directory,
+                              @Value("${bank.journal.segment-size-mb:64}") int segmentSizeMb) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+    }
+
+    // One read record: where it starts, where the next one starts, and its payload
+    public static class Entry {
+        private final long position;
+        private final long nextPosition;
+        private final byte[] payload;
+
+        Entry(long position, long nextPosition, byte[] payload) {
+            this.position = position;
+            this.nextPosition = nextPosition;
+            this.payload = payload;
+        }
+
+        public long getPosition() { return position; }
+        public long getNextPosition() { return nextPosition; }
+        public byte[] getPayload() { return payload; }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, Segment.map(file, base, segmentSize));
+            }
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(0L);
+        } else {
+            // Only the last segment can end in a torn write
+            active = segments.lastEntry().getValue();
+            active.offset = recoverEnd(active);
+            active.forcedOffset = active.offset;
+        }
+
+        writePosition = active.base + active.offset;
+        durablePosition = writePosition;
+        logger.info("Transaction journal opened at {} with {} segment(s), end position {}",
+            directory, segments.size(), writePosition);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "transaction-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Appends a record and returns the position just after it; not yet durable
+    public synchronized long append(byte[] payload) {
+        int needed = HEADER_BYTES + payload.length;
+        if (needed > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + needed + " bytes exceeds the segment size");
+        }
+
+        if (active.offset + needed > segmentSize) {
+            roll();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        int offset = active.offset;
+        active.buffer.putInt(offset, payload.length);
+        active.buffer.putInt(offset + 4, (int) crc.getValue());
+        active.buffer.put(offset + HEADER_BYTES, payload);
+        active.offset = offset + needed;
+        writePosition = active.base + active.offset;
+
+        synchronized (durability) {
+            durability.notifyAll();
+        }
+        return writePosition;
+    }
+
+    // Blocks until everything before the given position has been forced to disk
+    public void awaitDurable(long position) {
+        synchronized (durability) {
+            while (durablePosition < position) {
+                if (!running) {
+                    throw new IllegalStateException("Transaction journal is closed");
+                }
+                try {
+                    durability.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the journal to sync", e);
+                }
+            }
+        }
+    }
+
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    // Reads up to maxRecords durable records starting at the given position
+    public List<Entry> read(long fromPosition, int maxRecords) {
+        List<Entry> entries = new ArrayList<>();
+        long limit = durablePosition;
+        long position = fromPosition;
+
+        while (entries.size() < maxRecords && position < limit) {
+            Map.Entry<Long, Segment> floor = segments.floorEntry(position);
+            if (floor == null) {
+                throw new IllegalStateException("Journal position " + position + " is before the oldest segment");
+            }
+            Segment segment = floor.getValue();
+            int offset = (int) (position - segment.base);
+
+            int length = offset + HEADER_BYTES <= segmentSize ? segment.buffer.getInt(offset) : 0;
+            if (length == 0) {
+                // Rest of this segment is unused; continue with the next one
+                Long next = segments.higherKey(segment.base);
+                if (next == null) {
+                    break;
+                }
+                position = next;
+                continue;
+            }
+
+            byte[] payload = new byte[length];
+            segment.buffer.get(offset + HEADER_BYTES, payload);
+            long next = position + HEADER_BYTES + length;
+            entries.add(new Entry(position, next, payload));
+            position = next;
+        }
+        return entries;
+    }
+
+    // Drops segments that lie entirely before the given position
+    public void deleteSegmentsBefore(long position) {
+        for (Segment segment : List.copyOf(segments.headMap(position).values())) {
+            if (segment == active || segment.base + segmentSize > position) {
+                continue;
+            }
+            segments.remove(segment.base);
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                logger.warn("Could not delete journal segment {}", segment.file, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        synchronized (durability) {
+            durability.notifyAll();
+        }
+        if (flusher != null) {
+            flusher.join(5000);
+        }
+        synchronized (this) {
+            active.buffer.force();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (durability) {
+                while (running && writePosition <= durablePosition) {
+                    try {
+                        durability.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+
+            Segment segment;
+            int upTo;
+            long target;
+            synchronized (this) {
+                segment = active;
+                upTo = segment.offset;
+                target = writePosition;
+            }
+
+            // Earlier segments were forced in full when they were rolled
+            if (upTo > segment.forcedOffset) {
+                segment.buffer.force(segment.forcedOffset, upTo - segment.forcedOffset);
+                segment.forcedOffset = upTo;
+            }
+
+            synchronized (durability) {
+                durablePosition = target;
+                durability.notifyAll();
+            }
+        }
+    }
+
+    // Called with the append lock held
+    private void roll() {
+        active.buffer.force();
+        active.forcedOffset = active.offset;
+        active = createSegment(active.base + segmentSize);
+    }
+
+    private Segment createSegment(long base) {
+        Path file = directory.resolve(String.format("%019d%s", base, SEGMENT_SUFFIX));
+        try {
+            Segment segment = Segment.map(file, base, segmentSize);
+            segments.put(base, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create journal segment " + file, e);
+        }
+    }
+
+    // Walks records until a zero length, an overrun or a checksum mismatch, then zeroes the tail
+    private int recoverEnd(Segment segment) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentSize) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(offset + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != segment.buffer.getInt(offset + 4)) {
+                logger.warn("Discarding torn journal record at {} in {}", offset, segment.file);
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+
+        for (int i = offset; i < segmentSize; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.buffer.force();
+        return offset;
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final long base;
+        private final MappedByteBuffer buffer;
+        private int offset;
+        private int forcedOffset;
+
+        private Segment(Path file, long base, MappedByteBuffer buffer) {
+            this.file = file;
+            this.base = base;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path file, long base, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(file, base, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.repository.TransactionRepository;
+import com.mybankaccount.backend.repository.TransactionRetryStore;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Re-drives postings that failed for a transient reason: lock timeouts, deadlocks,
+// serialization failures, lost connections. TransactionService reports every failed
+// posting here. Once the posting's own transaction has rolled back, its FAILED row is
+// written with a transaction_retries row, SCHEDULED if the cause was transient and
+// TERMINAL otherwise. The poller claims due rows in next_attempt_at order, batch-size at
+// a time, and retries each in its own transaction through the BalanceMutationStrategy.
+// Attempts back off exponentially with jitter, so failures from a burst at peak load
+// come back spread out instead of all at once.
+@Component
+public class TransactionRetryEngine {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TransactionRetryEngine.class);
+    
+    private final TransactionRetryStore transactionRetryStore;
+    private final TransactionRepository transactionRepository;
+    private final BalanceMutationStrategy balanceMutationStrategy;
+    private final LedgerRecorder ledgerRecorder;
+    private final AccountStatsRecorder accountStatsRecorder;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate requiresNewTemplate;
+    private final int batchSize;
+    private final int maxBatches;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final Duration lease;
+    
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong attempted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile int lastRunBatches;
+    private volatile LocalDateTime oldestDue;
+    
+    public TransactionRetryEngine(TransactionRetryStore transactionRetryStore,
+                                  TransactionRepository transactionRepository,
+                                  BalanceMutationStrategy balanceMutationStrategy,
+                                  LedgerRecorder ledgerRecorder,
+                                  AccountStatsRecorder accountStatsRecorder,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${bank.retry.batch-size:100}") int batchSize,
+                                  @Value("${bank.retry.max-batches:10}") int maxBatches,
+                                  @Value("${bank.retry.max-attempts:6}") int maxAttempts,
+                                  @Value("${bank.retry.backoff-ms:30000}") long backoffMillis,
+                                  @Value("${bank.retry.max-backoff-ms:3600000}") long maxBackoffMillis,
+                                  @Value("${bank.retry.lease-ms:300000}") long leaseMillis) {
+        if (batchSize < 1 || maxBatches < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("bank.retry.batch-size, max-batches and max-attempts must be at least 1");
+        }
+        this.transactionRetryStore = transactionRetryStore;
+        this.transactionRepository = transactionRepository;
+        this.balanceMutationStrategy = balanceMutationStrategy;
+        this.ledgerRecorder = ledgerRecorder;
+        this.accountStatsRecorder = accountStatsRecorder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.lease = Duration.ofMillis(leaseMillis);
+    }
+    
+    // Called by a posting that is about to rethrow. Inside a transaction the FAILED row
+    // would roll back with everything else, so it is written once that has happened.
+    // A posting that joined a caller's transaction, such as a payment's withdrawal, leaves
+    // the outcome to that caller: its failure is kept but never retried behind its back.
+    // Returns whether a retry gets scheduled, in which case the posting is still in flight
+    // and must not be reported to the client as failed.
+    public boolean recordFailure(Transaction transaction, Throwable cause) {
+        boolean retryable = ownsTransaction() && maxAttempts > 1 && isRetryable(cause);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            persistFailure(transaction, retryable, true);
+            return retryable;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                persistFailure(transaction, retryable, status == STATUS_COMMITTED);
+            }
+        });
+        return retryable;
+    }
+    
+    private static boolean ownsTransaction() {
+        try {
+            return TransactionAspectSupport.currentTransactionStatus().isNewTransaction();
+        } catch (NoTransactionException e) {
+            return true;
+        }
+    }
+    
+    private void persistFailure(Transaction transaction, boolean retryable, boolean rowCommitted) {
+        try {
+            requiresNewTemplate.executeWithoutResult(status -> {
+                long id = rowCommitted ? transaction.getId() : transactionRetryStore.insertFailedTransaction(transaction);
+                accountStatsRecorder.record(transaction);
+                
+                LocalDateTime now = LocalDateTime.now();
+                if (retryable) {
+                    transactionRetryStore.insert(id, transaction.getCreatedAt(), TransactionRetryStore.State.SCHEDULED,
+                        1, now.plus(backoff(1)), transaction.getFailureReason(), now);
+                } else {
+                    transactionRetryStore.insert(id, transaction.getCreatedAt(), TransactionRetryStore.State.TERMINAL,
+                        1, null, transaction.getFailureReason(), now);
+                }
+            });
+            recorded.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.error("Could not record failed transaction {}", transaction.getTransactionReference(), e);
+        }
+    }
+    
+    // What one run did
+    public static class Run {
+        private final int batches;
+        private final int succeeded;
+        private final int failed;
+        
+        Run(int batches, int succeeded, int failed) {
+            this.batches = batches;
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+        
+        public int getBatches() { return batches; }
+        public int getSucceeded() { return succeeded; }
+        public int getFailed() { return failed; }
+    }
+    
+    @Scheduled(fixedDelayString = "${bank.retry.interval-ms:5000}")
+    public Run retryDue() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        int batches = 0;
+        int succeededRows = 0;
+        int failedRows = 0;
+        
+        while (batches < maxBatches) {
+            LocalDateTime now = LocalDateTime.now();
+            List<TransactionRetryStore.Due> due = transactionRetryStore.claimDue(now, now.plus(lease), batchSize);
+            if (due.isEmpty()) {
+                break;
+            }
+            batches++;
+            for (TransactionRetryStore.Due row : due) {
+                Boolean done = retry(row);
+                if (done == null) {
+                    continue;
+                }
+                if (done) {
+                    succeededRows++;
+                } else {
+                    failedRows++;
+                }
+            }
+            if (due.size() < batchSize) {
+                break;
+            }
+        }
+        
+        lastRunAt = startedAt;
+        lastRunBatches = batches;
+        oldestDue = transactionRetryStore.findOldestDue(LocalDateTime.now());
+        if (succeededRows + failedRows > 0) {
+            logger.info("Retried {} failed transaction(s): {} succeeded, {} failed again",
+                succeededRows + failedRows, succeededRows, failedRows);
+        }
+        return new Run(batches, succeededRows, failedRows);
+    }
+    
+    // Returns true on success, false on a failed attempt, null if the row was not retried
+    private Boolean retry(TransactionRetryStore.Due due) {
+        int attempt = due.getAttempts() + 1;
+        attempted.incrementAndGet();
+        try {
+            Boolean done = transactionTemplate.execute(status -> {
+                if (!transactionRetryStore.lockForAttempt(due.getTransactionId(), due.getAttempts())) {
+                    return null;
+                }
+                
+                Transaction transaction = transactionRepository
+                    .findForRetry(due.getTransactionId(), due.getTransactionCreatedAt())
+                    .orElse(null);
+                if (transaction == null || !transaction.isFailed()) {
+                    // Archived, or settled by hand in the meantime
+                    transactionRetryStore.markFailed(due.getTransactionId(), TransactionRetryStore.State.TERMINAL,
+                        due.getAttempts(), null, "Transaction is no longer FAILED", LocalDateTime.now());
+                    return null;
+                }
+                
+                apply(transaction);
+                transaction.markAsCompleted();
+                transaction.setFailureReason(null);
+                ledgerRecorder.record(transaction);
+                accountStatsRecorder.recordCompletion(transaction);
+                transactionRetryStore.markSucceeded(due.getTransactionId(), attempt, LocalDateTime.now());
+                return true;
+            });
+            if (done != null) {
+                succeeded.incrementAndGet();
+            }
+            return done;
+        } catch (RuntimeException e) {
+            failedAttempts.incrementAndGet();
+            recordFailedAttempt(due, attempt, e);
+            return false;
+        }
+    }
+    
+    private void apply(Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case TRANSFER -> balanceMutationStrategy.transfer(
+                transaction.getFromAccount(), transaction.getToAccount(), transaction.getAmount());
+            case DEPOSIT -> balanceMutationStrategy.deposit(transaction.getToAccount(), transaction.getAmount());
+            case WITHDRAWAL, PAYMENT -> balanceMutationStrategy.withdraw(transaction.getFromAccount(), transaction.getAmount());
+        }
+    }
+    
+    private void recordFailedAttempt(TransactionRetryStore.Due due, int attempt, RuntimeException failure) {
+        TransactionRetryStore.State state;
+        if (!isRetryable(failure)) {
+            state = TransactionRetryStore.State.TERMINAL;
+        } else if (attempt >= maxAttempts) {
+            state = TransactionRetryStore.State.EXHAUSTED;
+        } else {
+            state = TransactionRetryStore.State.SCHEDULED;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextAttemptAt = state == TransactionRetryStore.State.SCHEDULED ? now.plus(backoff(attempt)) : null;
+        String reason = failure.getMessage();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                transactionRetryStore.markFailed(due.getTransactionId(), state, attempt, nextAttemptAt, reason, now);
+                transactionRetryStore.updateFailureReason(due.getTransactionId(), due.getTransactionCreatedAt(), reason);
+            });
+        } catch (RuntimeException e) {
+            // The lease runs out and the row is claimed again
+            logger.error("Could not record retry attempt of transaction {}", due.getTransactionId(), e);
+        }
+        if (state != TransactionRetryStore.State.SCHEDULED) {
+            logger.warn("Giving up on transaction {} after {} attempt(s): {}", due.getTransactionId(), attempt, reason);
+        }
+    }
+    
+    private Duration backoff(int attempt) {
+        return Duration.ofMillis(backoffMillis(attempt, backoffMillis, maxBackoffMillis));
+    }
+    
+    // Doubles per attempt up to the cap, then picks uniformly from the upper half
+    static long backoffMillis(int attempt, long baseMillis, long maxMillis) {
+        long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+    
+    // Whether the failure, or anything it wraps, says trying again later can succeed
+    static boolean isRetryable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof TransactionTimedOutException
+                    || t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException
+                    || t instanceof PessimisticLockException
+                    || t instanceof LockTimeoutException
+                    || t instanceof OptimisticLockException
+                    || t instanceof jakarta.persistence.QueryTimeoutException) {
+                return true;
+            }
+            if (t instanceof SQLException sqlException && isTransientSqlState(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Serialization failure, deadlock, lock not available, statement timeout,
+    // connection exceptions (class 08) and insufficient resources (class 53)
+    private static boolean isTransientSqlState(String sqlState) {
+        if (sqlState == null) {
+            return false;
+        }
+        return sqlState.equals("40001") || sqlState.equals("40P01") || sqlState.equals("55P03")
+            || sqlState.equals("57014") || sqlState.startsWith("08") || sqlState.startsWith("53");
+    }
+    
+    // Progress counters since startup, the queue by state and how far behind it is
+    public Map<String, Object> getMetrics() {
+        LocalDateTime oldest = oldestDue;
+        Map<String, Object> metrics = new TreeMap<>();
+        metrics.put("recorded", recorded.get());
+        metrics.put("attempted", attempted.get());
+        metrics.put("succeeded", succeeded.get());
+        metrics.put("failedAttempts", failedAttempts.get());
+        metrics.put("lastRunAt", lastRunAt);
+        metrics.put("lastRunBatches", lastRunBatches);
+        metrics.put("states", transactionRetryStore.countByState());
+        metrics.put("oldestDueAt", oldest);
+        metrics.put("lagSeconds", oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0);
+        return metrics;
+    }
+}
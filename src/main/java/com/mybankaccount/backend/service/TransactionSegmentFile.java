@@ -0,0 +1,476 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.entity.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+// Immutable columnar file of archived transactions. A row is one side of a transaction:
+// the account it belongs to (the "key") plus the transaction, so a transfer between two
+// accounts is stored once under each. Rows are sorted by key, then newest first, which
+// makes one account's rows a contiguous run.
+//
+// Layout: [magic][version][row count][min/max key][min/max created_at][column count]
+// then per column [compressed length][raw length], the deflated columns, and a CRC32 of
+// everything before it. Longs are zig-zag varint deltas from the previous row, strings
+// and decimals carry a null marker. Times are microseconds of the UTC-less LocalDateTime.
+final class TransactionSegmentFile {
+    
+    private static final int MAGIC = 0x54585347;
+    private static final int VERSION = 1;
+    
+    private static final int ACCOUNT_KEY = 0;
+    private static final int ID = 1;
+    private static final int CREATED_AT = 2;
+    private static final int PROCESSED_AT = 3;
+    private static final int FROM_ACCOUNT_ID = 4;
+    private static final int TO_ACCOUNT_ID = 5;
+    private static final int FROM_ACCOUNT_NUMBER = 6;
+    private static final int TO_ACCOUNT_NUMBER = 7;
+    private static final int REFERENCE = 8;
+    private static final int AMOUNT = 9;
+    private static final int FEE = 10;
+    private static final int TYPE = 11;
+    private static final int STATUS = 12;
+    private static final int DESCRIPTION = 13;
+    private static final int CURRENCY = 14;
+    private static final int FAILURE_REASON = 15;
+    private static final int COLUMNS = 16;
+    
+    private TransactionSegmentFile() {
+    }
+    
+    // Header values of a written segment, which make up its index entry
+    static class Summary {
+        private final int rowCount;
+        private final long minAccountId;
+        private final long maxAccountId;
+        private final LocalDateTime minCreatedAt;
+        private final LocalDateTime maxCreatedAt;
+        
+        Summary(int rowCount, long minAccountId, long maxAccountId, LocalDateTime minCreatedAt,
+                LocalDateTime maxCreatedAt) {
+            this.rowCount = rowCount;
+            this.minAccountId = minAccountId;
+            this.maxAccountId = maxAccountId;
+            this.minCreatedAt = minCreatedAt;
+            this.maxCreatedAt = maxCreatedAt;
+        }
+        
+        int getRowCount() { return rowCount; }
+        long getMinAccountId() { return minAccountId; }
+        long getMaxAccountId() { return maxAccountId; }
+        LocalDateTime getMinCreatedAt() { return minCreatedAt; }
+        LocalDateTime getMaxCreatedAt() { return maxCreatedAt; }
+    }
+    
+    // Collects rows, which must arrive in (key, newest first) order, and writes them out
+    static class Builder {
+        private final ColumnWriter[] columns = new ColumnWriter[COLUMNS];
+        private int rowCount;
+        private long minKey = Long.MAX_VALUE;
+        private long maxKey = Long.MIN_VALUE;
+        private long minCreatedAt = Long.MAX_VALUE;
+        private long maxCreatedAt = Long.MIN_VALUE;
+        
+        Builder() {
+            for (int i = 0; i < COLUMNS; i++) {
+                columns[i] = new ColumnWriter();
+            }
+        }
+        
+        void add(long accountKey, Transaction transaction) {
+            long createdAt = toMicros(transaction.getCreatedAt());
+            columns[ACCOUNT_KEY].writeLong(accountKey);
+            columns[ID].writeLong(transaction.getId());
+            columns[CREATED_AT].writeLong(createdAt);
+            columns[PROCESSED_AT].writeNullableLong(
+                transaction.getProcessedAt() != null ? toMicros(transaction.getProcessedAt()) : null);
+            columns[FROM_ACCOUNT_ID].writeNullableLong(
+                transaction.getFromAccount() != null ? transaction.getFromAccount().getId() : null);
+            columns[TO_ACCOUNT_ID].writeNullableLong(
+                transaction.getToAccount() != null ? transaction.getToAccount().getId() : null);
+            columns[FROM_ACCOUNT_NUMBER].writeString(
+                transaction.getFromAccount() != null ? transaction.getFromAccount().getAccountNumber() : null);
+            columns[TO_ACCOUNT_NUMBER].writeString(
+                transaction.getToAccount() != null ? transaction.getToAccount().getAccountNumber() : null);
+            columns[REFERENCE].writeString(transaction.getTransactionReference());
+            columns[AMOUNT].writeDecimal(transaction.getAmount());
+            columns[FEE].writeDecimal(transaction.getFee());
+            columns[TYPE].writeString(transaction.getTransactionType().name());
+            columns[STATUS].writeString(transaction.getStatus().name());
+            columns[DESCRIPTION].writeString(transaction.getDescription());
+            columns[CURRENCY].writeString(transaction.getCurrency());
+            columns[FAILURE_REASON].writeString(transaction.getFailureReason());
+            
+            rowCount++;
+            minKey = Math.min(minKey, accountKey);
+            maxKey = Math.max(maxKey, accountKey);
+            minCreatedAt = Math.min(minCreatedAt, createdAt);
+            maxCreatedAt = Math.max(maxCreatedAt, createdAt);
+        }
+        
+        int size() {
+            return rowCount;
+        }
+        
+        // Writes next to the target and moves it into place once forced to disk, so a
+        // segment file is either complete or absent
+        Summary writeTo(Path file) {
+            if (rowCount == 0) {
+                throw new IllegalStateException("Cannot write an empty segment");
+            }
+            
+            byte[][] compressed = new byte[COLUMNS][];
+            int[] rawLengths = new int[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) {
+                byte[] raw = columns[i].toByteArray();
+                rawLengths[i] = raw.length;
+                compressed[i] = deflate(raw);
+            }
+            
+            int size = 4 * 3 + 8 * 4 + 4 + COLUMNS * 8;
+            for (byte[] column : compressed) {
+                size += column.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size + 8);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(rowCount)
+                .putLong(minKey).putLong(maxKey).putLong(minCreatedAt).putLong(maxCreatedAt)
+                .putInt(COLUMNS);
+            for (int i = 0; i < COLUMNS; i++) {
+                buffer.putInt(compressed[i].length).putInt(rawLengths[i]);
+            }
+            for (byte[] column : compressed) {
+                buffer.put(column);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, size);
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write archive segment " + temporary, e);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not move archive segment into place: " + file, e);
+            }
+            
+            return new Summary(rowCount, minKey, maxKey, fromMicros(minCreatedAt), fromMicros(maxCreatedAt));
+        }
+    }
+    
+    // A segment decoded into the column arrays a response needs; the from/to account id
+    // columns are not part of a response and stay encoded
+    static class Contents {
+        private final long[] accountKeys;
+        private final long[] ids;
+        private final long[] createdAt;
+        private final Long[] processedAt;
+        private final String[] fromAccountNumbers;
+        private final String[] toAccountNumbers;
+        private final String[] references;
+        private final BigDecimal[] amounts;
+        private final BigDecimal[] fees;
+        private final String[] types;
+        private final String[] statuses;
+        private final String[] descriptions;
+        private final String[] currencies;
+        private final String[] failureReasons;
+        
+        private Contents(int rows, ColumnReader[] columns) {
+            accountKeys = columns[ACCOUNT_KEY].readLongs(rows);
+            ids = columns[ID].readLongs(rows);
+            createdAt = columns[CREATED_AT].readLongs(rows);
+            processedAt = columns[PROCESSED_AT].readNullableLongs(rows);
+            fromAccountNumbers = columns[FROM_ACCOUNT_NUMBER].readStrings(rows);
+            toAccountNumbers = columns[TO_ACCOUNT_NUMBER].readStrings(rows);
+            references = columns[REFERENCE].readStrings(rows);
+            amounts = columns[AMOUNT].readDecimals(rows);
+            fees = columns[FEE].readDecimals(rows);
+            types = columns[TYPE].readStrings(rows);
+            statuses = columns[STATUS].readStrings(rows);
+            descriptions = columns[DESCRIPTION].readStrings(rows);
+            currencies = columns[CURRENCY].readStrings(rows);
+            failureReasons = columns[FAILURE_REASON].readStrings(rows);
+        }
+        
+        // Rows of one account with since <= createdAt and (createdAt, id) before the
+        // cursor, newest first
+        List<TransactionResponse> rowsOf(long accountId, LocalDateTime since, TransactionCursor before) {
+            long sinceMicros = toMicros(since);
+            long beforeMicros = toMicros(before.getCreatedAt());
+            
+            List<TransactionResponse> rows = new ArrayList<>();
+            for (int i = firstRowOf(accountId); i < accountKeys.length && accountKeys[i] == accountId; i++) {
+                if (createdAt[i] < sinceMicros) {
+                    break;
+                }
+                if (createdAt[i] < beforeMicros || (createdAt[i] == beforeMicros && ids[i] < before.getId())) {
+                    rows.add(toResponse(i));
+                }
+            }
+            return rows;
+        }
+        
+        private int firstRowOf(long accountId) {
+            int low = 0;
+            int high = accountKeys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (accountKeys[mid] < accountId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        private TransactionResponse toResponse(int i) {
+            return new TransactionResponse(
+                ids[i],
+                references[i],
+                fromAccountNumbers[i],
+                toAccountNumbers[i],
+                amounts[i],
+                Transaction.TransactionType.valueOf(types[i]),
+                Transaction.TransactionStatus.valueOf(statuses[i]),
+                descriptions[i],
+                fees[i],
+                fromMicros(createdAt[i]),
+                processedAt[i] != null ? fromMicros(processedAt[i]) : null,
+                currencies[i],
+                failureReasons[i]);
+        }
+    }
+    
+    static Contents read(Path file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive segment " + file, e);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 8));
+        if (bytes.length < 8 || buffer.getLong(bytes.length - 8) != crc.getValue()) {
+            throw new IllegalStateException("Archive segment " + file + " is corrupt");
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalStateException("Archive segment " + file + " has an unknown format");
+        }
+        
+        int rows = buffer.getInt();
+        buffer.position(buffer.position() + 8 * 4);
+        int columnCount = buffer.getInt();
+        int[] compressedLengths = new int[columnCount];
+        int[] rawLengths = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            compressedLengths[i] = buffer.getInt();
+            rawLengths[i] = buffer.getInt();
+        }
+        ColumnReader[] columns = new ColumnReader[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = new ColumnReader(inflate(bytes, buffer.position(), compressedLengths[i], rawLengths[i]));
+            buffer.position(buffer.position() + compressedLengths[i]);
+        }
+        return new Contents(rows, columns);
+    }
+    
+    static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+    
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+    
+    private static byte[] deflate(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream stream = new DeflaterOutputStream(out, deflater)) {
+            stream.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] inflate(byte[] bytes, int offset, int length, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, length);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+            if (read != rawLength) {
+                throw new IllegalStateException("Archive segment column is truncated");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Archive segment column is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    // Encodes one column; longs are stored as deltas from the previous non-null value
+    private static class ColumnWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private long previous;
+        
+        void writeLong(long value) {
+            writeVarLong(zigZag(value - previous));
+            previous = value;
+        }
+        
+        void writeNullableLong(Long value) {
+            out.write(value != null ? 1 : 0);
+            if (value != null) {
+                writeLong(value);
+            }
+        }
+        
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+        }
+        
+        // Scale + 1 (0 for null), then the unscaled value's two's-complement bytes
+        void writeDecimal(BigDecimal value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            writeVarLong(value.scale() + 1L);
+            writeVarLong(unscaled.length);
+            out.write(unscaled, 0, unscaled.length);
+        }
+        
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+        
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+        
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+    
+    private static class ColumnReader {
+        private final ByteBuffer in;
+        private long previous;
+        
+        ColumnReader(byte[] raw) {
+            this.in = ByteBuffer.wrap(raw);
+        }
+        
+        long[] readLongs(int rows) {
+            long[] values = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = readLong();
+            }
+            return values;
+        }
+        
+        Long[] readNullableLongs(int rows) {
+            Long[] values = new Long[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = in.get() != 0 ? readLong() : null;
+            }
+            return values;
+        }
+        
+        String[] readStrings(int rows) {
+            String[] values = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                int length = (int) readVarLong();
+                if (length > 0) {
+                    values[i] = new String(in.array(), in.position(), length - 1, StandardCharsets.UTF_8);
+                    in.position(in.position() + length - 1);
+                }
+            }
+            return values;
+        }
+        
+        BigDecimal[] readDecimals(int rows) {
+            BigDecimal[] values = new BigDecimal[rows];
+            for (int i = 0; i < rows; i++) {
+                int scale = (int) readVarLong();
+                if (scale > 0) {
+                    byte[] unscaled = new byte[(int) readVarLong()];
+                    in.get(unscaled);
+                    values[i] = new BigDecimal(new BigInteger(unscaled), scale - 1);
+                }
+            }
+            return values;
+        }
+        
+        private long readLong() {
+            long encoded = readVarLong();
+            previous += (encoded >>> 1) ^ -(encoded & 1);
+            return previous;
+        }
+        
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package com.mybankaccount.backend.service;
 
+import com.mybankaccount.backend.dto.BatchTransferResponse;
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.dto.TransferRequest;
 import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.LedgerEntry;
 import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.exception.RetryScheduledException;
+import com.mybankaccount.backend.repository.AccountStatsStore;
+import com.mybankaccount.backend.repository.LedgerEntryRepository;
+import com.mybankaccount.backend.repository.TransactionBatchWriter;
 import com.mybankaccount.backend.repository.TransactionRepository;
 import com.mybankaccount.backend.repository.AccountRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -29,6 +46,48 @@ public class TransactionService {
     @Autowired
     private AccountService accountService;
     
+    @Autowired
+    private BalanceMutationStrategy balanceMutationStrategy;
+    
+    @Autowired(required = false)
+    private PostingRoutineTransferExecutor postingRoutineTransferExecutor;
+    
+    @Autowired(required = false)
+    private JournaledPostingService journaledPostingService;
+    
+    @Autowired(required = false)
+    private BalanceEngine balanceEngine;
+    
+    @Autowired
+    private TransactionBatchWriter transactionBatchWriter;
+    
+    @Autowired
+    private IdAllocator idAllocator;
+    
+    @Autowired
+    private LedgerRecorder ledgerRecorder;
+    
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+    
+    @Autowired
+    private AccountStatsRecorder accountStatsRecorder;
+    
+    @Autowired
+    private AccountStatsStore accountStatsStore;
+    
+    @Autowired
+    private AccountHistoryQuery accountHistoryQuery;
+    
+    @Autowired
+    private TransactionRetryEngine transactionRetryEngine;
+    
+    @Value("${bank.transfer.batch.max-size:1000}")
+    private int maxBatchSize;
+    
+    @Value("${bank.transactions.page.max-size:200}")
+    private int maxPageSize;
+    
     // Transfer money between accounts
     public Transaction transferMoney(String fromAccountNumber, String toAccountNumber, 
                                    BigDecimal amount, String description) {
@@ -41,6 +100,18 @@ public class TransactionService {
             throw new IllegalArgumentException("Cannot transfer to the same account");
         }
         
+        // Journal mode: durable once synced to the journal, applied to the tables later
+        if (journaledPostingService != null) {
+            return journaledPostingService.transfer(
+                generateTransactionReference(), fromAccountNumber, toAccountNumber, amount, description);
+        }
+        
+        // Single-round-trip path: checks, debit, credit and insert happen in the database
+        if (postingRoutineTransferExecutor != null) {
+            return postingRoutineTransferExecutor.transfer(
+                generateTransactionReference(), fromAccountNumber, toAccountNumber, amount, description);
+        }
+        
         // Find accounts
         Account fromAccount = accountRepository.findByAccountNumber(fromAccountNumber)
             .orElseThrow(() -> new RuntimeException("Source account not found: " + fromAccountNumber));
@@ -77,33 +148,233 @@ public class TransactionService {
             transaction = transactionRepository.save(transaction);
             
             // Perform the transfer
-            fromAccount.withdraw(amount);
-            toAccount.deposit(amount);
-            
-            // Update accounts
-            accountRepository.save(fromAccount);
-            accountRepository.save(toAccount);
+            balanceMutationStrategy.transfer(fromAccount, toAccount, amount);
             
             // Mark transaction as completed
             transaction.markAsCompleted();
             transaction = transactionRepository.save(transaction);
+            ledgerRecorder.record(transaction);
+            accountStatsRecorder.record(transaction);
             
             return transaction;
             
         } catch (Exception e) {
-            // Mark transaction as failed
+            // Mark transaction as failed; the retry engine keeps the row once this rolls back
             transaction.markAsFailed(e.getMessage());
+            boolean retrying = transactionRetryEngine.recordFailure(transaction, e);
             transactionRepository.save(transaction);
+            if (retrying) {
+                throw new RetryScheduledException("Transfer did not go through yet and will be retried: "
+                    + e.getMessage(), transaction.getTransactionReference(), e);
+            }
             throw new RuntimeException("Transfer failed: " + e.getMessage(), e);
         }
     }
     
+    // Apply many transfers in one database transaction. Every touched account is locked
+    // once, balances are moved in memory and the transaction rows are batch-inserted.
+    // Items that cannot be applied are reported as failed without affecting the others.
+    public BatchTransferResponse transferBatch(List<TransferRequest> transfers) {
+        if (transfers == null || transfers.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one transfer");
+        }
+        
+        if (transfers.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch cannot contain more than " + maxBatchSize + " transfers");
+        }
+        
+        if (journaledPostingService != null) {
+            return transferBatchThroughJournal(transfers);
+        }
+        
+        Map<String, Account> accounts = lockBatchAccounts(transfers);
+        
+        if (balanceEngine != null) {
+            return transferBatchThroughEngine(transfers, accounts);
+        }
+        
+        // Group by source account, keeping request order inside each group
+        Map<String, List<Integer>> bySource = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest request = transfers.get(i);
+            String source = request != null ? request.getFromAccountNumber() : null;
+            bySource.computeIfAbsent(source != null ? source : "", key -> new ArrayList<>()).add(i);
+        }
+        
+        BatchTransferResponse.ItemResult[] results = new BatchTransferResponse.ItemResult[transfers.size()];
+        List<Transaction> postings = new ArrayList<>();
+        List<LedgerRecorder.Posting> ledgerPostings = new ArrayList<>();
+        
+        for (List<Integer> group : bySource.values()) {
+            for (int index : group) {
+                TransferRequest request = transfers.get(index);
+                String error = validateBatchItem(request, accounts);
+                if (error != null) {
+                    results[index] = BatchTransferResponse.ItemResult.failed(index, request, error);
+                    continue;
+                }
+                
+                Account fromAccount = accounts.get(request.getFromAccountNumber());
+                Account toAccount = accounts.get(request.getToAccountNumber());
+                fromAccount.withdraw(request.getAmount());
+                toAccount.deposit(request.getAmount());
+                
+                Transaction transaction = new Transaction(generateTransactionReference(), fromAccount, toAccount,
+                    request.getAmount(), Transaction.TransactionType.TRANSFER, request.getDescription());
+                transaction.markAsCompleted();
+                postings.add(transaction);
+                ledgerPostings.add(LedgerRecorder.Posting.of(transaction));
+                
+                results[index] = BatchTransferResponse.ItemResult.succeeded(
+                    index, request, transaction.getTransactionReference());
+            }
+        }
+        
+        // Account updates are flushed by Hibernate at commit
+        transactionBatchWriter.insertAll(postings);
+        ledgerRecorder.recordAll(ledgerPostings);
+        accountStatsRecorder.recordAll(postings);
+        
+        return new BatchTransferResponse(List.of(results));
+    }
+    
+    private Map<String, Account> lockBatchAccounts(List<TransferRequest> transfers) {
+        Set<String> accountNumbers = new HashSet<>();
+        for (TransferRequest request : transfers) {
+            if (request != null) {
+                if (request.getFromAccountNumber() != null) accountNumbers.add(request.getFromAccountNumber());
+                if (request.getToAccountNumber() != null) accountNumbers.add(request.getToAccountNumber());
+            }
+        }
+        
+        return accountRepository.findAllByAccountNumberInForUpdate(accountNumbers).stream()
+            .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+    }
+    
+    // Engine mode: the balance engine decides each item, so balances go through the strategy
+    private BatchTransferResponse transferBatchThroughEngine(List<TransferRequest> transfers,
+                                                            Map<String, Account> accounts) {
+        List<BatchTransferResponse.ItemResult> results = new ArrayList<>(transfers.size());
+        List<Transaction> postings = new ArrayList<>();
+        List<LedgerRecorder.Posting> ledgerPostings = new ArrayList<>();
+        
+        for (int index = 0; index < transfers.size(); index++) {
+            TransferRequest request = transfers.get(index);
+            String error = validateBatchItem(request, accounts);
+            if (error != null) {
+                results.add(BatchTransferResponse.ItemResult.failed(index, request, error));
+                continue;
+            }
+            
+            Account fromAccount = accounts.get(request.getFromAccountNumber());
+            Account toAccount = accounts.get(request.getToAccountNumber());
+            try {
+                balanceMutationStrategy.transfer(fromAccount, toAccount, request.getAmount());
+            } catch (RuntimeException e) {
+                results.add(BatchTransferResponse.ItemResult.failed(index, request, e.getMessage()));
+                continue;
+            }
+            
+            Transaction transaction = new Transaction(generateTransactionReference(), fromAccount, toAccount,
+                request.getAmount(), Transaction.TransactionType.TRANSFER, request.getDescription());
+            transaction.markAsCompleted();
+            postings.add(transaction);
+            ledgerPostings.add(LedgerRecorder.Posting.of(transaction));
+            results.add(BatchTransferResponse.ItemResult.succeeded(index, request, transaction.getTransactionReference()));
+        }
+        
+        transactionBatchWriter.insertAll(postings);
+        ledgerRecorder.recordAll(ledgerPostings);
+        accountStatsRecorder.recordAll(postings);
+        return new BatchTransferResponse(results);
+    }
+    
+    // Journal mode: append every item, then wait once for the last one to be synced
+    private BatchTransferResponse transferBatchThroughJournal(List<TransferRequest> transfers) {
+        List<BatchTransferResponse.ItemResult> results = new ArrayList<>(transfers.size());
+        long lastPosition = 0;
+        
+        for (int index = 0; index < transfers.size(); index++) {
+            TransferRequest request = transfers.get(index);
+            String error = validateTransferRequest(request);
+            if (error != null) {
+                results.add(BatchTransferResponse.ItemResult.failed(index, request, error));
+                continue;
+            }
+            
+            try {
+                JournaledPostingService.Posted posted = journaledPostingService.postTransfer(
+                    generateTransactionReference(), request.getFromAccountNumber(), request.getToAccountNumber(),
+                    request.getAmount(), request.getDescription());
+                lastPosition = Math.max(lastPosition, posted.getPosition());
+                results.add(BatchTransferResponse.ItemResult.succeeded(
+                    index, request, posted.getTransaction().getTransactionReference()));
+            } catch (RuntimeException e) {
+                results.add(BatchTransferResponse.ItemResult.failed(index, request, e.getMessage()));
+            }
+        }
+        
+        journaledPostingService.awaitDurable(lastPosition);
+        return new BatchTransferResponse(results);
+    }
+    
+    // Returns the failure reason for a batch item, or null when it can be applied
+    private String validateBatchItem(TransferRequest request, Map<String, Account> accounts) {
+        String error = validateTransferRequest(request);
+        if (error != null) {
+            return error;
+        }
+        
+        Account fromAccount = accounts.get(request.getFromAccountNumber());
+        if (fromAccount == null) {
+            return "Source account not found: " + request.getFromAccountNumber();
+        }
+        Account toAccount = accounts.get(request.getToAccountNumber());
+        if (toAccount == null) {
+            return "Destination account not found: " + request.getToAccountNumber();
+        }
+        if (!fromAccount.isActive()) {
+            return "Source account is not active";
+        }
+        if (!toAccount.isActive()) {
+            return "Destination account is not active";
+        }
+        if (!fromAccount.hasSufficientBalance(request.getAmount())) {
+            return "Insufficient balance in source account";
+        }
+        return null;
+    }
+    
+    // Checks the request itself, before any account is looked at
+    private String validateTransferRequest(TransferRequest request) {
+        if (request == null) {
+            return "Transfer is required";
+        }
+        if (request.getFromAccountNumber() == null || request.getFromAccountNumber().isBlank()) {
+            return "From account number is required";
+        }
+        if (request.getToAccountNumber() == null || request.getToAccountNumber().isBlank()) {
+            return "To account number is required";
+        }
+        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Transfer amount must be greater than zero";
+        }
+        if (request.getFromAccountNumber().equals(request.getToAccountNumber())) {
+            return "Cannot transfer to the same account";
+        }
+        return null;
+    }
+    
     // Deposit money to account
     public Transaction depositMoney(String accountNumber, BigDecimal amount, String description) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Deposit amount must be greater than zero");
         }
         
+        if (journaledPostingService != null) {
+            return journaledPostingService.deposit(generateTransactionReference(), accountNumber, amount, description);
+        }
+        
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
@@ -122,17 +393,23 @@ public class TransactionService {
         try {
             transaction = transactionRepository.save(transaction);
             
-            account.deposit(amount);
-            accountRepository.save(account);
+            balanceMutationStrategy.deposit(account, amount);
             
             transaction.markAsCompleted();
             transaction = transactionRepository.save(transaction);
+            ledgerRecorder.record(transaction);
+            accountStatsRecorder.record(transaction);
             
             return transaction;
             
         } catch (Exception e) {
             transaction.markAsFailed(e.getMessage());
+            boolean retrying = transactionRetryEngine.recordFailure(transaction, e);
             transactionRepository.save(transaction);
+            if (retrying) {
+                throw new RetryScheduledException("Deposit did not go through yet and will be retried: "
+                    + e.getMessage(), transaction.getTransactionReference(), e);
+            }
             throw new RuntimeException("Deposit failed: " + e.getMessage(), e);
         }
     }
@@ -143,6 +420,10 @@ public class TransactionService {
             throw new IllegalArgumentException("Withdrawal amount must be greater than zero");
         }
         
+        if (journaledPostingService != null) {
+            return journaledPostingService.withdraw(generateTransactionReference(), accountNumber, amount, description);
+        }
+        
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
@@ -165,74 +446,121 @@ public class TransactionService {
         try {
             transaction = transactionRepository.save(transaction);
             
-            account.withdraw(amount);
-            accountRepository.save(account);
+            balanceMutationStrategy.withdraw(account, amount);
             
             transaction.markAsCompleted();
             transaction = transactionRepository.save(transaction);
+            ledgerRecorder.record(transaction);
+            accountStatsRecorder.record(transaction);
             
             return transaction;
             
         } catch (Exception e) {
             transaction.markAsFailed(e.getMessage());
+            boolean retrying = transactionRetryEngine.recordFailure(transaction, e);
             transactionRepository.save(transaction);
+            if (retrying) {
+                throw new RetryScheduledException("Withdrawal did not go through yet and will be retried: "
+                    + e.getMessage(), transaction.getTransactionReference(), e);
+            }
             throw new RuntimeException("Withdrawal failed: " + e.getMessage(), e);
         }
     }
     
-    // Get transaction by reference
+    // Get transaction by reference; empty for unknown and archived references alike
     public Optional<Transaction> getTransactionByReference(String transactionReference) {
         return transactionRepository.findByTransactionReference(transactionReference);
     }
     
+    // For a reference getTransactionByReference did not find: whether it was posted and its
+    // month archived since. Archived rows are kept per account, so they are read through
+    // the account's history instead.
+    public boolean isArchivedReference(String transactionReference) {
+        return transactionRepository.existsByTransactionReference(transactionReference);
+    }
+    
     // Get transaction by ID
     public Optional<Transaction> getTransactionById(Long id) {
         return transactionRepository.findById(id);
     }
     
     // Get account transactions
-    public Page<Transaction> getAccountTransactions(String accountNumber, Pageable pageable) {
+    public Page<TransactionResponse> getAccountTransactions(String accountNumber, Pageable pageable) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
+        
+        Long accountId = account.getId();
+        List<TransactionResponse> content = accountHistoryQuery.page(accountId, (int) pageable.getOffset(), pageable.getPageSize());
+        // The count only runs when the page alone cannot tell the total
+        return PageableExecutionUtils.getPage(content, pageable, () -> accountHistoryQuery.count(accountId));
+    }
+    
+    // Keyset page of account transactions, newest first. One extra row is read to tell
+    // whether another page follows, instead of counting the whole history.
+    @Transactional(readOnly = true)
+    public TransactionPage getAccountTransactionsPage(String accountNumber, String cursor, int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+        
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
-        return transactionRepository.findByAccount(account, pageable);
+        TransactionCursor position = TransactionCursor.decode(cursor);
+        List<TransactionResponse> rows = accountHistoryQuery.page(account.getId(), position, size + 1);
+        
+        if (rows.size() <= size) {
+            return new TransactionPage(rows, null);
+        }
+        List<TransactionResponse> page = rows.subList(0, size);
+        return new TransactionPage(page, TransactionCursor.after(page.get(size - 1)).encode());
+    }
+    
+    // Ledger entries of an account, newest first, below the given sequence number
+    @Transactional(readOnly = true)
+    public List<LedgerEntry> getLedgerEntries(String accountNumber, Long beforeSeq, int size) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
+        
+        long upperBound = beforeSeq != null ? beforeSeq : Long.MAX_VALUE;
+        return ledgerEntryRepository.findHistory(account.getId(), upperBound, PageRequest.of(0, size));
     }
     
     // Get account transactions (list)
-    public List<Transaction> getAccountTransactions(String accountNumber) {
+    public List<TransactionResponse> getAccountTransactions(String accountNumber) {
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
-        return transactionRepository.findByAccount(account);
+        return accountHistoryQuery.all(account.getId());
     }
     
     // Get transactions by date range
-    public List<Transaction> getTransactionsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return transactionRepository.findByDateRange(startDate, endDate);
+    public List<TransactionResponse> getTransactionsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        return transactionRepository.findResponsesByDateRange(startDate, endDate);
     }
     
     // Get account transactions by date range
-    public List<Transaction> getAccountTransactionsByDateRange(String accountNumber, 
+    public List<TransactionResponse> getAccountTransactionsByDateRange(String accountNumber, 
                                                               LocalDateTime startDate, 
                                                               LocalDateTime endDate) {
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
-        return transactionRepository.findByAccountAndDateRange(account, startDate, endDate);
+        return accountHistoryQuery.between(account.getId(), startDate, endDate);
     }
     
     // Get transactions by status
-    public List<Transaction> getTransactionsByStatus(Transaction.TransactionStatus status) {
-        return transactionRepository.findByStatusOrderByCreatedAtDesc(status);
+    public List<TransactionResponse> getTransactionsByStatus(Transaction.TransactionStatus status) {
+        return transactionRepository.findResponsesByStatus(status);
     }
     
     // Get recent transactions for account
-    public List<Transaction> getRecentAccountTransactions(String accountNumber, int days) {
+    public List<TransactionResponse> getRecentAccountTransactions(String accountNumber, int days) {
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
         LocalDateTime since = LocalDateTime.now().minusDays(days);
-        return transactionRepository.findRecentTransactionsByAccount(account, since);
+        return accountHistoryQuery.between(account.getId(), since, null);
     }
     
     // Cancel pending transaction
@@ -253,21 +581,30 @@ public class TransactionService {
         Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found: " + accountNumber));
         
-        BigDecimal totalIncoming = transactionRepository.sumIncomingAmountByAccount(account);
-        BigDecimal totalOutgoing = transactionRepository.sumOutgoingAmountByAccount(account);
-        long transactionCount = transactionRepository.countByAccount(account);
-        
-        return new AccountBalanceSummary(account.getBalance(), totalIncoming, totalOutgoing, transactionCount);
+        // One primary-key read of the totals maintained by AccountStatsRecorder
+        return accountStatsStore.find(account.getId())
+            .map(stats -> new AccountBalanceSummary(account.getBalance(), stats.getTotalIncoming(),
+                stats.getTotalOutgoing(), stats.getTransactionCount()))
+            .orElseGet(() -> new AccountBalanceSummary(account.getBalance(), BigDecimal.ZERO, BigDecimal.ZERO, 0));
     }
     
     // Generate unique transaction reference
     private String generateTransactionReference() {
-        String reference;
-        do {
-            reference = "TXN" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase();
-        } while (transactionRepository.existsByTransactionReference(reference));
+        return idAllocator.nextTransactionReference();
+    }
+    
+    // A page of transactions and the cursor of the next one (null on the last page)
+    public static class TransactionPage {
+        private final List<TransactionResponse> transactions;
+        private final String next;
+        
+        public TransactionPage(List<TransactionResponse> transactions, String next) {
+            this.transactions = transactions;
+            this.next = next;
+        }
         
-        return reference;
+        public List<TransactionResponse> getTransactions() { return transactions; }
+        public String getNext() { return next; }
     }
     
     // Inner class for balance summary
@@ -19,10 +19,12 @@ public class UserService implements UserDetailsService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final IdAllocator idAllocator;
     
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, IdAllocator idAllocator) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.idAllocator = idAllocator;
     }
     
     @Override
@@ -60,7 +62,7 @@ public class UserService implements UserDetailsService {
         
         // Generate unique customer number if not provided
         if (user.getMusteriNo() == null || user.getMusteriNo().isEmpty()) {
-            user.setMusteriNo(generateUniqueCustomerNumber());
+            user.setMusteriNo(idAllocator.nextCustomerNumber());
         } else if (userRepository.findByMusteriNo(user.getMusteriNo()).isPresent()) {
             throw new RuntimeException("Müşteri numarası zaten kayıtlı: " + user.getMusteriNo());
         }
@@ -149,14 +151,6 @@ public class UserService implements UserDetailsService {
         return passwordEncoder.matches(rawPassword, encodedPassword);
     }
     
-    private String generateUniqueCustomerNumber() {
-        String customerNumber;
-        do {
-            customerNumber = String.format("%011d", (long) (Math.random() * 100000000000L));
-        } while (userRepository.findByMusteriNo(customerNumber).isPresent());
-        return customerNumber;
-    }
-    
     public boolean isValidTcKimlikNo(String tcKimlikNo) {
         if (tcKimlikNo == null || tcKimlikNo.length() != 11) {
             return false;
@@ -0,0 +1,7 @@
+-- Keyset paging of account history walks each side of a transaction in
+-- (created_at, id) order; these give both sides a matching range scan.
+CREATE INDEX IF NOT EXISTS idx_transactions_from_account_created
+    ON transactions (from_account_id, created_at, id);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_to_account_created
+    ON transactions (to_account_id, created_at, id);
@@ -0,0 +1,30 @@
+-- Indexes for the repository queries. QueryPlanTests checks that none of them
+-- falls back to a sequential scan. V10 already covers the account-side
+-- (from/to_account_id, created_at, id) lookups.
+
+-- Status listings and the FAILED retry lookup, newest first
+CREATE INDEX IF NOT EXISTS idx_transactions_status_created
+    ON transactions (status, created_at);
+
+-- Stale PENDING rows are a small, hot subset
+CREATE INDEX IF NOT EXISTS idx_transactions_pending_created
+    ON transactions (created_at)
+    WHERE status = 'PENDING';
+
+-- Rows arrive in created_at order, so a BRIN index serves date-range scans
+-- at a fraction of a btree's size
+CREATE INDEX IF NOT EXISTS idx_transactions_created_brin
+    ON transactions USING brin (created_at);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_amount
+    ON transactions (amount);
+
+CREATE INDEX IF NOT EXISTS idx_payments_user_created
+    ON payments (user_id, created_at);
+
+CREATE INDEX IF NOT EXISTS idx_payments_transaction_id
+    ON payments (transaction_id);
+
+-- Account lists per user, with or without the active filter
+CREATE INDEX IF NOT EXISTS idx_accounts_user_active
+    ON accounts (user_id, is_active);
@@ -0,0 +1,148 @@
+-- Monthly range partitions on created_at for transactions and payments.
+-- Partitions are named <table>_YYYY_MM; this migration creates one for every month
+-- that has rows plus the next three, and PartitionMaintenanceJob keeps creating
+-- them ahead of time. There is deliberately no DEFAULT partition: it would block
+-- DETACH PARTITION ... CONCURRENTLY, which is how old months are taken out.
+--
+-- The primary keys become (id, created_at) because a unique index on a partitioned
+-- table has to contain the partition key. For the same reason transaction_reference
+-- can no longer be unique across the table; references come from IdAllocator, which
+-- never hands one out twice, and a plain index keeps lookups by reference.
+--
+-- Existing rows are copied into the new tables, so run this in a maintenance window
+-- on a large database.
+
+CREATE OR REPLACE FUNCTION create_monthly_partition(p_parent text, p_month date)
+RETURNS text
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_from date := date_trunc('month', p_month);
+    v_name text := p_parent || '_' || to_char(p_month, 'YYYY_MM');
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, p_parent, v_from, v_from + interval '1 month');
+    RETURN v_name;
+END;
+$$;
+
+-- transactions
+
+ALTER SEQUENCE transactions_seq OWNED BY NONE;
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+
+CREATE TABLE transactions (
+    id                    bigint NOT NULL DEFAULT nextval('transactions_seq'),
+    amount                numeric(15, 2) NOT NULL,
+    created_at            timestamp(6) NOT NULL,
+    currency              varchar(3),
+    description           varchar(500),
+    failure_reason        varchar(1000),
+    fee                   numeric(10, 2),
+    processed_at          timestamp(6),
+    status                varchar(255) NOT NULL CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED', 'CANCELLED')),
+    transaction_reference varchar(50) NOT NULL,
+    transaction_type      varchar(255) NOT NULL CHECK (transaction_type IN ('TRANSFER', 'DEPOSIT', 'WITHDRAWAL', 'PAYMENT')),
+    from_account_id       bigint,
+    to_account_id         bigint,
+    CONSTRAINT pk_transactions PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_transactions_from_account FOREIGN KEY (from_account_id) REFERENCES accounts (id),
+    CONSTRAINT fk_transactions_to_account FOREIGN KEY (to_account_id) REFERENCES accounts (id)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE transactions_seq OWNED BY transactions.id;
+
+-- payments
+
+ALTER SEQUENCE payments_seq OWNED BY NONE;
+ALTER TABLE payments RENAME TO payments_unpartitioned;
+
+CREATE TABLE payments (
+    id                bigint NOT NULL DEFAULT nextval('payments_seq'),
+    amount            numeric(19, 2) NOT NULL,
+    created_at        timestamp(6) NOT NULL,
+    description       varchar(255),
+    payment_reference varchar(255),
+    payment_type      varchar(255) NOT NULL CHECK (payment_type IN ('ELECTRICITY', 'WATER', 'GAS', 'INTERNET', 'PHONE',
+                                                                    'CREDIT_CARD', 'LOAN', 'INSURANCE', 'TAX', 'OTHER')),
+    processed_at      timestamp(6),
+    recipient_account varchar(255),
+    recipient_name    varchar(255) NOT NULL,
+    status            varchar(255) NOT NULL CHECK (status IN ('PENDING', 'PROCESSING', 'COMPLETED', 'FAILED', 'CANCELLED')),
+    transaction_id    varchar(255),
+    account_id        bigint NOT NULL,
+    user_id           bigint NOT NULL,
+    CONSTRAINT pk_payments PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_payments_account FOREIGN KEY (account_id) REFERENCES accounts (id),
+    CONSTRAINT fk_payments_user FOREIGN KEY (user_id) REFERENCES users (id)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE payments_seq OWNED BY payments.id;
+
+-- One partition per month from the oldest row to three months ahead
+
+DO $$
+DECLARE
+    v_parent text;
+    v_month  date;
+    v_oldest timestamp;
+BEGIN
+    FOREACH v_parent IN ARRAY ARRAY['transactions', 'payments'] LOOP
+        EXECUTE format('SELECT min(created_at) FROM %I', v_parent || '_unpartitioned') INTO v_oldest;
+        v_month := date_trunc('month', least(coalesce(v_oldest, now()), now()));
+        WHILE v_month < date_trunc('month', now()) + interval '4 months' LOOP
+            PERFORM create_monthly_partition(v_parent, v_month);
+            v_month := v_month + interval '1 month';
+        END LOOP;
+    END LOOP;
+END;
+$$;
+
+-- created_at was nullable on transactions; rows without it fall back to processed_at
+INSERT INTO transactions (id, amount, created_at, currency, description, failure_reason, fee, processed_at,
+                          status, transaction_reference, transaction_type, from_account_id, to_account_id)
+SELECT id, amount, coalesce(created_at, processed_at, now()), currency, description, failure_reason, fee,
+       processed_at, status, transaction_reference, transaction_type, from_account_id, to_account_id
+  FROM transactions_unpartitioned;
+
+INSERT INTO payments (id, amount, created_at, description, payment_reference, payment_type, processed_at,
+                      recipient_account, recipient_name, status, transaction_id, account_id, user_id)
+SELECT id, amount, created_at, description, payment_reference, payment_type, processed_at,
+       recipient_account, recipient_name, status, transaction_id, account_id, user_id
+  FROM payments_unpartitioned;
+
+DROP TABLE transactions_unpartitioned;
+DROP TABLE payments_unpartitioned;
+
+-- Indexes from V10 and V11, now created on every partition
+
+CREATE INDEX idx_transactions_reference
+    ON transactions (transaction_reference);
+
+CREATE INDEX idx_transactions_from_account_created
+    ON transactions (from_account_id, created_at, id);
+
+CREATE INDEX idx_transactions_to_account_created
+    ON transactions (to_account_id, created_at, id);
+
+CREATE INDEX idx_transactions_status_created
+    ON transactions (status, created_at);
+
+CREATE INDEX idx_transactions_pending_created
+    ON transactions (created_at)
+    WHERE status = 'PENDING';
+
+CREATE INDEX idx_transactions_created_brin
+    ON transactions USING brin (created_at);
+
+CREATE INDEX idx_transactions_amount
+    ON transactions (amount);
+
+CREATE INDEX idx_payments_user_created
+    ON payments (user_id, created_at);
+
+CREATE INDEX idx_payments_transaction_id
+    ON payments (transaction_id);
+
+ANALYZE transactions;
+ANALYZE payments;
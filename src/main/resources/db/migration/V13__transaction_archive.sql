@@ -0,0 +1,31 @@
+-- Cold tier for old transactions. TransactionArchiveJob moves whole months out of the
+-- transactions partitions into compressed segment files on the local disk of the node
+-- that runs it. A segment file only counts once its row here has committed, so files
+-- without a row are leftovers of an interrupted run. The min/max columns are the
+-- segment index readers use to skip files.
+CREATE TABLE IF NOT EXISTS archive_segments (
+    file_name      varchar(100) NOT NULL,
+    archive_month  date         NOT NULL,
+    min_account_id bigint       NOT NULL,
+    max_account_id bigint       NOT NULL,
+    min_created_at timestamp(6) NOT NULL,
+    max_created_at timestamp(6) NOT NULL,
+    row_count      integer      NOT NULL,
+    created_at     timestamp(6) NOT NULL,
+    CONSTRAINT pk_archive_segments PRIMARY KEY (file_name)
+);
+
+CREATE INDEX IF NOT EXISTS idx_archive_segments_month
+    ON archive_segments (archive_month);
+
+-- account_stats definitions over the archived rows, which the stats rebuild can no
+-- longer read from transactions
+CREATE TABLE IF NOT EXISTS archived_account_totals (
+    account_id        bigint        NOT NULL,
+    total_incoming    numeric(19,2) NOT NULL DEFAULT 0,
+    total_outgoing    numeric(19,2) NOT NULL DEFAULT 0,
+    transaction_count bigint        NOT NULL DEFAULT 0,
+    last_activity_at  timestamp(6),
+    CONSTRAINT pk_archived_account_totals PRIMARY KEY (account_id),
+    CONSTRAINT fk_archived_account_totals_account FOREIGN KEY (account_id) REFERENCES accounts (id)
+);
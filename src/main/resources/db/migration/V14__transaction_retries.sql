@@ -0,0 +1,18 @@
+-- Retry state of FAILED transactions, one row per transaction. TransactionRetryEngine
+-- claims SCHEDULED rows in next_attempt_at order, so the partial index below is the
+-- retry queue. transaction_created_at locates the transaction's partition; there is no
+-- foreign key because archived months leave the transactions table.
+CREATE TABLE IF NOT EXISTS transaction_retries (
+    transaction_id         bigint        NOT NULL,
+    transaction_created_at timestamp(6)  NOT NULL,
+    state                  varchar(20)   NOT NULL CHECK (state IN ('SCHEDULED', 'SUCCEEDED', 'EXHAUSTED', 'TERMINAL')),
+    attempts               integer       NOT NULL,
+    next_attempt_at        timestamp(6),
+    last_error             varchar(1000),
+    updated_at             timestamp(6)  NOT NULL,
+    CONSTRAINT pk_transaction_retries PRIMARY KEY (transaction_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_transaction_retries_due
+    ON transaction_retries (next_attempt_at)
+    WHERE state = 'SCHEDULED';
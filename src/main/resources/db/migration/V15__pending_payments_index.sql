@@ -0,0 +1,6 @@
+-- PaymentBatchProcessor claims PENDING payments oldest first. Like the PENDING
+-- transactions index, this only covers the small unprocessed subset, however many
+-- processed payments pile up beside it.
+CREATE INDEX IF NOT EXISTS idx_payments_pending_created
+    ON payments (created_at)
+    WHERE status = 'PENDING';
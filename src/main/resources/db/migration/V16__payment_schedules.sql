@@ -0,0 +1,42 @@
+-- Standing orders: recurring bill payments and future-dated transfers. next_run_at is
+-- the schedule's watermark. It moves to the following occurrence in the same database
+-- transaction that creates the run's payment or transfer, so a restart resumes from it
+-- without skipping or repeating a run. It is NULL once a schedule has finished or been
+-- cancelled. PaymentScheduler loads upcoming runs through the partial index below.
+CREATE SEQUENCE IF NOT EXISTS payment_schedules_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS payment_schedules (
+    id                bigint         NOT NULL DEFAULT nextval('payment_schedules_seq'),
+    user_id           bigint         NOT NULL,
+    account_id        bigint         NOT NULL,
+    schedule_type     varchar(20)    NOT NULL CHECK (schedule_type IN ('PAYMENT', 'TRANSFER')),
+    payment_type      varchar(255)   CHECK (payment_type IN ('ELECTRICITY', 'WATER', 'GAS', 'INTERNET', 'PHONE',
+                                                             'CREDIT_CARD', 'LOAN', 'INSURANCE', 'TAX', 'OTHER')),
+    amount            numeric(19, 2) NOT NULL,
+    recipient_name    varchar(255),
+    recipient_account varchar(255),
+    description       varchar(255),
+    frequency         varchar(20)    NOT NULL CHECK (frequency IN ('ONCE', 'DAILY', 'WEEKLY', 'MONTHLY')),
+    anchor_day        integer        NOT NULL,
+    next_run_at       timestamp(6),
+    end_at            timestamp(6),
+    is_active         boolean        NOT NULL,
+    run_count         integer        NOT NULL,
+    last_run_at       timestamp(6),
+    last_status       varchar(20)    CHECK (last_status IN ('SUBMITTED', 'COMPLETED', 'FAILED')),
+    last_reference    varchar(255),
+    last_error        varchar(1000),
+    created_at        timestamp(6)   NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_payment_schedules_account FOREIGN KEY (account_id) REFERENCES accounts (id),
+    CONSTRAINT fk_payment_schedules_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+ALTER SEQUENCE payment_schedules_seq OWNED BY payment_schedules.id;
+
+CREATE INDEX IF NOT EXISTS idx_payment_schedules_due
+    ON payment_schedules (next_run_at)
+    WHERE is_active;
+
+CREATE INDEX IF NOT EXISTS idx_payment_schedules_user
+    ON payment_schedules (user_id, created_at);
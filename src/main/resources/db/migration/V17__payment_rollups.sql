@@ -0,0 +1,21 @@
+-- Payment counts and amounts per user, month (of created_at), payment type and status.
+-- Every path that creates a payment or changes its status moves it between rows in the
+-- same transaction, so the payment summary and spending report read a handful of rows
+-- instead of scanning the user's payments. PaymentRollupRebuildJob repairs drift from
+-- the payments table. Months detached from payments keep their rows as history.
+CREATE TABLE IF NOT EXISTS payment_rollups (
+    user_id       bigint         NOT NULL,
+    month         date           NOT NULL,
+    payment_type  varchar(255)   NOT NULL,
+    status        varchar(255)   NOT NULL,
+    payment_count bigint         NOT NULL DEFAULT 0,
+    total_amount  numeric(19, 2) NOT NULL DEFAULT 0,
+    CONSTRAINT pk_payment_rollups PRIMARY KEY (user_id, month, payment_type, status),
+    CONSTRAINT fk_payment_rollups_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+INSERT INTO payment_rollups (user_id, month, payment_type, status, payment_count, total_amount)
+SELECT user_id, date_trunc('month', created_at)::date, payment_type, status, count(*), sum(amount)
+  FROM payments
+ GROUP BY 1, 2, 3, 4
+ON CONFLICT (user_id, month, payment_type, status) DO NOTHING;
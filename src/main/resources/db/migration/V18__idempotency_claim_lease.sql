@@ -0,0 +1,8 @@
+-- When the current claim on an unfinished record was taken. A request that dies with
+-- its node leaves the row unfinished; once claimed_at is older than the lease the next
+-- retry of the key takes the claim over instead of waiting for expires_at.
+ALTER TABLE idempotency_records ADD COLUMN IF NOT EXISTS claimed_at timestamp(6);
+
+UPDATE idempotency_records SET claimed_at = created_at WHERE claimed_at IS NULL;
+
+ALTER TABLE idempotency_records ALTER COLUMN claimed_at SET NOT NULL;
@@ -0,0 +1,98 @@
+-- Single-call transfer posting used when bank.transfer.executor=routine. Versioned here
+-- instead of being installed by the application, so it changes only through a migration.
+-- Locks both accounts in id order, validates them, moves the money and inserts an
+-- already-completed transaction row with its two ledger entries and account_stats
+-- updates. Business failures are reported through o_error_code instead of raising,
+-- so nothing is written and the caller maps the code back to the usual exception.
+CREATE OR REPLACE FUNCTION post_transfer(
+    p_reference    varchar,
+    p_from_account varchar,
+    p_to_account   varchar,
+    p_amount       numeric,
+    p_description  varchar,
+    p_created_at   timestamp)
+RETURNS TABLE (
+    o_error_code      varchar,
+    o_transaction_id  bigint,
+    o_from_account_id bigint,
+    o_to_account_id   bigint)
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_from accounts%ROWTYPE;
+    v_to   accounts%ROWTYPE;
+    v_id   bigint;
+    v_from_balance numeric;
+    v_from_seq     bigint;
+    v_to_balance   numeric;
+    v_to_seq       bigint;
+BEGIN
+    PERFORM 1 FROM accounts
+     WHERE account_number IN (p_from_account, p_to_account)
+     ORDER BY id
+       FOR UPDATE;
+
+    SELECT * INTO v_from FROM accounts WHERE account_number = p_from_account;
+    IF NOT FOUND THEN
+        RETURN QUERY SELECT 'SOURCE_NOT_FOUND'::varchar, NULL::bigint, NULL::bigint, NULL::bigint;
+        RETURN;
+    END IF;
+
+    SELECT * INTO v_to FROM accounts WHERE account_number = p_to_account;
+    IF NOT FOUND THEN
+        RETURN QUERY SELECT 'DESTINATION_NOT_FOUND'::varchar, NULL::bigint, NULL::bigint, NULL::bigint;
+        RETURN;
+    END IF;
+
+    IF NOT coalesce(v_from.is_active, false) THEN
+        RETURN QUERY SELECT 'SOURCE_INACTIVE'::varchar, NULL::bigint, NULL::bigint, NULL::bigint;
+        RETURN;
+    END IF;
+
+    IF NOT coalesce(v_to.is_active, false) THEN
+        RETURN QUERY SELECT 'DESTINATION_INACTIVE'::varchar, NULL::bigint, NULL::bigint, NULL::bigint;
+        RETURN;
+    END IF;
+
+    IF v_from.balance < p_amount THEN
+        RETURN QUERY SELECT 'INSUFFICIENT_FUNDS'::varchar, NULL::bigint, NULL::bigint, NULL::bigint;
+        RETURN;
+    END IF;
+
+    UPDATE accounts
+       SET balance = balance - p_amount, version = version + 1, ledger_seq = ledger_seq + 1,
+           updated_at = p_created_at
+     WHERE id = v_from.id
+    RETURNING balance, ledger_seq INTO v_from_balance, v_from_seq;
+
+    UPDATE accounts
+       SET balance = balance + p_amount, version = version + 1, ledger_seq = ledger_seq + 1,
+           updated_at = p_created_at
+     WHERE id = v_to.id
+    RETURNING balance, ledger_seq INTO v_to_balance, v_to_seq;
+
+    INSERT INTO transactions (transaction_reference, from_account_id, to_account_id, amount,
+                              transaction_type, status, description, fee, created_at,
+                              processed_at, currency)
+    VALUES (p_reference, v_from.id, v_to.id, p_amount,
+            'TRANSFER', 'COMPLETED', p_description, 0, p_created_at,
+            p_created_at, 'USD')
+    RETURNING id INTO v_id;
+
+    INSERT INTO ledger_entries (account_id, seq, transaction_reference, transaction_type,
+                                amount, balance_after, created_at)
+    VALUES (v_from.id, v_from_seq, p_reference, 'TRANSFER', -p_amount, v_from_balance, p_created_at),
+           (v_to.id, v_to_seq, p_reference, 'TRANSFER', p_amount, v_to_balance, p_created_at);
+
+    INSERT INTO account_stats (account_id, total_incoming, total_outgoing, transaction_count, last_activity_at)
+    VALUES (v_from.id, 0, p_amount, 1, p_created_at),
+           (v_to.id, p_amount, 0, 1, p_created_at)
+    ON CONFLICT (account_id) DO UPDATE SET
+        total_incoming = account_stats.total_incoming + EXCLUDED.total_incoming,
+        total_outgoing = account_stats.total_outgoing + EXCLUDED.total_outgoing,
+        transaction_count = account_stats.transaction_count + EXCLUDED.transaction_count,
+        last_activity_at = greatest(account_stats.last_activity_at, EXCLUDED.last_activity_at);
+
+    RETURN QUERY SELECT NULL::varchar, v_id, v_from.id, v_to.id;
+END;
+$$;
@@ -0,0 +1,77 @@
+-- Schema as previously generated by Hibernate (ddl-auto=update).
+-- Databases that already have these tables are baselined at version 1 and skip this script.
+CREATE TABLE users (
+    id           bigint GENERATED BY DEFAULT AS IDENTITY,
+    created_at   timestamp(6),
+    email        varchar(255) NOT NULL,
+    first_name   varchar(255) NOT NULL,
+    is_active    boolean,
+    last_name    varchar(255) NOT NULL,
+    musteri_no   varchar(11),
+    password     varchar(255) NOT NULL,
+    phone_number varchar(255),
+    role         varchar(255) CHECK (role IN ('USER', 'ADMIN')),
+    tc_kimlik_no varchar(11),
+    updated_at   timestamp(6),
+    username     varchar(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT uk_users_musteri_no UNIQUE (musteri_no),
+    CONSTRAINT uk_users_tc_kimlik_no UNIQUE (tc_kimlik_no),
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE accounts (
+    id             bigint GENERATED BY DEFAULT AS IDENTITY,
+    account_number varchar(20) NOT NULL,
+    account_type   varchar(255) NOT NULL CHECK (account_type IN ('CHECKING', 'SAVINGS', 'BUSINESS')),
+    balance        numeric(15, 2) NOT NULL,
+    created_at     timestamp(6),
+    currency       varchar(3),
+    is_active      boolean,
+    updated_at     timestamp(6),
+    user_id        bigint NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_accounts_account_number UNIQUE (account_number),
+    CONSTRAINT fk_accounts_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE transactions (
+    id                    bigint GENERATED BY DEFAULT AS IDENTITY,
+    amount                numeric(15, 2) NOT NULL,
+    created_at            timestamp(6),
+    currency              varchar(3),
+    description           varchar(500),
+    failure_reason        varchar(1000),
+    fee                   numeric(10, 2),
+    processed_at          timestamp(6),
+    status                varchar(255) NOT NULL CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED', 'CANCELLED')),
+    transaction_reference varchar(50) NOT NULL,
+    transaction_type      varchar(255) NOT NULL CHECK (transaction_type IN ('TRANSFER', 'DEPOSIT', 'WITHDRAWAL', 'PAYMENT')),
+    from_account_id       bigint,
+    to_account_id         bigint,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_transactions_reference UNIQUE (transaction_reference),
+    CONSTRAINT fk_transactions_from_account FOREIGN KEY (from_account_id) REFERENCES accounts (id),
+    CONSTRAINT fk_transactions_to_account FOREIGN KEY (to_account_id) REFERENCES accounts (id)
+);
+
+CREATE TABLE payments (
+    id                bigint GENERATED BY DEFAULT AS IDENTITY,
+    amount            numeric(19, 2) NOT NULL,
+    created_at        timestamp(6) NOT NULL,
+    description       varchar(255),
+    payment_reference varchar(255),
+    payment_type      varchar(255) NOT NULL CHECK (payment_type IN ('ELECTRICITY', 'WATER', 'GAS', 'INTERNET', 'PHONE',
+                                                                    'CREDIT_CARD', 'LOAN', 'INSURANCE', 'TAX', 'OTHER')),
+    processed_at      timestamp(6),
+    recipient_account varchar(255),
+    recipient_name    varchar(255) NOT NULL,
+    status            varchar(255) NOT NULL CHECK (status IN ('PENDING', 'PROCESSING', 'COMPLETED', 'FAILED', 'CANCELLED')),
+    transaction_id    varchar(255),
+    account_id        bigint NOT NULL,
+    user_id           bigint NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_payments_account FOREIGN KEY (account_id) REFERENCES accounts (id),
+    CONSTRAINT fk_payments_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
@@ -0,0 +1,34 @@
+-- One row per transaction reference ever posted. The partitioned transactions table
+-- cannot hold a unique constraint on transaction_reference alone, since every unique
+-- key there has to include created_at. A row trigger registers each insert here, so a
+-- second insert with the same reference fails whichever path wrote it. Rows stay when
+-- their month is archived, which keeps references unique for good and lets a lookup
+-- tell an archived reference from an unknown one.
+CREATE TABLE IF NOT EXISTS transaction_references (
+    transaction_reference varchar(50)  NOT NULL,
+    transaction_id        bigint       NOT NULL,
+    created_at            timestamp(6) NOT NULL,
+    CONSTRAINT pk_transaction_references PRIMARY KEY (transaction_reference)
+);
+
+INSERT INTO transaction_references (transaction_reference, transaction_id, created_at)
+SELECT transaction_reference, id, created_at
+  FROM transactions
+ON CONFLICT (transaction_reference) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION register_transaction_reference()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO transaction_references (transaction_reference, transaction_id, created_at)
+    VALUES (NEW.transaction_reference, NEW.id, NEW.created_at);
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_transactions_register_reference ON transactions;
+
+CREATE TRIGGER trg_transactions_register_reference
+    AFTER INSERT ON transactions
+    FOR EACH ROW EXECUTE FUNCTION register_transaction_reference();
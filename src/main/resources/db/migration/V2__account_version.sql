@@ -0,0 +1,2 @@
+-- Optimistic-locking version used by the balance mutation strategies
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0 NOT NULL;
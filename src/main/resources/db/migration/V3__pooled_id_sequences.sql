@@ -0,0 +1,28 @@
+-- Move entity ids from IDENTITY columns to sequences so Hibernate can batch inserts.
+-- Hibernate uses the pooled-lo optimizer: one nextval reserves the next 50 ids.
+-- Each sequence starts above the current max id, and the column default lets plain
+-- SQL inserts (post_transfer routine, JDBC batch writers) keep working.
+
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 50;
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM users), false);
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_seq');
+ALTER SEQUENCE users_seq OWNED BY users.id;
+
+CREATE SEQUENCE IF NOT EXISTS accounts_seq INCREMENT BY 50;
+SELECT setval('accounts_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM accounts), false);
+ALTER TABLE accounts ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE accounts ALTER COLUMN id SET DEFAULT nextval('accounts_seq');
+ALTER SEQUENCE accounts_seq OWNED BY accounts.id;
+
+CREATE SEQUENCE IF NOT EXISTS transactions_seq INCREMENT BY 50;
+SELECT setval('transactions_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), false);
+ALTER TABLE transactions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE transactions ALTER COLUMN id SET DEFAULT nextval('transactions_seq');
+ALTER SEQUENCE transactions_seq OWNED BY transactions.id;
+
+CREATE SEQUENCE IF NOT EXISTS payments_seq INCREMENT BY 50;
+SELECT setval('payments_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM payments), false);
+ALTER TABLE payments ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE payments ALTER COLUMN id SET DEFAULT nextval('payments_seq');
+ALTER SEQUENCE payments_seq OWNED BY payments.id;
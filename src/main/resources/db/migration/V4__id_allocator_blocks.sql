@@ -0,0 +1,12 @@
+-- Block sequences for IdAllocator. Each nextval hands one node a block of 1000 serials
+-- (the increment must match IdAllocator.BLOCK_SIZE), so no query is needed per id.
+
+-- 11-digit account serials; a Luhn check digit makes the 12-digit account number
+CREATE SEQUENCE IF NOT EXISTS account_number_block_seq START WITH 10000000000 INCREMENT BY 1000;
+
+-- 10-digit customer serials; a Luhn check digit makes the 11-digit musteri_no.
+-- Starts clear of the fixed numbers used by DataInitializer.
+CREATE SEQUENCE IF NOT EXISTS customer_number_block_seq START WITH 2000000000 INCREMENT BY 1000;
+
+-- Shared by transaction references and payment transaction ids
+CREATE SEQUENCE IF NOT EXISTS reference_block_seq START WITH 1 INCREMENT BY 1000;
@@ -0,0 +1,11 @@
+-- Position up to which the transaction journal has been applied to the database.
+-- Advanced in the same database transaction as the rows it covers.
+CREATE TABLE IF NOT EXISTS journal_checkpoint (
+    id         integer PRIMARY KEY,
+    position   bigint NOT NULL,
+    updated_at timestamp(6) NOT NULL
+);
+
+INSERT INTO journal_checkpoint (id, position, updated_at)
+VALUES (1, 0, now())
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,15 @@
+-- First result of each money-moving request sent with an Idempotency-Key header.
+-- status_code is NULL while the first request is still running.
+CREATE TABLE IF NOT EXISTS idempotency_records (
+    scope           varchar(100)  NOT NULL,
+    idempotency_key varchar(255)  NOT NULL,
+    request_hash    varchar(64)   NOT NULL,
+    status_code     integer,
+    content_type    varchar(255),
+    response_body   bytea,
+    created_at      timestamp(6)  NOT NULL,
+    expires_at      timestamp(6)  NOT NULL,
+    CONSTRAINT pk_idempotency_records PRIMARY KEY (scope, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_records_expires_at ON idempotency_records (expires_at);
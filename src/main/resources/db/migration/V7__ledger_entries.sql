@@ -0,0 +1,58 @@
+-- Double-entry ledger: one signed entry per account side of every completed posting,
+-- numbered per account (seq) with the balance after the posting. accounts.ledger_seq
+-- holds the last number handed out, so numbering is serialized by the account row lock.
+-- Entries point at transactions by reference only, so the transactions table can be
+-- reorganized without touching the ledger.
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS ledger_seq bigint DEFAULT 0 NOT NULL;
+
+CREATE SEQUENCE IF NOT EXISTS ledger_entries_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS ledger_entries (
+    id                    bigint        DEFAULT nextval('ledger_entries_seq') NOT NULL,
+    account_id            bigint        NOT NULL,
+    seq                   bigint        NOT NULL,
+    transaction_reference varchar(50)   NOT NULL,
+    transaction_type      varchar(20)   NOT NULL,
+    amount                numeric(15,2) NOT NULL,
+    balance_after         numeric(15,2) NOT NULL,
+    created_at            timestamp(6)  NOT NULL,
+    CONSTRAINT pk_ledger_entries PRIMARY KEY (id),
+    CONSTRAINT uk_ledger_entries_account_seq UNIQUE (account_id, seq),
+    CONSTRAINT fk_ledger_entries_account FOREIGN KEY (account_id) REFERENCES accounts (id)
+);
+
+ALTER SEQUENCE ledger_entries_seq OWNED BY ledger_entries.id;
+
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_reference ON ledger_entries (transaction_reference);
+
+-- Backfill from completed transactions. Legs are numbered in posting order and the
+-- running balance is worked backwards from today's balance, so the newest entry of
+-- every account matches accounts.balance.
+WITH legs AS (
+    SELECT from_account_id AS account_id, -amount AS amount, transaction_reference, transaction_type,
+           coalesce(processed_at, created_at) AS posted_at, id AS transaction_id, 0 AS side
+      FROM transactions
+     WHERE status = 'COMPLETED' AND from_account_id IS NOT NULL
+    UNION ALL
+    SELECT to_account_id, amount, transaction_reference, transaction_type,
+           coalesce(processed_at, created_at), id, 1
+      FROM transactions
+     WHERE status = 'COMPLETED' AND to_account_id IS NOT NULL
+),
+numbered AS (
+    SELECT l.account_id, l.amount, l.transaction_reference, l.transaction_type, l.posted_at,
+           row_number() OVER posting_order AS seq,
+           a.balance - coalesce(sum(l.amount) OVER (posting_order ROWS BETWEEN 1 FOLLOWING AND UNBOUNDED FOLLOWING), 0)
+               AS balance_after
+      FROM legs l
+      JOIN accounts a ON a.id = l.account_id
+    WINDOW posting_order AS (PARTITION BY l.account_id ORDER BY l.posted_at, l.transaction_id, l.side)
+)
+INSERT INTO ledger_entries (account_id, seq, transaction_reference, transaction_type, amount, balance_after, created_at)
+SELECT account_id, seq, transaction_reference, transaction_type, amount, balance_after, posted_at
+  FROM numbered;
+
+UPDATE accounts a
+   SET ledger_seq = s.last_seq
+  FROM (SELECT account_id, max(seq) AS last_seq FROM ledger_entries GROUP BY account_id) s
+ WHERE a.id = s.account_id;
@@ -0,0 +1,12 @@
+-- Closing balance of every account at the end of each day, written by the nightly
+-- checkpoint job. ledger_seq is the last ledger entry included, so a point-in-time
+-- read only has to look at ledger entries after it.
+CREATE TABLE IF NOT EXISTS balance_checkpoints (
+    account_id      bigint        NOT NULL,
+    balance_date    date          NOT NULL,
+    closing_balance numeric(15,2) NOT NULL,
+    ledger_seq      bigint        NOT NULL,
+    created_at      timestamp(6)  NOT NULL,
+    CONSTRAINT pk_balance_checkpoints PRIMARY KEY (account_id, balance_date),
+    CONSTRAINT fk_balance_checkpoints_account FOREIGN KEY (account_id) REFERENCES accounts (id)
+);
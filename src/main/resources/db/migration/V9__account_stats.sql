@@ -0,0 +1,33 @@
+-- Running totals behind the balance summary, kept up to date by every posting path
+-- in the transaction that inserts the transaction rows. AccountStatsRebuildJob
+-- recomputes them from transactions to repair drift.
+CREATE TABLE IF NOT EXISTS account_stats (
+    account_id        bigint        NOT NULL,
+    total_incoming    numeric(19,2) NOT NULL DEFAULT 0,
+    total_outgoing    numeric(19,2) NOT NULL DEFAULT 0,
+    transaction_count bigint        NOT NULL DEFAULT 0,
+    last_activity_at  timestamp(6),
+    CONSTRAINT pk_account_stats PRIMARY KEY (account_id),
+    CONSTRAINT fk_account_stats_account FOREIGN KEY (account_id) REFERENCES accounts (id)
+);
+
+-- Backfill with the same definitions the summary queries used: completed amounts
+-- per direction, and every transaction touching the account counted once
+WITH legs AS (
+    SELECT to_account_id AS account_id, id AS transaction_id, created_at,
+           CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END AS incoming, 0 AS outgoing
+      FROM transactions
+     WHERE to_account_id IS NOT NULL
+    UNION ALL
+    SELECT from_account_id, id, created_at,
+           0, CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END
+      FROM transactions
+     WHERE from_account_id IS NOT NULL
+)
+INSERT INTO account_stats (account_id, total_incoming, total_outgoing, transaction_count, last_activity_at)
+SELECT a.id, coalesce(sum(l.incoming), 0), coalesce(sum(l.outgoing), 0),
+       count(DISTINCT l.transaction_id), max(l.created_at)
+  FROM accounts a
+  LEFT JOIN legs l ON l.account_id = a.id
+ GROUP BY a.id
+ON CONFLICT (account_id) DO NOTHING;
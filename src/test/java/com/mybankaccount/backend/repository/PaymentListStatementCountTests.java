@@ -0,0 +1,92 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.dto.PaymentResponse;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Payment;
+import com.mybankaccount.backend.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class PaymentListStatementCountTests {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PartitionStore partitionStore;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void paymentListsTakeOneStatementWhateverTheirSize() {
+        partitionStore.createMonth("payments", YearMonth.now());
+        for (int payments : new int[] { 1, 25 }) {
+            User user = seed(payments);
+            LocalDateTime from = LocalDateTime.now().minusDays(1);
+            LocalDateTime to = LocalDateTime.now().plusDays(1);
+            
+            assertOneStatement(payments, () -> paymentRepository.findByUserOrderByCreatedAtDesc(user));
+            assertOneStatement(payments, () -> paymentRepository.findByUserAndStatusOrderByCreatedAtDesc(
+                user, Payment.PaymentStatus.PENDING));
+            assertOneStatement(payments, () -> paymentRepository.findByUserAndPaymentTypeOrderByCreatedAtDesc(
+                user, Payment.PaymentType.ELECTRICITY));
+            assertOneStatement(payments, () -> paymentRepository.findByUserAndDateRange(user, from, to));
+            assertOneStatement(Math.min(payments, 10), () -> paymentRepository.findTop10ByUserOrderByCreatedAtDesc(user));
+        }
+    }
+    
+    // Every payment on its own account, so a lazy account would cost one select per row
+    private User seed(int payments) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(new User("list" + suffix, "list" + suffix + "@example.com",
+            "password", "List", "User"));
+        for (int i = 0; i < payments; i++) {
+            String accountNumber = String.format("%012d", (System.nanoTime() + i) % 1_000_000_000_000L);
+            Account account = accountRepository.save(new Account(accountNumber, user, Account.AccountType.CHECKING));
+            paymentRepository.save(new Payment(user, account, Payment.PaymentType.ELECTRICITY,
+                new BigDecimal("10.00"), "Utility", "statement count test"));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return entityManager.getReference(User.class, user.getId());
+    }
+    
+    private void assertOneStatement(int expectedRows, Supplier<List<Payment>> query) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManager.clear();
+        statistics.clear();
+        
+        List<PaymentResponse> responses = query.get().stream().map(PaymentResponse::new).toList();
+        
+        assertThat(responses).hasSize(expectedRows);
+        assertThat(responses).allSatisfy(response -> assertThat(response.getAccountNumber()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.mybankaccount.backend.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.User;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs every @Query of TransactionRepository and PaymentRepository against a seeded
+// dataset, captures the SQL Hibernate sends and EXPLAINs its generic plan. Any
+// sequential scan of a non-empty table or partition means a query is missing an
+// index. The seed, including its monthly partitions, is rolled back.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+    + "com.mybankaccount.backend.repository.QueryPlanTests$SqlRecorder")
+@Transactional
+class QueryPlanTests {
+    
+    private static final int USERS = 500;
+    private static final int ACCOUNTS = 5_000;
+    private static final int TRANSACTIONS = 100_000;
+    private static final int PAYMENTS = 20_000;
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PartitionStore partitionStore;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private Account account;
+    private User user;
+    
+    // Collects the SQL of the statements Hibernate prepares
+    public static class SqlRecorder implements StatementInspector {
+        private static final long serialVersionUID = 1L;
+        private static final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+        
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+    
+    @BeforeEach
+    void seed() {
+        for (String table : PartitionStore.PARTITIONED_TABLES) {
+            for (int month = 1; month <= 4; month++) {
+                partitionStore.createMonth(table, YearMonth.of(2024, month));
+            }
+        }
+        jdbcTemplate.update(
+            "INSERT INTO users (username, email, password, first_name, last_name, role, is_active, created_at) " +
+            "SELECT 'qpt' || g, 'qpt' || g || '@example.com', 'password', 'Query', 'Plan', 'USER', true, now() " +
+            "FROM generate_series(1, ?) g", USERS);
+        jdbcTemplate.update(
+            "INSERT INTO accounts (account_number, account_type, balance, currency, is_active, user_id, created_at) " +
+            "SELECT 'QPT' || lpad(g::text, 9, '0'), 'CHECKING', 1000, 'USD', g % 10 <> 0, u.ids[1 + g % ?], now() " +
+            "FROM generate_series(1, ?) g, " +
+            "     (SELECT array_agg(id ORDER BY id) AS ids FROM users WHERE username LIKE 'qpt%') u",
+            USERS, ACCOUNTS);
+        jdbcTemplate.update(
+            "INSERT INTO transactions (transaction_reference, from_account_id, to_account_id, amount, transaction_type, " +
+            "                          status, fee, created_at, processed_at, currency) " +
+            "SELECT 'QPT' || g, a.ids[1 + g % ?], a.ids[1 + (g * 7 + 3) % ?], 1 + g % 1000, 'TRANSFER', " +
+            "       CASE WHEN g % 100 = 0 THEN 'FAILED' WHEN g % 250 = 1 THEN 'PENDING' ELSE 'COMPLETED' END, " +
+            "       0, timestamp '2024-01-01' + g * interval '1 minute', timestamp '2024-01-01' + g * interval '1 minute', 'USD' " +
+            "FROM generate_series(1, ?) g, " +
+            "     (SELECT array_agg(id ORDER BY id) AS ids FROM accounts WHERE account_number LIKE 'QPT%') a",
+            ACCOUNTS, ACCOUNTS, TRANSACTIONS);
+        jdbcTemplate.update(
+            "INSERT INTO payments (user_id, account_id, payment_type, status, amount, recipient_name, created_at, transaction_id) " +
+            "SELECT a.user_id, a.id, 'ELECTRICITY', CASE WHEN g % 20 = 0 THEN 'PENDING' ELSE 'COMPLETED' END, " +
+            "       1 + g % 500, 'Utility', timestamp '2024-01-01' + g * interval '5 minutes', 'QPTPAY' || g " +
+            "FROM generate_series(1, ?) g " +
+            "JOIN accounts a ON a.account_number = 'QPT' || lpad((1 + g % ?)::text, 9, '0')",
+            PAYMENTS, ACCOUNTS);
+        
+        // Rows inserted by this transaction count as live for ANALYZE
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE accounts");
+        jdbcTemplate.execute("ANALYZE transactions");
+        jdbcTemplate.execute("ANALYZE payments");
+        
+        Long accountId = jdbcTemplate.queryForObject(
+            "SELECT id FROM accounts WHERE account_number = 'QPT000000042'", Long.class);
+        account = entityManager.find(Account.class, accountId);
+        user = account.getUser();
+    }
+    
+    @Test
+    void transactionQueriesUseIndexes() throws Exception {
+        assertThat(sequentialScans(transactionRepository, TransactionRepository.class)).isEmpty();
+    }
+    
+    @Test
+    void paymentQueriesUseIndexes() throws Exception {
+        assertThat(sequentialScans(paymentRepository, PaymentRepository.class)).isEmpty();
+    }
+    
+    // Returns "method: table" for every sequential scan found
+    private List<String> sequentialScans(Object repository, Class<?> repositoryType) throws Exception {
+        List<String> scans = new ArrayList<>();
+        for (Method method : repositoryType.getDeclaredMethods()) {
+            if (!method.isAnnotationPresent(Query.class) || method.isAnnotationPresent(Modifying.class)) {
+                continue;
+            }
+            
+            SqlRecorder.statements.clear();
+            method.invoke(repository, argumentsFor(method));
+            List<String> captured = new ArrayList<>(SqlRecorder.statements);
+            assertThat(captured).as("SQL captured for %s", method.getName()).isNotEmpty();
+            
+            for (String sql : captured) {
+                for (String table : seqScannedTables(sql)) {
+                    scans.add(method.getName() + ": " + table);
+                }
+            }
+        }
+        return scans;
+    }
+    
+    // Plans the statement without parameter values, the way a reused prepared statement runs
+    private List<String> seqScannedTables(String sql) throws Exception {
+        StringBuilder numbered = new StringBuilder();
+        int parameters = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameters);
+            } else {
+                numbered.append(c);
+            }
+        }
+        
+        jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+        jdbcTemplate.execute("PREPARE query_plan_test AS " + numbered);
+        try {
+            String nulls = String.join(", ", Collections.nCopies(parameters, "NULL"));
+            String explain = "EXPLAIN (FORMAT JSON) EXECUTE query_plan_test" + (parameters > 0 ? "(" + nulls + ")" : "");
+            String plan = jdbcTemplate.queryForObject(explain, String.class);
+            
+            List<String> tables = new ArrayList<>();
+            collectSeqScans(objectMapper.readTree(plan).get(0).get("Plan"), tables);
+            // A scan of an empty partition (a month without seed rows) costs nothing
+            tables.removeIf(table -> jdbcTemplate.queryForObject(
+                "SELECT reltuples <= 0 FROM pg_class WHERE oid = ?::regclass", Boolean.class, table));
+            return tables;
+        } finally {
+            jdbcTemplate.execute("DEALLOCATE query_plan_test");
+        }
+    }
+    
+    private static void collectSeqScans(JsonNode node, List<String> tables) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            tables.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, tables);
+        }
+    }
+    
+    private Object[] argumentsFor(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            arguments[i] = argumentFor(types[i], i);
+        }
+        return arguments;
+    }
+    
+    private Object argumentFor(Class<?> type, int index) {
+        if (type == Account.class) return account;
+        if (type == User.class) return user;
+        if (type == Long.class || type == long.class) return account.getId();
+        if (type == int.class || type == Integer.class) return 20;
+        if (type == String.class) return "QPT42";
+        if (type == BigDecimal.class) return index == 0 ? BigDecimal.ONE : BigDecimal.TEN;
+        if (type == LocalDateTime.class) return LocalDateTime.of(2024, 2, 1, 0, 0).plusDays(index);
+        if (type == Pageable.class) return PageRequest.of(0, 20);
+        if (type.isEnum()) return type.getEnumConstants()[0];
+        throw new IllegalArgumentException("No sample argument for " + type.getName());
+    }
+}
@@ -0,0 +1,68 @@
+package com.mybankaccount.backend.repository;
+
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import com.mybankaccount.backend.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class TransactionInsertBatchingTests {
+    
+    private static final int ROWS = 200;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void transactionInsertsAreSentInJdbcBatches() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(new User("batch" + suffix, "batch" + suffix + "@example.com",
+            "password", "Batch", "User"));
+        String accountNumber = String.format("%012d", System.nanoTime() % 1_000_000_000_000L);
+        Account account = accountRepository.save(new Account(accountNumber, user, Account.AccountType.CHECKING));
+        entityManager.flush();
+        
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            transactions.add(new Transaction("TXNBATCH" + suffix + i, null, account,
+                BigDecimal.ONE, Transaction.TransactionType.DEPOSIT, "batch test"));
+        }
+        transactionRepository.saveAll(transactions);
+        entityManager.flush();
+        
+        // 200 rows with batch_size=50 and a pooled-lo allocation of 50:
+        // 4 sequence calls plus 4 batched INSERT statements
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(10);
+    }
+}
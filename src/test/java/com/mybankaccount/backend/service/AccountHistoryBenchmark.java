@@ -0,0 +1,122 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.MyBankAccountBackendApplication;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.repository.AccountRepository;
+import com.mybankaccount.backend.repository.PartitionStore;
+import com.mybankaccount.backend.repository.TransactionRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+// Latency of account history reads on one account with a long history: the old
+// "from OR to" repository queries against AccountHistoryQuery. Seeds the configured
+// database on first run (use a scratch database), then prints the median of each query.
+// Arguments: [rows] [runs], defaults 1000000 25.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mybankaccount.backend.service.AccountHistoryBenchmark
+public class AccountHistoryBenchmark {
+    
+    private static final String ACCOUNT_NUMBER = "HISTBENCH0001";
+    private static final int COUNTERPARTIES = 1_000;
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+    
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+        
+        try (ConfigurableApplicationContext context = new SpringApplication(MyBankAccountBackendApplication.class)
+                .run("--spring.main.web-application-type=none", "--spring.jpa.show-sql=false")) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+            TransactionRepository transactionRepository = context.getBean(TransactionRepository.class);
+            AccountHistoryQuery historyQuery = context.getBean(AccountHistoryQuery.class);
+            
+            if (accountRepository.findByAccountNumber(ACCOUNT_NUMBER).isEmpty()) {
+                seed(jdbcTemplate, context.getBean(PartitionStore.class), rows);
+            }
+            Account account = accountRepository.findByAccountNumber(ACCOUNT_NUMBER).orElseThrow();
+            Long id = account.getId();
+            
+            LocalDateTime dayStart = START.plusMinutes(rows / 2);
+            LocalDateTime dayEnd = dayStart.plusDays(1);
+            LocalDateTime recent = START.plusMinutes(rows).minusDays(30);
+            int deepOffset = rows / 2;
+            
+            System.out.printf("%-28s %12s %12s%n", "query", "OR (ms)", "merge (ms)");
+            report("first page of 20", runs,
+                () -> transactionRepository.findByAccount(account, PageRequest.of(0, 20)).getContent(),
+                () -> historyQuery.page(id, 0, 20));
+            report("page of 20 at offset " + deepOffset, Math.max(1, runs / 5),
+                () -> transactionRepository.findByAccount(account, PageRequest.of(deepOffset / 20, 20)).getContent(),
+                () -> historyQuery.page(id, deepOffset, 20));
+            report("keyset page of 20, deep", runs,
+                () -> transactionRepository.findByAccountAndDateRange(account, START, dayStart, PageRequest.of(0, 20)).getContent(),
+                () -> historyQuery.page(id, TransactionCursor.at(dayStart, Long.MAX_VALUE), 20));
+            report("one day", runs,
+                () -> transactionRepository.findByAccountAndDateRange(account, dayStart, dayEnd),
+                () -> historyQuery.between(id, dayStart, dayEnd));
+            report("last 30 days", runs,
+                () -> transactionRepository.findRecentTransactionsByAccount(account, recent),
+                () -> historyQuery.between(id, recent, null));
+            report("count", runs,
+                () -> transactionRepository.countByAccount(account),
+                () -> historyQuery.count(id));
+        }
+    }
+    
+    // The hot account is on one side of every other row; the rest is noise between counterparties
+    private static void seed(JdbcTemplate jdbcTemplate, PartitionStore partitionStore, int rows) {
+        YearMonth last = YearMonth.from(START.plusSeconds(rows * 2L * 30));
+        for (YearMonth month = YearMonth.from(START); !month.isAfter(last); month = month.plusMonths(1)) {
+            partitionStore.createMonth("transactions", month);
+        }
+        jdbcTemplate.update(
+            "INSERT INTO users (username, email, password, first_name, last_name, role, is_active, created_at) " +
+            "VALUES ('histbench', 'histbench@example.com', 'password', 'History', 'Bench', 'USER', true, now())");
+        jdbcTemplate.update(
+            "INSERT INTO accounts (account_number, account_type, balance, currency, is_active, user_id, created_at) " +
+            "SELECT CASE WHEN g = 0 THEN ? ELSE 'HISTBENCH' || lpad(g::text, 5, '0') END, 'CHECKING', 0, 'USD', true, " +
+            "       (SELECT id FROM users WHERE username = 'histbench'), now() " +
+            "FROM generate_series(0, ?) g", ACCOUNT_NUMBER, COUNTERPARTIES);
+        jdbcTemplate.update(
+            "INSERT INTO transactions (transaction_reference, from_account_id, to_account_id, amount, transaction_type, " +
+            "                          status, fee, created_at, processed_at, currency) " +
+            "SELECT 'HISTBENCH' || g, " +
+            "       CASE WHEN g % 4 = 0 THEN a.ids[1] ELSE a.ids[2 + g % ?] END, " +
+            "       CASE WHEN g % 4 = 1 THEN a.ids[1] ELSE a.ids[2 + (g * 7) % ?] END, " +
+            "       1 + g % 100, 'TRANSFER', 'COMPLETED', 0, ? + g * interval '30 seconds', " +
+            "       ? + g * interval '30 seconds', 'USD' " +
+            "FROM generate_series(1, ?) g, " +
+            "     (SELECT array_agg(id ORDER BY account_number <> '" + ACCOUNT_NUMBER + "', id) AS ids FROM accounts " +
+            "       WHERE account_number LIKE 'HISTBENCH%') a",
+            COUNTERPARTIES, COUNTERPARTIES, START, START, rows * 2);
+        jdbcTemplate.execute("ANALYZE accounts");
+        jdbcTemplate.execute("ANALYZE transactions");
+    }
+    
+    private static void report(String name, int runs, Supplier<Object> before, Supplier<Object> after) {
+        System.out.printf("%-28s %12.2f %12.2f%n", name, medianMillis(runs, before), medianMillis(runs, after));
+    }
+    
+    private static double medianMillis(int runs, Supplier<Object> query) {
+        // Warm up plans and caches
+        for (int i = 0; i < 3; i++) {
+            query.get();
+        }
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[runs / 2] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,109 @@
+package com.mybankaccount.backend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Transfers per second through the balance engine, inside one shard and across shards.
+// Divide the reported ops/s by the number of cores in use (shards + benchmark threads,
+// capped at the machine's cores) for transfers per second per core.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mybankaccount.backend.service.BalanceEngineBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BalanceEngineBenchmark {
+    
+    private static final int ACCOUNTS = 4096;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    
+    @Param({ "4" })
+    public int shards;
+    
+    @Param({ "false", "true" })
+    public boolean persistent;
+    
+    private BalanceEngine engine;
+    private Path directory;
+    // Accounts grouped by the shard that owns them
+    private long[][] accountsByShard;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = persistent ? Files.createTempDirectory("balance-engine-bench") : null;
+        engine = new BalanceEngine(shards, 1 << 16, directory, 1_000_000, false);
+        engine.start();
+        
+        List<List<Long>> grouped = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (long id = 1; id <= ACCOUNTS; id++) {
+            engine.register(id, String.valueOf(id), true, new BigDecimal("1000000000.00"));
+            grouped.get(engine.shardOf(id)).add(id);
+        }
+        accountsByShard = grouped.stream()
+            .map(ids -> ids.stream().mapToLong(Long::longValue).toArray())
+            .toArray(long[][]::new);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        engine.close();
+        if (directory != null) {
+            try (var files = Files.walk(directory)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    
+    @Benchmark
+    public void intraShardTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] ids = accountsByShard[random.nextInt(shards)];
+        int from = random.nextInt(ids.length);
+        int to = (from + 1 + random.nextInt(ids.length - 1)) % ids.length;
+        engine.transfer(ids[from], ids[to], AMOUNT);
+    }
+    
+    @Benchmark
+    public void crossShardTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int fromShard = random.nextInt(shards);
+        int toShard = (fromShard + 1 + random.nextInt(shards - 1)) % shards;
+        long[] fromIds = accountsByShard[fromShard];
+        long[] toIds = accountsByShard[toShard];
+        engine.transfer(fromIds[random.nextInt(fromIds.length)], toIds[random.nextInt(toIds.length)], AMOUNT);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BalanceEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.mybankaccount.backend.service;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop load run against the balance engine: many client threads submit random
+// transfers for a fixed time, then the total and per-core transfer rates are printed.
+// Arguments: [clients] [shards] [seconds] [persistent], defaults 64 4 20 true.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mybankaccount.backend.service.BalanceEngineLoadBenchmark
+public class BalanceEngineLoadBenchmark {
+    
+    private static final int ACCOUNTS = 100_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        boolean persistent = args.length <= 3 || Boolean.parseBoolean(args[3]);
+        
+        Path directory = persistent ? Files.createTempDirectory("balance-engine-load") : null;
+        BalanceEngine engine = new BalanceEngine(shards, 1 << 16, directory, 1_000_000, false);
+        engine.start();
+        for (long id = 1; id <= ACCOUNTS; id++) {
+            engine.register(id, String.valueOf(id), true, new BigDecimal("1000000000.00"));
+        }
+        
+        LongAdder transfers = new LongAdder();
+        LongAdder crossShard = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    long from = 1 + random.nextInt(ACCOUNTS);
+                    long to = 1 + random.nextInt(ACCOUNTS);
+                    if (from == to) {
+                        continue;
+                    }
+                    engine.transfer(from, to, AMOUNT);
+                    transfers.increment();
+                    if (engine.shardOf(from) != engine.shardOf(to)) {
+                        crossShard.increment();
+                    }
+                }
+            }, "load-client-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        engine.close();
+        
+        int cores = Runtime.getRuntime().availableProcessors();
+        double perSecond = transfers.sum() / (double) seconds;
+        System.out.printf("clients=%d shards=%d persistent=%s cores=%d%n", clients, shards, persistent, cores);
+        System.out.printf("transfers=%d (%.1f%% cross-shard)%n",
+            transfers.sum(), 100.0 * crossShard.sum() / Math.max(1, transfers.sum()));
+        System.out.printf("transfers/s=%.0f transfers/s/core=%.0f%n", perSecond, perSecond / cores);
+    }
+}
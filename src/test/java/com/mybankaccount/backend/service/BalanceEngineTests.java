@@ -0,0 +1,107 @@
+package com.mybankaccount.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BalanceEngineTests {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void transfersWithinAndAcrossShards() throws Exception {
+        BalanceEngine engine = new BalanceEngine(4, 1024, null, 1000, false);
+        engine.start();
+        for (long id = 1; id <= 16; id++) {
+            engine.register(id, "ACC" + id, true, new BigDecimal("100.00"));
+        }
+        
+        for (long id = 1; id < 16; id++) {
+            engine.transfer(id, id + 1, new BigDecimal("10.00"));
+        }
+        
+        assertEquals(new BigDecimal("90.00"), engine.getBalance(1).orElseThrow());
+        assertEquals(new BigDecimal("110.00"), engine.getBalance(16).orElseThrow());
+        BigDecimal total = BigDecimal.ZERO;
+        for (long id = 1; id <= 16; id++) {
+            total = total.add(engine.getBalance(id).orElseThrow());
+        }
+        assertEquals(new BigDecimal("1600.00"), total);
+        engine.close();
+    }
+    
+    @Test
+    void refusedCreditReleasesTheHold() throws Exception {
+        BalanceEngine engine = new BalanceEngine(2, 1024, null, 1000, false);
+        engine.start();
+        long from = 1;
+        long to = 2;
+        while (engine.shardOf(to) == engine.shardOf(from)) {
+            to++;
+        }
+        engine.register(from, "FROM", true, new BigDecimal("50.00"));
+        engine.register(to, "TO", false, BigDecimal.ZERO);
+        
+        long destination = to;
+        RuntimeException refused = assertThrows(RuntimeException.class,
+            () -> engine.transfer(from, destination, new BigDecimal("20.00")));
+        assertEquals("Destination account is not active", refused.getMessage());
+        assertEquals(new BigDecimal("50.00"), engine.getBalance(from).orElseThrow());
+        
+        RuntimeException insufficient = assertThrows(RuntimeException.class,
+            () -> engine.withdraw(from, new BigDecimal("60.00")));
+        assertEquals("Insufficient balance", insufficient.getMessage());
+        engine.close();
+    }
+    
+    @Test
+    void restoresFromSnapshotAndLogWithADifferentShardCount() throws Exception {
+        BalanceEngine engine = new BalanceEngine(4, 1024, directory, 10, false);
+        engine.start();
+        for (long id = 1; id <= 8; id++) {
+            engine.register(id, "ACC" + id, true, new BigDecimal("100.00"));
+        }
+        for (int round = 0; round < 25; round++) {
+            engine.transfer(1 + round % 8, 1 + (round + 3) % 8, new BigDecimal("1.00"));
+        }
+        engine.deposit(5, new BigDecimal("7.50"));
+        engine.close();
+        
+        BalanceEngine restored = new BalanceEngine(3, 1024, directory, 10, false);
+        restored.start();
+        assertEquals(8, restored.getAccountCount());
+        for (long id = 1; id <= 8; id++) {
+            assertEquals(engine.getBalance(id).orElseThrow(), restored.getBalance(id).orElseThrow());
+        }
+        restored.close();
+    }
+    
+    @Test
+    void restoreTakesTheCommittedTableState() throws Exception {
+        BalanceEngine engine = new BalanceEngine(2, 1024, directory, 10, false);
+        engine.start();
+        engine.register(1, "ACC1", true, new BigDecimal("100.00"));
+        engine.register(2, "ACC2", true, new BigDecimal("100.00"));
+        engine.register(3, "ACC3", true, new BigDecimal("100.00"));
+        // Logged, but the database transaction around it never committed
+        engine.deposit(1, new BigDecimal("40.00"));
+        engine.close();
+        
+        BalanceEngine restored = new BalanceEngine(2, 1024, directory, 10, false);
+        restored.start(accountIds -> Map.of(
+            1L, new BalanceEngine.Committed(true, new BigDecimal("100.00")),
+            2L, new BalanceEngine.Committed(false, new BigDecimal("100.00"))));
+        assertEquals(new BigDecimal("100.00"), restored.getBalance(1).orElseThrow());
+        assertFalse(restored.isActive(2));
+        assertFalse(restored.isRegistered(3));
+        restored.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.MyBankAccountBackendApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop contention run for each balance mutation strategy: client threads post
+// random transfers in both directions among a few hot accounts through
+// TransactionService.transferMoney for a fixed time, then the completed and failed
+// transfer rates are printed per strategy. Fewer hot accounts means more contention.
+// Seeds the configured database on first run (use a scratch database). Retries are
+// turned off so that failures are counted as they happen.
+// Arguments: [hotAccounts] [clients] [seconds], defaults 4 32 20.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mybankaccount.backend.service.BalanceMutationContentionBenchmark
+public class BalanceMutationContentionBenchmark {
+    
+    private static final String[] STRATEGIES = { "pessimistic", "optimistic", "conditional" };
+    private static final String ACCOUNT_PREFIX = "CONTBENCH";
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    
+    public static void main(String[] args) throws InterruptedException {
+        int hotAccounts = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        if (hotAccounts < 2) {
+            throw new IllegalArgumentException("At least two hot accounts are needed to transfer between");
+        }
+        
+        System.out.printf("hotAccounts=%d clients=%d seconds=%d%n", hotAccounts, clients, seconds);
+        System.out.printf("%-12s %14s %14s%n", "strategy", "completed/s", "failed/s");
+        for (String strategy : STRATEGIES) {
+            try (ConfigurableApplicationContext context = new SpringApplication(MyBankAccountBackendApplication.class)
+                    .run("--spring.main.web-application-type=none", "--spring.jpa.show-sql=false",
+                         "--bank.balance.strategy=" + strategy, "--bank.retry.max-attempts=1")) {
+                String[] accounts = seed(context.getBean(JdbcTemplate.class), hotAccounts);
+                run(strategy, context.getBean(TransactionService.class), accounts, clients, seconds);
+            }
+        }
+    }
+    
+    private static void run(String strategy, TransactionService transactionService, String[] accounts,
+                            int clients, int seconds) throws InterruptedException {
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int from = random.nextInt(accounts.length);
+                    int to = (from + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+                    try {
+                        transactionService.transferMoney(accounts[from], accounts[to], AMOUNT, "contention benchmark");
+                        completed.increment();
+                    } catch (RuntimeException e) {
+                        failed.increment();
+                    }
+                }
+            }, "contention-client-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("%-12s %14.0f %14.0f%n", strategy,
+            completed.sum() / (double) seconds, failed.sum() / (double) seconds);
+    }
+    
+    // Hot accounts with balances large enough that no transfer fails for lack of funds
+    private static String[] seed(JdbcTemplate jdbcTemplate, int hotAccounts) {
+        jdbcTemplate.update(
+            "INSERT INTO users (username, email, password, first_name, last_name, role, is_active, created_at) " +
+            "VALUES ('contbench', 'contbench@example.com', 'password', 'Contention', 'Bench', 'USER', true, now()) " +
+            "ON CONFLICT DO NOTHING");
+        jdbcTemplate.update(
+            "INSERT INTO accounts (account_number, account_type, balance, currency, is_active, user_id, created_at) " +
+            "SELECT ? || lpad(g::text, 4, '0'), 'CHECKING', 1000000000, 'USD', true, " +
+            "       (SELECT id FROM users WHERE username = 'contbench'), now() " +
+            "FROM generate_series(1, ?) g ON CONFLICT DO NOTHING",
+            ACCOUNT_PREFIX, hotAccounts);
+        String[] accounts = new String[hotAccounts];
+        for (int i = 0; i < hotAccounts; i++) {
+            accounts[i] = ACCOUNT_PREFIX + String.format("%04d", i + 1);
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mybankaccount.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HierarchicalTimingWheelTests {
+    
+    @Test
+    void firesEveryItemOnceAtItsTickAcrossLevels() {
+        // 4 slots per level, 3 levels: a 64-tick horizon, so later items go through overflow
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(1000, 2, 3, 0);
+        Random random = new Random(42);
+        List<Long> dues = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long due = random.nextInt(300_000);
+            dues.add(due);
+            wheel.add(due, due);
+        }
+        
+        int fired = 0;
+        for (long now = 0; now <= 300_000; now += 1000) {
+            for (long due : wheel.advanceTo(now)) {
+                assertEquals(now / 1000, due / 1000, "due " + due + " fired at " + now);
+                fired++;
+            }
+        }
+        assertEquals(dues.size(), fired);
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void returnsOverdueItemsOnTheNextAdvance() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 6, 4, 10_000);
+        wheel.add(5_000, "overdue");
+        wheel.add(12_500, "later");
+        
+        assertEquals(List.of("overdue"), wheel.advanceTo(10_000));
+        assertEquals(List.of(), wheel.advanceTo(11_000));
+        assertEquals(List.of("later"), wheel.advanceTo(20_000));
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void catchesUpAfterTheClockJumps() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(1000, 6, 4, 0);
+        for (int i = 1; i <= 5; i++) {
+            wheel.add(i * 3_600_000L, i);
+        }
+        
+        assertEquals(List.of(1, 2, 3), wheel.advanceTo(3 * 3_600_000L + 500));
+        assertEquals(2, wheel.size());
+        // Empty stretches are skipped rather than ticked through
+        assertEquals(List.of(4, 5), wheel.advanceTo(100 * 3_600_000L));
+        wheel.add(100 * 3_600_000L + 2_000, 6);
+        assertEquals(List.of(6), wheel.advanceTo(100 * 3_600_000L + 2_000));
+    }
+}
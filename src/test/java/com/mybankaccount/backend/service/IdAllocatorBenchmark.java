@@ -0,0 +1,72 @@
+package com.mybankaccount.backend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Ids handed out per second by IdAllocator with 16 threads drawing at once. Block
+// reservations go to a stand-in for the sequence that waits reserveMicros per call, like
+// a database round trip, so the cost of one nextval spread over a block shows up.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mybankaccount.backend.service.IdAllocatorBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class IdAllocatorBenchmark {
+    
+    @Param({ "0", "500" })
+    public long reserveMicros;
+    
+    private IdAllocator idAllocator;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        AtomicLong sequence = new AtomicLong(10_000_000_000L);
+        long reserveNanos = TimeUnit.MICROSECONDS.toNanos(reserveMicros);
+        idAllocator = new IdAllocator(new JdbcTemplate() {
+            @Override
+            public <T> T queryForObject(String sql, Class<T> requiredType) {
+                if (reserveNanos > 0) {
+                    LockSupport.parkNanos(reserveNanos);
+                }
+                return requiredType.cast(sequence.getAndAdd(IdAllocator.BLOCK_SIZE));
+            }
+        });
+    }
+    
+    @Benchmark
+    public String accountNumber() {
+        return idAllocator.nextAccountNumber();
+    }
+    
+    @Benchmark
+    public String transactionReference() {
+        return idAllocator.nextTransactionReference();
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IdAllocatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
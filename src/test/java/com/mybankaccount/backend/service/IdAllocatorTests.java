@@ -0,0 +1,48 @@
+package com.mybankaccount.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class IdAllocatorTests {
+    
+    @Test
+    void computesLuhnCheckDigits() {
+        assertEquals(3, IdAllocator.luhnCheckDigit("7992739871"));
+        assertEquals(6, IdAllocator.luhnCheckDigit("453957876362148"));
+        assertEquals(0, IdAllocator.luhnCheckDigit("0"));
+    }
+    
+    @Test
+    void checkDigitCatchesSingleDigitAndAdjacentSwapErrors() {
+        String payload = "10000000042";
+        int digit = IdAllocator.luhnCheckDigit(payload);
+        for (int i = 0; i < payload.length(); i++) {
+            char original = payload.charAt(i);
+            for (char typo = '0'; typo <= '9'; typo++) {
+                if (typo != original) {
+                    String mistyped = payload.substring(0, i) + typo + payload.substring(i + 1);
+                    assertNotEquals(digit, IdAllocator.luhnCheckDigit(mistyped), mistyped);
+                }
+            }
+        }
+        assertNotEquals(digit, IdAllocator.luhnCheckDigit("10000000024"));
+    }
+    
+    @Test
+    void blockCursorDrainsABlockBeforeReservingTheNext() {
+        AtomicInteger reserved = new AtomicInteger();
+        long[] starts = { 1000, 50_000 };
+        IdAllocator.BlockCursor cursor = new IdAllocator.BlockCursor(() -> starts[reserved.getAndIncrement()]);
+        
+        for (int i = 0; i < IdAllocator.BLOCK_SIZE; i++) {
+            assertEquals(1000 + i, cursor.next());
+        }
+        assertEquals(1, reserved.get());
+        assertEquals(50_000, cursor.next());
+        assertEquals(2, reserved.get());
+    }
+}
@@ -0,0 +1,46 @@
+package com.mybankaccount.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionRetryEngineTests {
+    
+    @Test
+    void classifiesTransientFailuresAsRetryable() {
+        assertTrue(TransactionRetryEngine.isRetryable(new CannotAcquireLockException("lock timeout")));
+        assertTrue(TransactionRetryEngine.isRetryable(new OptimisticLockingFailureException("gave up")));
+        // Wrapped as the posting paths rethrow them, with the SQL state deep in the chain
+        assertTrue(TransactionRetryEngine.isRetryable(new RuntimeException("Transfer failed",
+            new RuntimeException(new SQLException("deadlock detected", "40P01")))));
+        assertTrue(TransactionRetryEngine.isRetryable(new SQLException("connection reset", "08006")));
+    }
+    
+    @Test
+    void classifiesEverythingElseAsTerminal() {
+        assertFalse(TransactionRetryEngine.isRetryable(new RuntimeException("Insufficient balance")));
+        assertFalse(TransactionRetryEngine.isRetryable(new IllegalArgumentException("Amount must be positive")));
+        assertFalse(TransactionRetryEngine.isRetryable(new DataIntegrityViolationException("duplicate",
+            new SQLException("duplicate key", "23505"))));
+    }
+    
+    @Test
+    void backoffDoublesWithJitterUpToTheCap() {
+        for (int i = 0; i < 100; i++) {
+            long first = TransactionRetryEngine.backoffMillis(1, 1000, 60_000);
+            assertTrue(first >= 500 && first <= 1000, "first: " + first);
+            
+            long third = TransactionRetryEngine.backoffMillis(3, 1000, 60_000);
+            assertTrue(third >= 2000 && third <= 4000, "third: " + third);
+            
+            long capped = TransactionRetryEngine.backoffMillis(30, 1000, 60_000);
+            assertTrue(capped >= 30_000 && capped <= 60_000, "capped: " + capped);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.dto.TransactionResponse;
+import com.mybankaccount.backend.entity.Account;
+import com.mybankaccount.backend.entity.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionSegmentFileTests {
+    
+    private static final LocalDateTime START = LocalDateTime.of(2023, 3, 1, 0, 0);
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void readsBackOneAccountNewestFirst() {
+        TransactionSegmentFile.Builder builder = new TransactionSegmentFile.Builder();
+        // Account 7 sends to 9 every hour; rows arrive as (key, newest first)
+        for (long key : new long[] { 7, 9 }) {
+            for (int i = 99; i >= 0; i--) {
+                builder.add(key, transfer(i));
+            }
+        }
+        builder.add(12, deposit());
+        
+        Path file = directory.resolve("segment.seg");
+        TransactionSegmentFile.Summary summary = builder.writeTo(file);
+        assertEquals(201, summary.getRowCount());
+        assertEquals(7, summary.getMinAccountId());
+        assertEquals(12, summary.getMaxAccountId());
+        
+        TransactionSegmentFile.Contents contents = TransactionSegmentFile.read(file);
+        List<TransactionResponse> rows = contents.rowsOf(9, START.plusHours(10), TransactionCursor.at(START.plusHours(20), 1020));
+        assertEquals(10, rows.size());
+        assertEquals(1019L, rows.get(0).getId());
+        assertEquals(1010L, rows.get(9).getId());
+        
+        TransactionResponse newest = rows.get(0);
+        assertEquals("TXN1019", newest.getTransactionReference());
+        assertEquals("ACC7", newest.getFromAccountNumber());
+        assertEquals("ACC9", newest.getToAccountNumber());
+        assertEquals(new BigDecimal("19.25"), newest.getAmount());
+        assertEquals(START.plusHours(19).plusNanos(123_000), newest.getCreatedAt());
+        assertEquals(Transaction.TransactionStatus.COMPLETED, newest.getStatus());
+        assertNull(newest.getDescription());
+        
+        TransactionResponse deposit = contents.rowsOf(12, START, TransactionCursor.START).get(0);
+        assertNull(deposit.getFromAccountNumber());
+        assertNull(deposit.getProcessedAt());
+        assertEquals(0, contents.rowsOf(8, START, TransactionCursor.START).size());
+    }
+    
+    @Test
+    void rejectsACorruptFile() throws Exception {
+        TransactionSegmentFile.Builder builder = new TransactionSegmentFile.Builder();
+        builder.add(12, deposit());
+        Path file = directory.resolve("segment.seg");
+        builder.writeTo(file);
+        
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IllegalStateException.class, () -> TransactionSegmentFile.read(file));
+    }
+    
+    private static Transaction transfer(int i) {
+        Transaction transaction = new Transaction("TXN" + (1000 + i), account(7), account(9),
+            new BigDecimal(i + ".25"), Transaction.TransactionType.TRANSFER, null);
+        transaction.setId(1000L + i);
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        transaction.setFee(BigDecimal.ZERO.setScale(2));
+        transaction.setCurrency("USD");
+        transaction.setCreatedAt(START.plusHours(i).plusNanos(123_000));
+        transaction.setProcessedAt(START.plusHours(i).plusSeconds(1));
+        return transaction;
+    }
+    
+    private static Transaction deposit() {
+        Transaction transaction = new Transaction("DEP1", null, account(12),
+            new BigDecimal("5.00"), Transaction.TransactionType.DEPOSIT, "Cash");
+        transaction.setId(5000L);
+        transaction.setStatus(Transaction.TransactionStatus.PENDING);
+        transaction.setCreatedAt(START.plusDays(2));
+        return transaction;
+    }
+    
+    private static Account account(long id) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountNumber("ACC" + id);
+        return account;
+    }
+}
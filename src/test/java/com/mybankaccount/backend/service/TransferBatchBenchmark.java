@@ -0,0 +1,116 @@
+package com.mybankaccount.backend.service;
+
+import com.mybankaccount.backend.MyBankAccountBackendApplication;
+import com.mybankaccount.backend.dto.BatchTransferResponse;
+import com.mybankaccount.backend.dto.TransferRequest;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compares posting a set of transfers one by one through TransactionService.transferMoney,
+// one database transaction each, with posting the same set through transferBatch in a
+// single transaction. Prints the median wall time of each and the transfers per second
+// it works out to. Only the service layer is measured; the HTTP round trip per request
+// that the batch endpoint also saves is not included.
+// Seeds the configured database on first run (use a scratch database).
+// Arguments: [batchSize] [runs], defaults 100 20.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mybankaccount.backend.service.TransferBatchBenchmark
+public class TransferBatchBenchmark {
+    
+    private static final String ACCOUNT_PREFIX = "BATCHBENCH";
+    private static final int ACCOUNTS = 50;
+    private static final int WARMUP_RUNS = 3;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        
+        try (ConfigurableApplicationContext context = new SpringApplication(MyBankAccountBackendApplication.class)
+                .run("--spring.main.web-application-type=none", "--spring.jpa.show-sql=false")) {
+            seed(context.getBean(JdbcTemplate.class));
+            TransactionService transactionService = context.getBean(TransactionService.class);
+            List<TransferRequest> transfers = transfers(batchSize);
+            
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                postOneByOne(transactionService, transfers);
+                postBatch(transactionService, transfers);
+            }
+            
+            long[] single = new long[runs];
+            long[] batch = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                postOneByOne(transactionService, transfers);
+                single[i] = System.nanoTime() - start;
+                
+                start = System.nanoTime();
+                postBatch(transactionService, transfers);
+                batch[i] = System.nanoTime() - start;
+            }
+            
+            System.out.printf("batchSize=%d runs=%d%n", batchSize, runs);
+            System.out.printf("%-12s %12s %14s%n", "mode", "median ms", "transfers/s");
+            report("one-by-one", single, batchSize);
+            report("batch", batch, batchSize);
+        }
+    }
+    
+    private static void postOneByOne(TransactionService transactionService, List<TransferRequest> transfers) {
+        for (TransferRequest transfer : transfers) {
+            transactionService.transferMoney(transfer.getFromAccountNumber(), transfer.getToAccountNumber(),
+                transfer.getAmount(), transfer.getDescription());
+        }
+    }
+    
+    private static void postBatch(TransactionService transactionService, List<TransferRequest> transfers) {
+        BatchTransferResponse response = transactionService.transferBatch(transfers);
+        if (response.getFailureCount() > 0) {
+            throw new IllegalStateException(response.getFailureCount() + " batch item(s) failed");
+        }
+    }
+    
+    private static void report(String mode, long[] nanos, int batchSize) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double medianMs = sorted[sorted.length / 2] / 1_000_000.0;
+        System.out.printf("%-12s %12.2f %14.0f%n", mode, medianMs, batchSize / (medianMs / 1000));
+    }
+    
+    // Transfers around a ring of the benchmark accounts, so no balance drifts far between runs
+    private static List<TransferRequest> transfers(int batchSize) {
+        List<TransferRequest> transfers = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            TransferRequest transfer = new TransferRequest();
+            transfer.setFromAccountNumber(accountNumber(i % ACCOUNTS));
+            transfer.setToAccountNumber(accountNumber((i + 1) % ACCOUNTS));
+            transfer.setAmount(AMOUNT);
+            transfer.setDescription("batch benchmark");
+            transfers.add(transfer);
+        }
+        return transfers;
+    }
+    
+    private static String accountNumber(int index) {
+        return ACCOUNT_PREFIX + String.format("%04d", index + 1);
+    }
+    
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update(
+            "INSERT INTO users (username, email, password, first_name, last_name, role, is_active, created_at) " +
+            "VALUES ('batchbench', 'batchbench@example.com', 'password', 'Batch', 'Bench', 'USER', true, now()) " +
+            "ON CONFLICT DO NOTHING");
+        jdbcTemplate.update(
+            "INSERT INTO accounts (account_number, account_type, balance, currency, is_active, user_id, created_at) " +
+            "SELECT ? || lpad(g::text, 4, '0'), 'CHECKING', 1000000000, 'USD', true, " +
+            "       (SELECT id FROM users WHERE username = 'batchbench'), now() " +
+            "FROM generate_series(1, ?) g ON CONFLICT DO NOTHING",
+            ACCOUNT_PREFIX, ACCOUNTS);
+    }
+}